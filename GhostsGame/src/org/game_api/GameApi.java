@@ -1,8 +1,11 @@
 package org.game_api;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -44,9 +47,24 @@ public final class GameApi {
     void sendUpdateUI(UpdateUI updateUI);
   }
 
-  public static class ContainerConnector implements Container {
+  /**
+   * A {@link Container} in delta mode: it sends {@link UpdateUIDelta}s to a {@link DeltaGame}, and
+   * sends the game a full snapshot when the game asks for one, e.g., after it missed a delta.
+   */
+  public interface DeltaContainer extends Container {
+    void sendRequestSnapshot(RequestSnapshot requestSnapshot);
+  }
+
+  /** A {@link Game} that can take {@link UpdateUIDelta}s instead of full {@link UpdateUI}s. */
+  public interface DeltaGame extends Game {
+    void sendUpdateUIDelta(UpdateUIDelta updateUIDelta);
+  }
+
+  public static class ContainerConnector implements DeltaContainer {
 
     private final Game game;
+    // messages are posted one at a time on the browser thread, so one codec is enough
+    private final GameApiJsonCodec jsonCodec = new GameApiJsonCodec();
 
     public ContainerConnector(Game game) {
       this.game = game;
@@ -56,18 +74,23 @@ public final class GameApi {
     @Override
     public void sendGameReady() {
       GameReady gameReady = new GameReady();
-      postMessageToParent(GameApiJsonHelper.getJsonString(gameReady));
+      postMessageToParent(jsonCodec.encode(gameReady));
     }
 
     @Override
     public void sendVerifyMoveDone(VerifyMoveDone verifyMoveDone) {
-      postMessageToParent(GameApiJsonHelper.getJsonString(verifyMoveDone));
+      postMessageToParent(jsonCodec.encode(verifyMoveDone));
     }
 
     @Override
     public void sendMakeMove(List<Operation> operations) {
       MakeMove makeMove = new MakeMove(operations);
-      postMessageToParent(GameApiJsonHelper.getJsonString(makeMove));
+      postMessageToParent(jsonCodec.encode(makeMove));
+    }
+
+    @Override
+    public void sendRequestSnapshot(RequestSnapshot requestSnapshot) {
+      postMessageToParent(jsonCodec.encode(requestSnapshot));
     }
 
     public static native void postMessageToParent(String message) /*-{
@@ -75,9 +98,11 @@ public final class GameApi {
     }-*/;
 
     public void eventListner(String message) {
-      Message messageObj = GameApiJsonHelper.getMessageObject(message);
+      Message messageObj = jsonCodec.decode(message);
       if (messageObj instanceof UpdateUI) {
         game.sendUpdateUI((UpdateUI) messageObj);
+      } else if (messageObj instanceof UpdateUIDelta && game instanceof DeltaGame) {
+        ((DeltaGame) game).sendUpdateUIDelta((UpdateUIDelta) messageObj);
       } else if (messageObj instanceof VerifyMove) {
         game.sendVerifyMove((VerifyMove) messageObj);
       }
@@ -96,9 +121,11 @@ public final class GameApi {
 
   /**
    * A container for games that can iterates over all the players and send them Game API messages.
+   * A {@link DeltaGame} gets {@link UpdateUIDelta}s.
    */
-  public static class IteratingPlayerContainer implements Container {
+  public static class IteratingPlayerContainer implements DeltaContainer {
     private final Game game;
+    private final UpdateUIDeltaEncoder deltaEncoder = new UpdateUIDeltaEncoder();
     private final List<Map<String, Object>> playersInfo = Lists.newArrayList();
     private final List<String> playerIds;
     private String updateUiPlayerId;
@@ -129,6 +156,12 @@ public final class GameApi {
 
     public void updateUi(String yourPlayerId) {
       updateUiPlayerId = yourPlayerId;
+      if (game instanceof DeltaGame) {
+        ((DeltaGame) game).sendUpdateUIDelta(deltaEncoder.encode(yourPlayerId, playersInfo,
+            gameState.getStateForPlayerId(yourPlayerId), lastMove, lastMovePlayerId,
+            gameState.getPlayerIdToNumberOfTokensInPot()));
+        return;
+      }
       game.sendUpdateUI(new UpdateUI(yourPlayerId, playersInfo,
           gameState.getStateForPlayerId(yourPlayerId),
           lastGameState == null ? null : lastGameState.getStateForPlayerId(yourPlayerId),
@@ -157,17 +190,54 @@ public final class GameApi {
         throw new RuntimeException("Found a hacker! verifyMoveDone=" + verifyMoveDone);
       }
     }
+
+    @Override
+    public void sendRequestSnapshot(RequestSnapshot requestSnapshot) {
+      deltaEncoder.requestSnapshot(requestSnapshot.getYourPlayerId());
+      updateUi(requestSnapshot.getYourPlayerId());
+    }
   }
 
+  /**
+   * The state of a match: a value and a visibility for every key.
+   * <p>
+   * The entries are copy-on-write: {@link #copy} and {@link #getStateForPlayerId} share the entry
+   * table instead of copying it, and the table is cloned only by the first write after it was
+   * shared (so once per move in {@link IteratingPlayerContainer}). The visibility of an entry is
+   * kept as a bit mask of player indices, so a projection checks a bit instead of searching the
+   * list of player IDs.
+   * <p>
+   * A GameState is not thread-safe, but a copy shares nothing mutable with the original (the
+   * shared entry table is never written), so the copy can be handed to another thread.
+   */
   public static class GameState {
-    private final Map<String, Object> state = Maps.newHashMap();
-    private final Map<String, Object> visibleTo = Maps.newHashMap();
+    // Players with an index >= MAX_MASKED_PLAYERS are checked against the visibility list
+    private static final int MAX_MASKED_PLAYERS = 64;
+    private static final long VISIBLE_TO_ALL = -1L;
+
+    private Map<String, StateEntry> entries;
+    // true if entries may be referenced by another GameState or by a projection
+    private boolean shared;
+    private final Map<String, Integer> playerIndices;
+    private final Map<String, Map<String, Object>> projections = Maps.newHashMap();
     private Map<String, Integer> playerIdToNumberOfTokensInPot = Maps.newHashMap();
 
+    public GameState() {
+      this(Maps.<String, StateEntry>newHashMap(), Maps.<String, Integer>newHashMap());
+    }
+
+    private GameState(Map<String, StateEntry> entries, Map<String, Integer> playerIndices) {
+      this.entries = entries;
+      this.playerIndices = playerIndices;
+    }
+
     public GameState copy() {
-      GameState result = new GameState();
-      result.state.putAll(state);
-      result.visibleTo.putAll(visibleTo);
+      shared = true;
+      // the copy adds the indices of new players to its own map, so it can go to another thread
+      GameState result = new GameState(entries, Maps.newHashMap(playerIndices));
+      result.shared = true;
+      // same entries, so the same projections (this lets callers recognize a state by identity)
+      result.projections.putAll(projections);
       return result;
     }
 
@@ -175,19 +245,35 @@ public final class GameApi {
       return playerIdToNumberOfTokensInPot;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Returns the state as seen by playerId; keys that playerId can't see map to null. The
+     * result is a read-only view that doesn't change when this state changes.
+     */
     public Map<String, Object> getStateForPlayerId(String playerId) {
-      Map<String, Object> result = Maps.newHashMap();
-      for (String key : state.keySet()) {
-        Object visibleToPlayers = visibleTo.get(key);
-        Object value = null;
-        if (visibleToPlayers.equals(ALL)
-            || ((List<String>) visibleToPlayers).contains(playerId)) {
-          value = state.get(key);
-        }
-        result.put(key, value);
+      Map<String, Object> projection = projections.get(playerId);
+      if (projection == null) {
+        shared = true;
+        projection = new PlayerStateView(entries, playerId, getPlayerIndex(playerId));
+        projections.put(playerId, projection);
       }
-      return result;
+      return projection;
+    }
+
+    /**
+     * Returns the operations that rebuild this state in a new GameState: a Set with the
+     * visibility of every key, and the tokens in the pot (if any).
+     */
+    public List<Operation> getSnapshotOperations() {
+      List<Operation> operations = Lists.newArrayList();
+      for (Map.Entry<String, StateEntry> entry : entries.entrySet()) {
+        StateEntry stateEntry = entry.getValue();
+        operations.add(new Set(entry.getKey(), stateEntry.value, stateEntry.visibleTo));
+      }
+      if (!playerIdToNumberOfTokensInPot.isEmpty()) {
+        operations.add(new AttemptChangeTokens(ImmutableMap.<String, Integer>of(),
+            playerIdToNumberOfTokensInPot));
+      }
+      return operations;
     }
 
     public void makeMove(List<Operation> operations) {
@@ -199,37 +285,39 @@ public final class GameApi {
     public void makeMove(Operation operation) {
       if (operation instanceof Set) {
         Set set = (Set) operation;
-        String key = set.getKey();
-        state.put(key, set.getValue());
-        visibleTo.put(key, set.getVisibleToPlayerIds());
+        put(set.getKey(), set.getValue(), set.getVisibleToPlayerIds());
       } else if (operation instanceof SetRandomInteger) {
         SetRandomInteger setRandomInteger = (SetRandomInteger) operation;
         String key = setRandomInteger.getKey();
         int from = setRandomInteger.getFrom();
         int to = setRandomInteger.getTo();
         int value = new Random().nextInt(to - from) + from;
-        state.put(key, value);
-        visibleTo.put(key, ALL);
+        put(key, value, ALL);
       } else if (operation instanceof SetVisibility) {
         SetVisibility setVisibility = (SetVisibility) operation;
         String key = setVisibility.getKey();
-        visibleTo.put(key, setVisibility.getVisibleToPlayerIds());
+        StateEntry entry = entries.get(key);
+        if (entry != null) {
+          put(key, entry.value, setVisibility.getVisibleToPlayerIds());
+        }
       } else if (operation instanceof Delete) {
         Delete delete = (Delete) operation;
-        String key = delete.getKey();
-        state.remove(key);
-        visibleTo.remove(key);
+        mutableEntries().remove(delete.getKey());
       } else if (operation instanceof Shuffle) {
         Shuffle shuffle = (Shuffle) operation;
         List<String> keys = shuffle.getKeys();
         List<String> shuffledKeys = shuffle(Lists.newArrayList(keys));
-        Map<String, Object> oldState = ImmutableMap.copyOf(state);
-        Map<String, Object> oldVisibleTo = ImmutableMap.copyOf(visibleTo);
+        List<StateEntry> oldEntries = Lists.newArrayList();
+        for (String key : keys) {
+          oldEntries.add(entries.get(key));
+        }
+        Map<String, StateEntry> mutableEntries = mutableEntries();
         for (int i = 0; i < keys.size(); i++) {
-          String fromKey = keys.get(i);
-          String toKey = shuffledKeys.get(i);
-          state.put(toKey, oldState.get(fromKey));
-          visibleTo.put(toKey, oldVisibleTo.get(fromKey));
+          if (oldEntries.get(i) == null) {
+            mutableEntries.remove(shuffledKeys.get(i));
+          } else {
+            mutableEntries.put(shuffledKeys.get(i), oldEntries.get(i));
+          }
         }
       } else if (operation instanceof AttemptChangeTokens) {
         playerIdToNumberOfTokensInPot =
@@ -237,6 +325,44 @@ public final class GameApi {
       }
     }
 
+    private void put(String key, Object value, Object visibleTo) {
+      mutableEntries().put(key, new StateEntry(value, visibleTo, getVisibilityMask(visibleTo)));
+    }
+
+    private Map<String, StateEntry> mutableEntries() {
+      if (shared) {
+        entries = Maps.newHashMap(entries);
+        shared = false;
+      }
+      projections.clear();
+      return entries;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long getVisibilityMask(Object visibleTo) {
+      if (ALL.equals(visibleTo)) {
+        return VISIBLE_TO_ALL;
+      }
+      long mask = 0;
+      for (String playerId : (List<String>) visibleTo) {
+        int index = getPlayerIndex(playerId);
+        if (index < MAX_MASKED_PLAYERS) {
+          mask |= 1L << index;
+        }
+      }
+      return mask;
+    }
+
+    // The indices are only added, so the entries shared with a copy keep their meaning there
+    private int getPlayerIndex(String playerId) {
+      Integer index = playerIndices.get(playerId);
+      if (index == null) {
+        index = playerIndices.size();
+        playerIndices.put(playerId, index);
+      }
+      return index;
+    }
+
     private List<String> shuffle(List<String> list) {
       List<String> listCopy = Lists.newArrayList(list);
       Random rnd = new Random();
@@ -247,6 +373,132 @@ public final class GameApi {
       }
       return res;
     }
+
+    private static class StateEntry {
+      final Object value;
+      final Object visibleTo;
+      final long visibilityMask;
+
+      StateEntry(Object value, Object visibleTo, long visibilityMask) {
+        this.value = value;
+        this.visibleTo = visibleTo;
+        this.visibilityMask = visibilityMask;
+      }
+
+      @SuppressWarnings("unchecked")
+      boolean isVisibleTo(String playerId, int playerIndex) {
+        if (playerIndex < MAX_MASKED_PLAYERS) {
+          return (visibilityMask & (1L << playerIndex)) != 0;
+        }
+        return ALL.equals(visibleTo) || ((List<String>) visibleTo).contains(playerId);
+      }
+    }
+
+    /** A read-only projection of a (no longer written) entry table for one player. */
+    private static class PlayerStateView extends AbstractMap<String, Object> {
+      private final Map<String, StateEntry> entries;
+      private final String playerId;
+      private final int playerIndex;
+      private java.util.Set<Map.Entry<String, Object>> entrySet;
+
+      PlayerStateView(Map<String, StateEntry> entries, String playerId, int playerIndex) {
+        this.entries = entries;
+        this.playerId = playerId;
+        this.playerIndex = playerIndex;
+      }
+
+      @Override
+      public Object get(Object key) {
+        StateEntry entry = entries.get(key);
+        return entry != null && entry.isVisibleTo(playerId, playerIndex) ? entry.value : null;
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+      }
+
+      @Override
+      public int size() {
+        return entries.size();
+      }
+
+      @Override
+      public java.util.Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+          entrySet = new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+              final Iterator<Map.Entry<String, StateEntry>> it = entries.entrySet().iterator();
+              return new Iterator<Map.Entry<String, Object>>() {
+                @Override
+                public boolean hasNext() {
+                  return it.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                  Map.Entry<String, StateEntry> next = it.next();
+                  StateEntry entry = next.getValue();
+                  return new ProjectedEntry(next.getKey(),
+                      entry.isVisibleTo(playerId, playerIndex) ? entry.value : null);
+                }
+
+                @Override
+                public void remove() {
+                  throw new UnsupportedOperationException();
+                }
+              };
+            }
+
+            @Override
+            public int size() {
+              return entries.size();
+            }
+          };
+        }
+        return entrySet;
+      }
+    }
+
+    private static class ProjectedEntry implements Map.Entry<String, Object> {
+      private final String key;
+      private final Object value;
+
+      ProjectedEntry(String key, Object value) {
+        this.key = key;
+        this.value = value;
+      }
+
+      @Override
+      public String getKey() {
+        return key;
+      }
+
+      @Override
+      public Object getValue() {
+        return value;
+      }
+
+      @Override
+      public Object setValue(Object value) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean equals(Object other) {
+        if (!(other instanceof Map.Entry)) {
+          return false;
+        }
+        Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+        return Objects.equals(key, entry.getKey()) && Objects.equals(value, entry.getValue());
+      }
+
+      @Override
+      public int hashCode() {
+        return Objects.hashCode(key) ^ Objects.hashCode(value);
+      }
+    }
   }
 
   public static class VerifyMove extends Message {
@@ -410,6 +662,88 @@ public final class GameApi {
     }
   }
 
+  /**
+   * An {@link UpdateUI} in delta mode (see {@link DeltaContainer}). A snapshot carries the whole
+   * state of yourPlayerId in changes; every later delta carries only the keys whose value changed
+   * since the previous message, with null for a key that was deleted or hidden. The sequence
+   * number grows by one per message, so the game can tell when it missed one; it then sends
+   * {@link RequestSnapshot}. lastState isn't sent: it is the state of the previous message.
+   * Use {@link UpdateUIDeltaEncoder} and {@link UpdateUIDeltaDecoder}.
+   */
+  public static class UpdateUIDelta extends Message {
+    private final String yourPlayerId;
+    private final int sequence;
+    private final boolean snapshot;
+    // only in a snapshot
+    private final List<Map<String, Object>> playersInfo;
+    private final Map<String, Object> changes;
+    private final List<Operation> lastMove;
+    private final String lastMovePlayerId;
+    private final Map<String, Integer> playerIdToNumberOfTokensInPot;
+
+    public UpdateUIDelta(String yourPlayerId, int sequence, boolean snapshot,
+        List<Map<String, Object>> playersInfo,
+        Map<String, Object> changes,
+        List<Operation> lastMove,
+        String lastMovePlayerId,
+        Map<String, Integer> playerIdToNumberOfTokensInPot) {
+      this.yourPlayerId = yourPlayerId;
+      this.sequence = sequence;
+      this.snapshot = snapshot;
+      this.playersInfo = checkHasJsonSupportedType(playersInfo);
+      this.changes = checkHasJsonSupportedType(changes);
+      this.lastMove = lastMove;
+      this.lastMovePlayerId = checkHasJsonSupportedType(lastMovePlayerId);
+      this.playerIdToNumberOfTokensInPot = playerIdToNumberOfTokensInPot;
+    }
+
+    @Override
+    public String getMessageName() {
+      return "UpdateUIDelta";
+    }
+
+    @Override
+    public List<Object> getFieldsNameAndValue() {
+      return Arrays.<Object>asList(
+          "yourPlayerId", yourPlayerId, "sequence", sequence, "snapshot", snapshot,
+          "playersInfo", playersInfo, "changes", changes, "lastMove", lastMove,
+          "lastMovePlayerId", lastMovePlayerId,
+          "playerIdToNumberOfTokensInPot", playerIdToNumberOfTokensInPot);
+    }
+
+    public String getYourPlayerId() {
+      return yourPlayerId;
+    }
+
+    public int getSequence() {
+      return sequence;
+    }
+
+    public boolean isSnapshot() {
+      return snapshot;
+    }
+
+    public List<Map<String, Object>> getPlayersInfo() {
+      return playersInfo;
+    }
+
+    public Map<String, Object> getChanges() {
+      return changes;
+    }
+
+    public List<Operation> getLastMove() {
+      return lastMove;
+    }
+
+    public String getLastMovePlayerId() {
+      return lastMovePlayerId;
+    }
+
+    public Map<String, Integer> getPlayerIdToNumberOfTokensInPot() {
+      return playerIdToNumberOfTokensInPot;
+    }
+  }
+
   public abstract static class Operation extends Message { }
 
   public static class EndGame extends Operation {
@@ -815,6 +1149,38 @@ public final class GameApi {
     }
   }
 
+  /**
+   * Asks a {@link DeltaContainer} for a full snapshot of the state of yourPlayerId, e.g., after
+   * the game missed the delta after lastSequence (-1 if it has no state).
+   */
+  public static class RequestSnapshot extends Message {
+    private final String yourPlayerId;
+    private final int lastSequence;
+
+    public RequestSnapshot(String yourPlayerId, int lastSequence) {
+      this.yourPlayerId = yourPlayerId;
+      this.lastSequence = lastSequence;
+    }
+
+    @Override
+    public String getMessageName() {
+      return "RequestSnapshot";
+    }
+
+    @Override
+    public List<Object> getFieldsNameAndValue() {
+      return Arrays.<Object>asList("yourPlayerId", yourPlayerId, "lastSequence", lastSequence);
+    }
+
+    public String getYourPlayerId() {
+      return yourPlayerId;
+    }
+
+    public int getLastSequence() {
+      return lastSequence;
+    }
+  }
+
   public abstract static class Message {
     public abstract String getMessageName();
 
@@ -894,6 +1260,22 @@ public final class GameApi {
               (String) message.get("lastMovePlayerId"),
               toIntegerMap(message.get("playerIdToNumberOfTokensInPot")));
 
+        case "UpdateUIDelta":
+          return new UpdateUIDelta(
+              (String) message.get("yourPlayerId"),
+              (Integer) message.get("sequence"),
+              (Boolean) message.get("snapshot"),
+              (List<Map<String, Object>>) message.get("playersInfo"),
+              (Map<String, Object>) message.get("changes"),
+              messageToOperationList(message.get("lastMove")),
+              (String) message.get("lastMovePlayerId"),
+              toIntegerMap(message.get("playerIdToNumberOfTokensInPot")));
+
+        case "RequestSnapshot":
+          return new RequestSnapshot(
+              (String) message.get("yourPlayerId"),
+              (Integer) message.get("lastSequence"));
+
         case "VerifyMove":
           return new VerifyMove(
               (List<Map<String, Object>>) message.get("playersInfo"),
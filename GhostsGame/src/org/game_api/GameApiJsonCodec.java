@@ -0,0 +1,607 @@
+package org.game_api;
+
+import static org.game_api.GameApi.ALL;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.AttemptChangeTokens;
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.GameReady;
+import org.game_api.GameApi.MakeMove;
+import org.game_api.GameApi.ManipulateState;
+import org.game_api.GameApi.ManipulationDone;
+import org.game_api.GameApi.Message;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.RequestManipulator;
+import org.game_api.GameApi.RequestSnapshot;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetRandomInteger;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.UpdateUIDelta;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+
+/**
+ * Writes Game API messages as JSON and reads them back, in the format of
+ * {@link GameApi.GameApiJsonHelper}, but without the intermediate maps of
+ * {@link Message#toMessage} and without JSONObject: every message is written field by field into
+ * one StringBuilder that is reused for the next message, and read in one pass over the string.
+ * <p>
+ * Numbers are read as Integer when they are whole (like the helper does), and as Double
+ * otherwise. A codec keeps its buffer between calls, so use one codec per thread.
+ */
+public final class GameApiJsonCodec {
+  private static final String TYPE = "type";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final StringBuilder out = new StringBuilder(1024);
+  private String in;
+  private int pos;
+
+  public String encode(Message message) {
+    out.setLength(0);
+    writeMessage(message);
+    return out.toString();
+  }
+
+  /** Returns the message of json, or null if its type isn't a Game API message. */
+  public Message decode(String json) {
+    in = json;
+    pos = 0;
+    try {
+      Message message = readMessage();
+      skipWhitespace();
+      if (pos != in.length()) {
+        throw error("Unexpected text after the message");
+      }
+      return message;
+    } finally {
+      in = null;
+    }
+  }
+
+  private void writeMessage(Message message) {
+    out.append("{\"type\":");
+    writeString(message.getMessageName());
+    if (message instanceof Set) {
+      Set set = (Set) message;
+      writeField("key", set.getKey());
+      writeField("value", set.getValue());
+      writeField("visibleToPlayerIds", set.getVisibleToPlayerIds());
+    } else if (message instanceof Delete) {
+      writeField("key", ((Delete) message).getKey());
+    } else if (message instanceof SetTurn) {
+      writeField("playerId", ((SetTurn) message).getPlayerId());
+      writeField("numberOfSecondsForTurn", ((SetTurn) message).getNumberOfSecondsForTurn());
+    } else if (message instanceof SetVisibility) {
+      writeField("key", ((SetVisibility) message).getKey());
+      writeField("visibleToPlayerIds", ((SetVisibility) message).getVisibleToPlayerIds());
+    } else if (message instanceof VerifyMove) {
+      VerifyMove verifyMove = (VerifyMove) message;
+      if (message instanceof UpdateUI) {
+        writeField("yourPlayerId", ((UpdateUI) message).getYourPlayerId());
+      }
+      writeField("playersInfo", verifyMove.getPlayersInfo());
+      writeField("state", verifyMove.getState());
+      writeField("lastState", verifyMove.getLastState());
+      writeField("lastMove", verifyMove.getLastMove());
+      writeField("lastMovePlayerId", verifyMove.getLastMovePlayerId());
+      writeField("playerIdToNumberOfTokensInPot", verifyMove.getPlayerIdToNumberOfTokensInPot());
+    } else if (message instanceof UpdateUIDelta) {
+      UpdateUIDelta delta = (UpdateUIDelta) message;
+      writeField("yourPlayerId", delta.getYourPlayerId());
+      writeField("sequence", delta.getSequence());
+      writeField("snapshot", delta.isSnapshot());
+      writeField("playersInfo", delta.getPlayersInfo());
+      writeField("changes", delta.getChanges());
+      writeField("lastMove", delta.getLastMove());
+      writeField("lastMovePlayerId", delta.getLastMovePlayerId());
+      writeField("playerIdToNumberOfTokensInPot", delta.getPlayerIdToNumberOfTokensInPot());
+    } else if (message instanceof RequestSnapshot) {
+      writeField("yourPlayerId", ((RequestSnapshot) message).getYourPlayerId());
+      writeField("lastSequence", ((RequestSnapshot) message).getLastSequence());
+    } else if (message instanceof MakeMove) {
+      writeField("operations", ((MakeMove) message).getOperations());
+    } else if (message instanceof VerifyMoveDone) {
+      writeField("hackerPlayerId", ((VerifyMoveDone) message).getHackerPlayerId());
+      writeField("message", ((VerifyMoveDone) message).getMessage());
+    } else if (message instanceof EndGame) {
+      writeField("playerIdToScore", ((EndGame) message).getPlayerIdToScore());
+    } else if (message instanceof Shuffle) {
+      writeField("keys", ((Shuffle) message).getKeys());
+    } else if (message instanceof SetRandomInteger) {
+      SetRandomInteger setRandomInteger = (SetRandomInteger) message;
+      writeField("key", setRandomInteger.getKey());
+      writeField("from", setRandomInteger.getFrom());
+      writeField("to", setRandomInteger.getTo());
+    } else if (message instanceof AttemptChangeTokens) {
+      AttemptChangeTokens attemptChangeTokens = (AttemptChangeTokens) message;
+      writeField("playerIdToTokenChange", attemptChangeTokens.getPlayerIdToTokenChange());
+      writeField("playerIdToNumberOfTokensInPot",
+          attemptChangeTokens.getPlayerIdToNumberOfTokensInPot());
+    } else if (message instanceof ManipulateState) {
+      writeField("state", ((ManipulateState) message).getOperations());
+    } else if (message instanceof ManipulationDone) {
+      writeField("operations", ((ManipulationDone) message).getOperations());
+    } else if (!(message instanceof GameReady || message instanceof RequestManipulator)) {
+      throw new IllegalArgumentException("Unknown message: " + message.getMessageName());
+    }
+    out.append('}');
+  }
+
+  private void writeField(String name, Object value) {
+    out.append(',');
+    writeString(name);
+    out.append(':');
+    writeValue(value);
+  }
+
+  private void writeValue(Object value) {
+    if (value == null) {
+      out.append("null");
+    } else if (value instanceof String) {
+      writeString((String) value);
+    } else if (value instanceof Integer || value instanceof Boolean) {
+      out.append(value);
+    } else if (value instanceof Double) {
+      double d = (Double) value;
+      if (Double.isNaN(d) || Double.isInfinite(d)) {
+        throw new IllegalArgumentException("JSON has no number " + d);
+      }
+      out.append(d);
+    } else if (value instanceof Message) {
+      writeMessage((Message) value);
+    } else if (value instanceof List) {
+      out.append('[');
+      List<?> list = (List<?>) value;
+      for (int i = 0; i < list.size(); i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        writeValue(list.get(i));
+      }
+      out.append(']');
+    } else if (value instanceof Map) {
+      out.append('{');
+      boolean first = true;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        if (!first) {
+          out.append(',');
+        }
+        first = false;
+        writeString(entry.getKey().toString());
+        out.append(':');
+        writeValue(entry.getValue());
+      }
+      out.append('}');
+    } else {
+      throw new IllegalArgumentException("Not a JSON value: " + value);
+    }
+  }
+
+  private void writeString(String s) {
+    out.append('"');
+    int start = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\') {
+        continue;
+      }
+      // copy the run of plain characters at once
+      out.append(s, start, i);
+      start = i + 1;
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+      }
+    }
+    out.append(s, start, s.length()).append('"');
+  }
+
+  /**
+   * Reads a message object. The fields may come in any order (e.g., after JSON.stringify in the
+   * browser), so they are kept in locals and the message is built after the closing brace.
+   */
+  @SuppressWarnings("unchecked")
+  private Message readMessage() {
+    String type = null;
+    String yourPlayerId = null;
+    String key = null;
+    String playerId = null;
+    String lastMovePlayerId = null;
+    String hackerPlayerId = null;
+    String text = null;
+    Object value = null;
+    Object visibleToPlayerIds = null;
+    Object playersInfo = null;
+    Object state = null;
+    Object lastState = null;
+    Object changes = null;
+    Object keys = null;
+    List<Operation> operations = null;
+    Map<String, Integer> tokensInPot = null;
+    Map<String, Integer> scores = null;
+    Map<String, Integer> tokenChanges = null;
+    int from = 0;
+    int to = 0;
+    int numberOfSecondsForTurn = 0;
+    int sequence = 0;
+    int lastSequence = 0;
+    boolean snapshot = false;
+
+    expect('{');
+    if (!consume('}')) {
+      do {
+        String name = readString();
+        expect(':');
+        switch (name) {
+          case TYPE:
+            type = (String) readValue();
+            break;
+          case "yourPlayerId":
+            yourPlayerId = (String) readValue();
+            break;
+          case "key":
+            key = (String) readValue();
+            break;
+          case "playerId":
+            playerId = (String) readValue();
+            break;
+          case "lastMovePlayerId":
+            lastMovePlayerId = (String) readValue();
+            break;
+          case "hackerPlayerId":
+            hackerPlayerId = (String) readValue();
+            break;
+          case "message":
+            text = (String) readValue();
+            break;
+          case "value":
+            value = readValue();
+            break;
+          case "visibleToPlayerIds":
+            visibleToPlayerIds = readValue();
+            break;
+          case "playersInfo":
+            playersInfo = readValue();
+            break;
+          case "state":
+            state = readValue();
+            break;
+          case "lastState":
+            lastState = readValue();
+            break;
+          case "changes":
+            changes = readValue();
+            break;
+          case "keys":
+            keys = readValue();
+            break;
+          case "lastMove":
+          case "operations":
+            operations = readOperations();
+            break;
+          case "playerIdToNumberOfTokensInPot":
+            tokensInPot = readIntegerMap();
+            break;
+          case "playerIdToScore":
+            scores = readIntegerMap();
+            break;
+          case "playerIdToTokenChange":
+            tokenChanges = readIntegerMap();
+            break;
+          case "from":
+            from = readInt();
+            break;
+          case "to":
+            to = readInt();
+            break;
+          case "numberOfSecondsForTurn":
+            numberOfSecondsForTurn = readInt();
+            break;
+          case "sequence":
+            sequence = readInt();
+            break;
+          case "lastSequence":
+            lastSequence = readInt();
+            break;
+          case "snapshot":
+            snapshot = Boolean.TRUE.equals(readValue());
+            break;
+          default:
+            readValue();
+        }
+      } while (consume(','));
+      expect('}');
+    }
+    if (type == null) {
+      throw error("Message without a type");
+    }
+
+    switch (type) {
+      case "Set":
+        return ALL.equals(visibleToPlayerIds) ? new Set(key, value)
+            : new Set(key, value, (List<String>) visibleToPlayerIds);
+      case "Delete":
+        return new Delete(key);
+      case "SetTurn":
+        return new SetTurn(playerId, numberOfSecondsForTurn);
+      case "SetVisibility":
+        return ALL.equals(visibleToPlayerIds) ? new SetVisibility(key)
+            : new SetVisibility(key, (List<String>) visibleToPlayerIds);
+      case "UpdateUI":
+        return new UpdateUI(yourPlayerId, (List<Map<String, Object>>) playersInfo,
+            (Map<String, Object>) state, (Map<String, Object>) lastState, operations,
+            lastMovePlayerId, tokensInPot);
+      case "UpdateUIDelta":
+        return new UpdateUIDelta(yourPlayerId, sequence, snapshot,
+            (List<Map<String, Object>>) playersInfo, (Map<String, Object>) changes, operations,
+            lastMovePlayerId, tokensInPot);
+      case "RequestSnapshot":
+        return new RequestSnapshot(yourPlayerId, lastSequence);
+      case "VerifyMove":
+        return new VerifyMove((List<Map<String, Object>>) playersInfo,
+            (Map<String, Object>) state, (Map<String, Object>) lastState, operations,
+            lastMovePlayerId, tokensInPot);
+      case "MakeMove":
+        return new MakeMove(operations);
+      case "VerifyMoveDone":
+        return new VerifyMoveDone(hackerPlayerId, text);
+      case "EndGame":
+        return new EndGame(scores);
+      case "Shuffle":
+        return new Shuffle((List<String>) keys);
+      case "SetRandomInteger":
+        return new SetRandomInteger(key, from, to);
+      case "AttemptChangeTokens":
+        return new AttemptChangeTokens(tokenChanges, tokensInPot);
+      case "GameReady":
+        return new GameReady();
+      case "RequestManipulator":
+        return new RequestManipulator();
+      case "ManipulateState":
+        return new ManipulateState((Map<String, Object>) state);
+      case "ManipulationDone":
+        return new ManipulationDone(operations);
+      default:
+        return null;
+    }
+  }
+
+  private List<Operation> readOperations() {
+    if (consumeNull()) {
+      return null;
+    }
+    List<Operation> operations = new ArrayList<>();
+    expect('[');
+    if (!consume(']')) {
+      do {
+        operations.add((Operation) readMessage());
+      } while (consume(','));
+      expect(']');
+    }
+    return operations;
+  }
+
+  private Map<String, Integer> readIntegerMap() {
+    if (consumeNull()) {
+      return null;
+    }
+    Map<String, Integer> map = new HashMap<>();
+    expect('{');
+    if (!consume('}')) {
+      do {
+        String name = readString();
+        expect(':');
+        map.put(name, readInt());
+      } while (consume(','));
+      expect('}');
+    }
+    return map;
+  }
+
+  private int readInt() {
+    Object number = readValue();
+    if (number instanceof Integer) {
+      return (Integer) number;
+    } else if (number instanceof Double) {
+      return (int) (double) (Double) number;
+    }
+    throw error("Number expected");
+  }
+
+  private Object readValue() {
+    skipWhitespace();
+    if (pos >= in.length()) {
+      throw error("Value expected");
+    }
+    char c = in.charAt(pos);
+    switch (c) {
+      case '"':
+        return readString();
+      case '{':
+        Map<String, Object> map = new HashMap<>();
+        pos++;
+        if (!consume('}')) {
+          do {
+            String name = readString();
+            expect(':');
+            map.put(name, readValue());
+          } while (consume(','));
+          expect('}');
+        }
+        return map;
+      case '[':
+        List<Object> list = new ArrayList<>();
+        pos++;
+        if (!consume(']')) {
+          do {
+            list.add(readValue());
+          } while (consume(','));
+          expect(']');
+        }
+        return list;
+      case 't':
+        return readLiteral("true", Boolean.TRUE);
+      case 'f':
+        return readLiteral("false", Boolean.FALSE);
+      case 'n':
+        return readLiteral("null", null);
+      default:
+        return readNumber();
+    }
+  }
+
+  private Object readLiteral(String literal, Object value) {
+    if (!in.startsWith(literal, pos)) {
+      throw error("Unknown literal");
+    }
+    pos += literal.length();
+    return value;
+  }
+
+  private Object readNumber() {
+    int start = pos;
+    boolean whole = true;
+    while (pos < in.length()) {
+      char c = in.charAt(pos);
+      if (c == '.' || c == 'e' || c == 'E') {
+        whole = false;
+      } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+        break;
+      }
+      pos++;
+    }
+    if (start == pos) {
+      throw error("Value expected");
+    }
+    String number = in.substring(start, pos);
+    if (whole && number.length() < 10) {
+      return Integer.parseInt(number);
+    }
+    double d = Double.parseDouble(number);
+    if (d == (int) d) {
+      return Integer.valueOf((int) d);
+    }
+    return Double.valueOf(d);
+  }
+
+  private String readString() {
+    skipWhitespace();
+    if (pos >= in.length() || in.charAt(pos) != '"') {
+      throw error("String expected");
+    }
+    int start = ++pos;
+    // without escapes the string is a substring of the input
+    while (pos < in.length()) {
+      char c = in.charAt(pos);
+      if (c == '"') {
+        return in.substring(start, pos++);
+      } else if (c == '\\') {
+        break;
+      }
+      pos++;
+    }
+    StringBuilder sb = new StringBuilder(in.length() - start);
+    sb.append(in, start, pos);
+    while (pos < in.length()) {
+      char c = in.charAt(pos++);
+      if (c == '"') {
+        return sb.toString();
+      } else if (c != '\\') {
+        sb.append(c);
+        continue;
+      } else if (pos >= in.length()) {
+        break;
+      }
+      char escaped = in.charAt(pos++);
+      switch (escaped) {
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'u':
+          if (pos + 4 > in.length()) {
+            throw error("Bad escape");
+          }
+          sb.append((char) Integer.parseInt(in.substring(pos, pos + 4), 16));
+          pos += 4;
+          break;
+        default:
+          sb.append(escaped);
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+  private boolean consumeNull() {
+    skipWhitespace();
+    if (in.startsWith("null", pos)) {
+      pos += 4;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean consume(char c) {
+    skipWhitespace();
+    if (pos < in.length() && in.charAt(pos) == c) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(char c) {
+    if (!consume(c)) {
+      throw error("'" + c + "' expected");
+    }
+  }
+
+  private void skipWhitespace() {
+    while (pos < in.length()) {
+      char c = in.charAt(pos);
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return;
+      }
+      pos++;
+    }
+  }
+
+  private IllegalStateException error(String reason) {
+    return new IllegalStateException(reason + " at position " + pos);
+  }
+}
@@ -0,0 +1,86 @@
+package org.game_api;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.RequestSnapshot;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.UpdateUIDelta;
+
+/**
+ * The game side of the delta mode: rebuilds the {@link UpdateUI}s of the {@link UpdateUIDelta}s.
+ * Like the streams of {@link UpdateUIDeltaEncoder}, the state is kept per player, so a container
+ * that switches players (e.g., {@link GameApi.IteratingPlayerContainer}) keeps sending deltas.
+ * The lastState of a rebuilt UpdateUI is the state of the previous one of the same player (the
+ * same map), so a game that recognizes states by identity can apply lastMove to the state it
+ * already converted. Keys that were deleted or hidden are removed, so they read as null like
+ * before.
+ * <p>
+ * A delta that doesn't follow the previous message of its player can't be applied; until the
+ * next snapshot of that player {@link #decode} returns null and {@link #getSnapshotRequest}
+ * returns the request to send, once.
+ */
+public final class UpdateUIDeltaDecoder {
+  private static class Stream {
+    Map<String, Object> state;
+    List<Map<String, Object>> playersInfo;
+    int sequence = -1;
+    boolean missedDelta = false;
+    boolean snapshotRequested = false;
+  }
+
+  private final Map<String, Stream> streams = new HashMap<>();
+
+  /** Returns the UpdateUI of delta, or null if delta can't be applied. */
+  public UpdateUI decode(UpdateUIDelta delta) {
+    Stream stream = streams.get(delta.getYourPlayerId());
+    if (stream == null) {
+      stream = new Stream();
+      streams.put(delta.getYourPlayerId(), stream);
+    }
+    Map<String, Object> lastState = stream.state;
+    boolean follows = delta.getSequence() == stream.sequence + 1;
+    if (delta.isSnapshot()) {
+      stream.state = Collections.unmodifiableMap(new HashMap<>(delta.getChanges()));
+      stream.playersInfo = delta.getPlayersInfo();
+      stream.missedDelta = false;
+      stream.snapshotRequested = false;
+      // a snapshot doesn't follow the previous state, e.g., the game was just opened
+      lastState = follows ? lastState : null;
+    } else if (!stream.missedDelta && delta.getSequence() <= stream.sequence) {
+      return null;    // already applied
+    } else if (stream.state == null || stream.missedDelta || !follows) {
+      stream.missedDelta = true;
+      return null;
+    } else {
+      Map<String, Object> newState = new HashMap<>(stream.state);
+      for (Map.Entry<String, Object> change : delta.getChanges().entrySet()) {
+        if (change.getValue() == null) {
+          newState.remove(change.getKey());
+        } else {
+          newState.put(change.getKey(), change.getValue());
+        }
+      }
+      stream.state = Collections.unmodifiableMap(newState);
+    }
+    stream.sequence = delta.getSequence();
+    return new UpdateUI(delta.getYourPlayerId(), stream.playersInfo, stream.state, lastState,
+        delta.getLastMove(), delta.getLastMovePlayerId(),
+        delta.getPlayerIdToNumberOfTokensInPot());
+  }
+
+  /**
+   * Returns the RequestSnapshot to send after yourPlayerId missed a delta, or null if there is
+   * none or it was returned already.
+   */
+  public RequestSnapshot getSnapshotRequest(String yourPlayerId) {
+    Stream stream = streams.get(yourPlayerId);
+    if (stream == null || !stream.missedDelta || stream.snapshotRequested) {
+      return null;
+    }
+    stream.snapshotRequested = true;
+    return new RequestSnapshot(yourPlayerId, stream.sequence);
+  }
+}
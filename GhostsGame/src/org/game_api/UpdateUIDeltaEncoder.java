@@ -0,0 +1,73 @@
+package org.game_api;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.UpdateUIDelta;
+
+/**
+ * The container side of the delta mode: turns the states sent to each player into
+ * {@link UpdateUIDelta}s. The first message to a player, and the next one after
+ * {@link #requestSnapshot}, is a snapshot; every other message carries the keys that differ from
+ * the state sent last to that player, which for a Ghosts move is two or three squares and pieces.
+ * <p>
+ * The encoder keeps the last state sent to every player, so the states must not be changed
+ * afterwards (the projections of {@link GameApi.GameState#getStateForPlayerId} never are).
+ */
+public final class UpdateUIDeltaEncoder {
+  private static class Stream {
+    Map<String, Object> sentState;
+    int sequence = -1;
+  }
+
+  private final Map<String, Stream> streams = new HashMap<>();
+
+  public UpdateUIDelta encode(String yourPlayerId, List<Map<String, Object>> playersInfo,
+      Map<String, Object> state, List<Operation> lastMove, String lastMovePlayerId,
+      Map<String, Integer> playerIdToNumberOfTokensInPot) {
+    Stream stream = streams.get(yourPlayerId);
+    if (stream == null) {
+      stream = new Stream();
+      streams.put(yourPlayerId, stream);
+    }
+    stream.sequence++;
+    boolean snapshot = stream.sentState == null;
+    Map<String, Object> changes = snapshot ? state : getChanges(stream.sentState, state);
+    stream.sentState = state;
+    return new UpdateUIDelta(yourPlayerId, stream.sequence, snapshot,
+        snapshot ? playersInfo : null, changes, lastMove, lastMovePlayerId,
+        playerIdToNumberOfTokensInPot);
+  }
+
+  /** Makes the next message to yourPlayerId a snapshot, e.g., after it missed a delta. */
+  public void requestSnapshot(String yourPlayerId) {
+    Stream stream = streams.get(yourPlayerId);
+    if (stream != null) {
+      stream.sentState = null;
+    }
+  }
+
+  // The keys of state whose value differs from sentState, and null for the keys it lost
+  private static Map<String, Object> getChanges(Map<String, Object> sentState,
+      Map<String, Object> state) {
+    Map<String, Object> changes = new HashMap<>();
+    if (sentState == state) {
+      return changes;
+    }
+    for (Map.Entry<String, Object> entry : state.entrySet()) {
+      Object value = entry.getValue();
+      if (!Objects.equals(value, sentState.get(entry.getKey()))) {
+        changes.put(entry.getKey(), value);
+      }
+    }
+    for (Map.Entry<String, Object> entry : sentState.entrySet()) {
+      if (entry.getValue() != null && state.get(entry.getKey()) == null) {
+        changes.put(entry.getKey(), null);
+      }
+    }
+    return changes;
+  }
+}
@@ -0,0 +1,30 @@
+package org.ghosts.ai;
+
+import org.ghosts.client.GhostsState;
+import org.ghosts.client.Move;
+
+/**
+ * Finds the move of the AI player. The search may run asynchronously, the result is delivered
+ * through {@link Callback}. 
+ */
+public interface AiMoveService {
+
+  interface Callback {
+    void onBestMove(Move move);
+  }
+
+  /**
+   * Called when the presenter sees that it plays for the AI, e.g., during the deployment, before
+   * the first search; a service may load what the search needs here.
+   */
+  void prepare();
+
+  /**
+   * Starts searching the best move of state for at most milliseconds. A search that is still
+   * running is cancelled first.
+   */
+  void findBestMove(GhostsState state, int milliseconds, Callback callback);
+
+  /** Cancels the running search, if any. Its callback will not be called. */
+  void cancel();
+}
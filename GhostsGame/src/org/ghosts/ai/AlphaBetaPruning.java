@@ -36,6 +36,7 @@ import org.ghosts.client.Color;
 import org.ghosts.client.GhostsState;
 import org.ghosts.client.Move;
 import org.ghosts.client.Piece;
+import org.ghosts.client.PieceKind;
 import org.ghosts.client.Position;
 
 /**
@@ -61,6 +62,19 @@ public class AlphaBetaPruning {
     private static final long serialVersionUID = 1L;
   }
 
+  // The slice of a step is used up; the root move is evaluated again by the next step
+  static class SliceExpiredException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static final Timer NO_SLICE = new Timer() {
+    @Override
+    public boolean didTimeout() {
+      return false;
+    }
+  };
+
   static class MoveScore<Move> implements Comparable<MoveScore<Move>> {
     Move move;
     int score; 
@@ -71,6 +85,9 @@ public class AlphaBetaPruning {
     }
   }
 
+  /** The depth we ask for, though due to the time limit the search may not reach that deep. */
+  public static final int MAX_DEPTH = 100;
+
   public AlphaBetaPruning(Heuristic heuristic, GhostsState ghostsState) {
     this.heuristic = heuristic;
 
@@ -92,67 +109,150 @@ public class AlphaBetaPruning {
 
 
   public Move findBestMove(int depth, Timer timer) {
-	  
-	boolean isBlack = AIGuessState.getTurn().isBlack();
+    Search search = newSearch(depth, timer);
+    while (search.step()) {
+      // keep searching until we reach depth or get a timeout
+    }
+    return search.getBestMove();
+  }
+
+  /**
+   * Returns a search that can be run in small steps, so that a caller (e.g., a scheduler in the
+   * browser, or an executor on the server) can interleave it with other work or stop it early.
+   */
+  public Search newSearch(int depth, Timer timer) {
+    return new Search(depth, timer);
+  }
+
+  /**
+   * Iterative deepening search of the best move. Each {@link #step} evaluates one root move at
+   * the current depth, and after all root moves of a depth are evaluated they are sorted, which
+   * gives better pruning on the next iteration.
+   */
+  public class Search {
+    private final int depth;
+    private final Timer timer;
+    private final boolean isBlack;
     // For each move, there's a state for it
-    List<GhostsState> states = new ArrayList<GhostsState>();
-    
-    // Do iterative deepening (A*), and slow get better heuristic values for the states.
-    List<MoveScore<Move>> scores = Lists.newArrayList();
-    Iterable<Move> possibleMoves = heuristic.getOrderedMoves(AIGuessState);
-    for (Move move : possibleMoves) {
-      MoveScore<Move> score = new MoveScore<Move>();
-      score.move = move;
-      score.score = Integer.MIN_VALUE;
-      scores.add(score);
-      states.add(new GhostsState(AIGuessState.getTurn(), 
-					 ImmutableList.copyOf(AIGuessState.getPlayerIds()), 
-					 ImmutableList.copyOf(AIGuessState.getPieces()), 
-					 AIGuessState.getSquares(), 
-					 AIGuessState.isWhiteDeployed(), 
-					 AIGuessState.isBlackDeployed()));
-					 
+    private final List<GhostsState> states = new ArrayList<GhostsState>();
+    private final List<MoveScore<Move>> scores = Lists.newArrayList();
+    private int currentDepth = 0;
+    private int currentMove = 0;
+    private int expiredSlices = 0;
+    private boolean finished = false;
+
+    private Search(int depth, Timer timer) {
+      this.depth = depth;
+      this.timer = timer;
+      this.isBlack = AIGuessState.getTurn().isBlack();
+
+      // Do iterative deepening (A*), and slow get better heuristic values for the states.
+      Iterable<Move> possibleMoves = heuristic.getOrderedMoves(AIGuessState);
+      for (Move move : possibleMoves) {
+        MoveScore<Move> score = new MoveScore<Move>();
+        score.move = move;
+        score.score = Integer.MIN_VALUE;
+        scores.add(score);
+        states.add(new GhostsState(AIGuessState.getTurn(), 
+            ImmutableList.copyOf(AIGuessState.getPlayerIds()), 
+            ImmutableList.copyOf(AIGuessState.getPieces()), 
+            AIGuessState.getSquares(), 
+            AIGuessState.isWhiteDeployed(), 
+            AIGuessState.isBlackDeployed()));
+      }
+      finished = depth <= 0 || scores.isEmpty();
     }
 
-    try {
-      for (int i = 0; i < depth; i++) {
-        for (int j = 0; j < scores.size(); j++) {
-          GhostsState state = states.get(j);
-          Move move = null;
-          MoveScore<Move> moveScore = scores.get(j);
-          move = moveScore.move;
-          int score = findMoveScore(makeMove(state, move), i, Integer.MIN_VALUE, Integer.MAX_VALUE, timer);
-          if (!isBlack) {
-            // the scores are from the point of view of the black(AI), so for white
-            // we need to switch. We consider Black as AI player.
-            score = -score;
-          }
-          moveScore.score = score;
+    /**
+     * Evaluates the next root move. Returns false when the search is finished, i.e., we reached
+     * the maximum depth or the timer timed out.
+     */
+    public boolean step() {
+      return step(NO_SLICE);
+    }
+
+    /**
+     * Like {@link #step()}, but also gives up the root move when slice times out, so a scheduler
+     * can bound the time of a step. The root move is then evaluated again from the start by the
+     * next step, and {@link #getExpiredSlices} tells how many slices it used up so far, so the
+     * scheduler can give it a longer one.
+     */
+    public boolean step(Timer slice) {
+      if (finished) {
+        return false;
+      }
+      try {
+        GhostsState state = states.get(currentMove);
+        MoveScore<Move> moveScore = scores.get(currentMove);
+        int score = findMoveScore(makeMove(state, moveScore.move), currentDepth,
+            Integer.MIN_VALUE, Integer.MAX_VALUE, timer, slice);
+        if (!isBlack) {
+          // the scores are from the point of view of the black(AI), so for white
+          // we need to switch. We consider Black as AI player.
+          score = -score;
         }
+        moveScore.score = score;
+      } catch (TimeoutException e) {
+        // OK, it should happen
+        finished = true;
+        return false;
+      } catch (SliceExpiredException e) {
+        expiredSlices++;
+        return true;
+      }
+      expiredSlices = 0;
+      currentMove++;
+      if (currentMove == scores.size()) {
         // This will give better pruning on the next iteration.
-        Collections.sort(scores); 
+        Collections.sort(scores);
+        currentMove = 0;
+        currentDepth++;
+        finished = currentDepth == depth;
       }
-    } catch (TimeoutException e) {
-      // OK, it should happen
+      return !finished;
     }
 
-    Collections.sort(scores);
-    return scores.get(0).move;		// choose the move with highest score(best move)
- 
- 
-//    return new Move(new Position(1,1), new Position(2,1), Move.MoveType.MOVE);
-  }
+    public boolean isFinished() {
+      return finished;
+    }
+
+    /** The number of slices that expired since the last root move was evaluated. */
+    public int getExpiredSlices() {
+      return expiredSlices;
+    }
 
+    /**
+     * Returns the length of the next slice of a scheduler: slice, doubled for each slice that
+     * expired on the current root move, but at most remaining, the time the search has left. So a
+     * root move that takes long gets longer slices until it fits, instead of never finishing.
+     * slice and remaining are in the same unit, e.g., milliseconds.
+     */
+    public long getNextSlice(long slice, long remaining) {
+      long next = slice;
+      for (int i = 0; i < expiredSlices && next < remaining; i++) {
+        next *= 2;
+      }
+      return Math.min(next, remaining);
+    }
+
+    public Move getBestMove() {
+      Collections.sort(scores);
+      return scores.get(0).move;		// choose the move with highest score(best move)
+    }
+  }
 
   /**
    * If we get a timeout, then the score is invalid.
    */
-  private int findMoveScore(final GhostsState passState, int depth, int alpha, int beta, Timer timer)
-      throws TimeoutException {
+  private int findMoveScore(final GhostsState passState, int depth, int alpha, int beta, Timer timer,
+      Timer slice) throws TimeoutException {
     
 	if (timer.didTimeout()) {
 		throw new TimeoutException();
 	}
+	if (slice.didTimeout()) {
+		throw new SliceExpiredException();
+	}
 	
 	GhostsState localstate = new GhostsState(passState.getTurn(), 
 			 ImmutableList.copyOf(passState.getPlayerIds()), 
@@ -171,7 +271,8 @@ public class AlphaBetaPruning {
     Iterable<Move> possibleMoves = heuristic.getOrderedMoves(localstate);
     for (Move move : possibleMoves) {
       count++;
-      int childScore = findMoveScore(makeMove(localstate, move), depth - 1, alpha, beta, timer);
+      int childScore = findMoveScore(makeMove(localstate, move), depth - 1, alpha, beta, timer,
+          slice);
       if (color == null) {
         scoreSum += childScore;
       } else if (color.isBlack()) {
@@ -200,9 +301,9 @@ public class AlphaBetaPruning {
 	  HashMap<Integer, Boolean> notVisiblePieceIndex = new HashMap<Integer, Boolean>();		// store piece index that is not visible to AI
 	  for (int i = 0; i < 6; i++) {						// only need to count white player since black(AI) is visible to itself
 		  for (int j = 0; j < 6; j++) {
-			  String pieceStr = squares.get(new Position(i, j));
+			  String pieceStr = squares.get(Position.of(i, j));
 			  if (pieceStr != null) {
-				  int index = heuristic.stateExplorer.getIndexFromPieceName(pieceStr);
+				  int index = Piece.idOf(pieceStr);
 				  if (index < 8 && !pieces.get(index).isPresent()) {	// if this piece is white piece and not visible(null)
 					  count++;
 					  notVisiblePieceIndex.put(index, true);
@@ -215,9 +316,9 @@ public class AlphaBetaPruning {
 		  Piece piece;
 		  if (notVisiblePieceIndex.containsKey(i)) {		// white piece index
 			  if (count % 2 == 0) {
-				  piece = new Piece("WGood", "P" + i);
+				  piece = new Piece(PieceKind.WGood, i);
 			  } else {
-				  piece = new Piece("WEvil", "P" + i);
+				  piece = new Piece(PieceKind.WEvil, i);
 			  }
 			  count--;
 		  } else if (pieces.get(i).isPresent()) {			// black piece index
@@ -252,7 +353,7 @@ public class AlphaBetaPruning {
 	  for (int i = 0; i < 16; i++) {
 		  Piece piece;
 		  if (endPieceStr != null) {
-			  int index = heuristic.stateExplorer.getIndexFromPieceName(endPieceStr);
+			  int index = Piece.idOf(endPieceStr);
 			  if (index == i) {
 				  piece = null;
 			  } else {
@@ -273,14 +374,15 @@ public class AlphaBetaPruning {
 		  newPieces.add(Optional.fromNullable(piece));
 	  }
 	  
-	  // modify squares, Map will just replace value with the same input key
-	  squares.put(startPos, null);
-	  squares.put(endPos, startPieceStr);
+	  // copy squares, the states of the other branches of the search still use them
+	  Map<Position, String> newSquares = Maps.newHashMap(squares);
+	  newSquares.put(startPos, null);
+	  newSquares.put(endPos, startPieceStr);
 	  
 	  GhostsState newState = new GhostsState(state.getTurn().getOpposite(), 
 				 ImmutableList.copyOf(state.getPlayerIds()), 
 				 ImmutableList.copyOf(newPieces), 
-				 squares, 
+				 newSquares, 
 				 state.isWhiteDeployed(), 
 				 state.isBlackDeployed());
 	  return newState;
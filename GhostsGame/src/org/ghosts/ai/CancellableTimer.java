@@ -0,0 +1,27 @@
+package org.ghosts.ai;
+
+/**
+ * A {@link Timer} that also times out once {@link #cancel} is called, so a running search stops
+ * at its next timeout check.
+ */
+public class CancellableTimer implements Timer {
+  private final Timer timer;
+  private volatile boolean cancelled = false;
+
+  public CancellableTimer(Timer timer) {
+    this.timer = timer;
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  @Override
+  public boolean didTimeout() {
+    return cancelled || timer.didTimeout();
+  }
+}
@@ -19,9 +19,10 @@ package org.ghosts.ai;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import org.ghosts.client.BoardGeometry;
+import org.ghosts.client.Color;
 import org.ghosts.client.GhostsState;
 import org.ghosts.client.Move;
 import org.ghosts.client.Piece;
@@ -35,6 +36,7 @@ public class Heuristic {
 	// We just assume if player has more white ghost, he has more chance to win
 	private static final int ValueOfWhiteGhost = 3;
 	private static final int ValueOfBlackGhost = 1;
+	private static final int MAX_ROWS_TO_EXIT = Position.BOARD_SIZE - 1;
 	public final StateExplorer stateExplorer = new StateExplorer();
 	
 	public Heuristic() {
@@ -53,7 +55,6 @@ public class Heuristic {
 	public int getStateValue(final GhostsState ghostsState) { 
 		int stateValue = 0;
 		List<Optional<Piece>> pieces = ghostsState.getPieces();
-		Map<Position, String> squares = ghostsState.getSquares();
 		
 		// The game is over
 	    if (hasGameEnded(ghostsState)) {
@@ -73,13 +74,13 @@ public class Heuristic {
 	    for (int i = 0; i < 16; i++) {
 	    	if (pieces.get(i).isPresent()) {
 	    		if (pieces.get(i).get().isWhitePiece()) {
-	    			if (pieces.get(i).get().getPieceKind().charAt(1) == 'G') {		// WGood
+	    			if (pieces.get(i).get().isGood()) {		// WGood
 	    				numOfGoodForWhite++;
 	    			} else {														// WEvil
 	    				numOfEvilForWhite++;
 	    			}
 	    		} else {
-	    			if (pieces.get(i).get().getPieceKind().charAt(1) == 'G') {		// BGood
+	    			if (pieces.get(i).get().isGood()) {		// BGood
 	    				numOfGoodForBlack++;
 	    			} else {														// BEvil
 	    				numOfEvilForBlack++;
@@ -91,16 +92,16 @@ public class Heuristic {
 	    		   + (numOfEvilForBlack - numOfEvilForWhite) * ValueOfBlackGhost;
 	    int blackExitValue = 0;
 	    int whiteExitValue = 0;
-	    for (int i = 0; i < 6; i++) {
-	    	for (int j = 0; j < 6; j++) {
-	    		String pieceStr = squares.get(new Position(i, j));
-	    		if (pieceStr != null) {
-	    			int index = stateExplorer.getIndexFromPieceName(pieceStr);
-	    			if (index >= 8) {
-	    				blackExitValue += i;
-	    			} else {
-	    				whiteExitValue += 5 - i;
-	    			}
+	    for (int index = 0; index < Piece.NUMBER_OF_PIECES; index++) {
+	    	Position position = ghostsState.getPosition(index);
+	    	if (position != null) {
+	    		// rows already advanced toward the own exits
+	    		Color color = index >= 8 ? Color.B : Color.W;
+	    		int advance = MAX_ROWS_TO_EXIT - BoardGeometry.getRowsToExit(position.getIndex(), color);
+	    		if (index >= 8) {
+	    			blackExitValue += advance;
+	    		} else {
+	    			whiteExitValue += advance;
 	    		}
 	    	}
 	    }
@@ -150,67 +151,34 @@ public class Heuristic {
 	 * Check four exit square and see if some player has exit 
 	 */
 	public boolean hasGameEnded(final GhostsState state) {
-		Position leftExitForW = new Position(0, 0);
-		Position rightExitForW = new Position(0, 5);
-		Position leftExitForB = new Position(5, 0);
-		Position rightExitForB = new Position(5, 5);
-		Map<Position, String> squares = state.getSquares();
-		List<Optional<Piece>> pieces = state.getPieces();
-		String pieceStr;
-		
-		if (squares.get(leftExitForW) != null) {
-			pieceStr = squares.get(leftExitForW);
-			int index = stateExplorer.getIndexFromPieceName(pieceStr);
-			if (index < 8 && pieces.get(index).get().isWhitePiece()) {
-				return true;
-			}
-		}
-		if (squares.get(rightExitForW) != null) {
-			pieceStr = squares.get(rightExitForW);
-			int index = stateExplorer.getIndexFromPieceName(pieceStr);
-			if (index < 8 && pieces.get(index).get().isWhitePiece()) {
-				return true;
-			}
-		}
-		if (squares.get(leftExitForB) != null) {
-			pieceStr = squares.get(leftExitForB);
-			int index = stateExplorer.getIndexFromPieceName(pieceStr);
-			if (index >= 8 && pieces.get(index).get().isWhitePiece()) {
-				return true;
-			}
-		}
-		if (squares.get(rightExitForB) != null) {
-			pieceStr = squares.get(rightExitForB);
-			int index = stateExplorer.getIndexFromPieceName(pieceStr);
-			if (index >= 8 && pieces.get(index).get().isWhitePiece()) {
-				return true;
-			}
-		}
-		
-		return false;
+		return hasExited(state, Color.W) || ifBlackAIExit(state);
 	}
 	
 	// check if Black player (AI) has exit
 	public boolean ifBlackAIExit(final GhostsState state) {
-		Position leftExitForB = new Position(5, 0);
-		Position rightExitForB = new Position(5, 5);
-		Map<Position, String> squares = state.getSquares();
-		List<Optional<Piece>> pieces = state.getPieces();
-		String pieceStr;
-		if (squares.get(leftExitForB) != null) {
-			pieceStr = squares.get(leftExitForB);
-			int index = stateExplorer.getIndexFromPieceName(pieceStr);
-			if (index >= 8 && pieces.get(index).get().isWhitePiece()) {
-				return true;
-			}
-		}
-		if (squares.get(rightExitForB) != null) {
-			pieceStr = squares.get(rightExitForB);
-			int index = stateExplorer.getIndexFromPieceName(pieceStr);
-			if (index >= 8 && pieces.get(index).get().isWhitePiece()) {
+		return hasExited(state, Color.B);
+	}
+
+	private boolean hasExited(final GhostsState state, Color color) {
+		for (long exits = BoardGeometry.getExitMask(color); exits != 0; exits &= exits - 1) {
+			if (hasExited(state, Long.numberOfTrailingZeros(exits), color.isBlack())) {
 				return true;
 			}
 		}
 		return false;
 	}
+
+	/*
+	 * Check if the piece on exit square belongs to the side of that exit (black pieces are
+	 * P8 ~ P15) and has exited
+	 */
+	public boolean hasExited(final GhostsState state, int exitSquare, boolean isBlackExit) {
+		String pieceStr = state.getSquares().get(Position.of(exitSquare));
+		if (pieceStr == null) {
+			return false;
+		}
+		int index = Piece.idOf(pieceStr);
+		List<Optional<Piece>> pieces = state.getPieces();
+		return (isBlackExit ? index >= 8 : index < 8) && pieces.get(index).get().isWhitePiece();
+	}
 }
@@ -0,0 +1,25 @@
+package org.ghosts.ai;
+
+import org.ghosts.client.GhostsState;
+
+/**
+ * Runs the search on the calling thread and calls the callback before returning.
+ */
+public class SynchronousAiMoveService implements AiMoveService {
+
+  @Override
+  public void prepare() {
+    // The search needs nothing loaded
+  }
+
+  @Override
+  public void findBestMove(GhostsState state, int milliseconds, Callback callback) {
+    AlphaBetaPruning ai = new AlphaBetaPruning(new Heuristic(), state);
+    callback.onBestMove(ai.findBestMove(AlphaBetaPruning.MAX_DEPTH, new DateTimer(milliseconds)));
+  }
+
+  @Override
+  public void cancel() {
+    // Nothing is running once findBestMove returns
+  }
+}
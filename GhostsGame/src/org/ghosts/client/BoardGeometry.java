@@ -0,0 +1,84 @@
+package org.ghosts.client;
+
+/**
+ * Tables of the 6*6 board, computed once when the class is loaded, so the move generation, the
+ * heuristic and the verifiers look geometry up instead of building and filtering Positions.
+ * Squares are indices 0 ~ 35 ({@link Position#indexOf}); a set of squares is a long with bit i
+ * set for square i.
+ */
+public final class BoardGeometry {
+	private static final int SQUARES = Position.NUMBER_OF_SQUARES;
+	private static final int LAST = Position.BOARD_SIZE - 1;
+
+	// The neighbours of every square in the order row - 1, row + 1, col - 1, col + 1
+	private static final int[][] NEIGHBOURS = new int[SQUARES][];
+	private static final long[] NEIGHBOUR_MASKS = new long[SQUARES];
+	// White leaves the board from row 0 and black from the last row, at the corners
+	private static final long WHITE_EXITS =
+			(1L << Position.indexOf(0, 0)) | (1L << Position.indexOf(0, LAST));
+	private static final long BLACK_EXITS =
+			(1L << Position.indexOf(LAST, 0)) | (1L << Position.indexOf(LAST, LAST));
+	private static final String[] SQUARE_KEYS = new String[SQUARES];
+	static {
+		int[] rowSteps = {-1, 1, 0, 0};
+		int[] colSteps = {0, 0, -1, 1};
+		int[] buffer = new int[rowSteps.length];
+		for (int square = 0; square < SQUARES; square++) {
+			int row = Position.rowOf(square);
+			int col = Position.colOf(square);
+			int count = 0;
+			for (int k = 0; k < rowSteps.length; k++) {
+				if (Position.isInsideBoard(row + rowSteps[k], col + colSteps[k])) {
+					int neighbour = Position.indexOf(row + rowSteps[k], col + colSteps[k]);
+					buffer[count++] = neighbour;
+					NEIGHBOUR_MASKS[square] |= 1L << neighbour;
+				}
+			}
+			NEIGHBOURS[square] = new int[count];
+			System.arraycopy(buffer, 0, NEIGHBOURS[square], 0, count);
+			SQUARE_KEYS[square] = ("S" + row) + col;
+		}
+	}
+
+	private BoardGeometry() {
+	}
+
+	/** The number of squares next to square: 2 in a corner, 3 on an edge, 4 inside. */
+	public static int getNeighbourCount(int square) {
+		return NEIGHBOURS[square].length;
+	}
+
+	/** The k-th neighbour of square, in the order row - 1, row + 1, col - 1, col + 1. */
+	public static int getNeighbour(int square, int k) {
+		return NEIGHBOURS[square][k];
+	}
+
+	public static long getNeighbourMask(int square) {
+		return NEIGHBOUR_MASKS[square];
+	}
+
+	/** Returns true if a piece can step from one square to the other. */
+	public static boolean areNeighbours(int square, int otherSquare) {
+		return (NEIGHBOUR_MASKS[square] & (1L << otherSquare)) != 0;
+	}
+
+	/** The squares where the ghosts of color leave the board. */
+	public static long getExitMask(Color color) {
+		return color.isWhite() ? WHITE_EXITS : BLACK_EXITS;
+	}
+
+	public static boolean isExit(int square, Color color) {
+		return (getExitMask(color) & (1L << square)) != 0;
+	}
+
+	/** The number of rows between square and the row of the exits of color. */
+	public static int getRowsToExit(int square, Color color) {
+		int row = Position.rowOf(square);
+		return color.isWhite() ? row : LAST - row;
+	}
+
+	/** The GameApi key "Sxy" of square. */
+	public static String getSquareKey(int square) {
+		return SQUARE_KEYS[square];
+	}
+}
@@ -31,6 +31,10 @@ public class GhostsLogic {
 //	private final ImmutableList<String> visibleToW = ImmutableList.of(wId);
 //	private final ImmutableList<String> visibleToB = ImmutableList.of(bId);
 
+	// Keeps the states of the last verified moves, so the next verification starts from them
+	private final GhostsStateTracker stateTracker = new GhostsStateTracker(this);
+	private final MoveVerifier moveVerifier = new MoveVerifier(this);
+
 	public VerifyMoveDone verify(VerifyMove verifyMove) {
 		try {
 			checkMoveIsLegal(verifyMove);											
@@ -41,11 +45,29 @@ public class GhostsLogic {
 		}
 	}
 
-	/** compare whether lastmove's operations equals to expected operations */
+	/**
+	 * Checks lastMove directly against the last state, and only if it is illegal compares it
+	 * with the expected operations, to describe the difference.
+	 */
 	void checkMoveIsLegal(VerifyMove verifyMove) {
-		List<Operation> expectedOperations = getExpectedOperations(verifyMove);
 	    List<Operation> lastMove = verifyMove.getLastMove();
-	    check(expectedOperations.equals(lastMove), expectedOperations, lastMove);
+	    Map<String, Object> lastApiState = verifyMove.getLastState();
+	    List<String> playerIds = verifyMove.getPlayerIds();
+	    Color turnOfColor = lastApiState.isEmpty() ? null
+	    		: Color.values()[playerIds.indexOf(verifyMove.getLastMovePlayerId())];
+	    GhostsState lastState = lastApiState.isEmpty() ? null
+	    		: stateTracker.getState(lastApiState, turnOfColor, playerIds);
+	    String violation = moveVerifier.findViolation(verifyMove, lastState);
+	    if (violation != null) {
+	    	List<Operation> expectedOperations = getExpectedOperations(verifyMove);
+	    	check(false, violation, expectedOperations, lastMove);
+	    }
+
+	    // The state after this move is the last state of the next move
+	    if (lastState != null) {
+	    	stateTracker.getState(lastApiState, lastMove, verifyMove.getState(), turnOfColor,
+	    			playerIds);
+	    }
 	    
 	    // We don't need to check that the correct player did the move.
 		// However, we do need to check the first move is done by the white player
@@ -64,7 +86,7 @@ public class GhostsLogic {
 	    	return getBoardInitialOperations(playerIds);
 	    } else {	    
 	    	String lastMovePlayerId = verifyMove.getLastMovePlayerId();
-	    	GhostsState lastState = gameApiStateToGhostsState(lastApiState,
+	    	GhostsState lastState = stateTracker.getState(lastApiState,
 	    			Color.values()[playerIds.indexOf(lastMovePlayerId)], playerIds);
 	    	if (!lastState.isWhiteDeployed()) {											// White player needs to deploy
 	    		return getWhiteDeployOperations(lastMove, playerIds);
@@ -257,9 +279,7 @@ public class GhostsLogic {
 		operations.add(new SetTurn(lastState.getPlayerId(turn.getOpposite())));
 		operations.add(new Set(endSquare, movingPiece));
 		operations.add(new Delete(startSquare));
-		int row = (int) (endSquare.charAt(1) - '0');
-		int col = (int) (endSquare.charAt(2) - '0');
-		operations.add(new Delete(squares.get(new Position(row, col))));
+		operations.add(new Delete(squares.get(Position.of(getSquareIndex(endSquare)))));
 		return operations;
 	}
 	
@@ -273,9 +293,7 @@ public class GhostsLogic {
 		operations.add(new SetTurn(lastState.getPlayerId(turn.getOpposite())));
 		operations.add(new Set(endSquare, movingPiece));
 		operations.add(new Delete(startSquare));
-		int row = (int) (endSquare.charAt(1) - '0');
-		int col = (int) (endSquare.charAt(2) - '0');
-		operations.add(new Delete(squares.get(new Position(row, col))));
+		operations.add(new Delete(squares.get(Position.of(getSquareIndex(endSquare)))));
 		for (int i = 0; i < 16; i++) {   		//examine P0 to P15 and set winner's piece  
 			 									//visible to all
 			if (pieces.get(i).isPresent()) {
@@ -297,20 +315,18 @@ public class GhostsLogic {
 
 	// Determine if player is moving to empty square
 	boolean isEndSquareEmpty(String endSquare, GhostsState lastState) {
-		Map<Position, String> squares = lastState.getSquares();
-		int row = (int) (endSquare.charAt(1) - '0');
-		int col = (int) (endSquare.charAt(2) - '0');
-		String pieceStr = squares.get(new Position(row, col));
-		return pieceStr == null;
+		return isEndSquareEmpty(getSquareIndex(endSquare), lastState);
+	}
+
+	boolean isEndSquareEmpty(int endSquare, GhostsState lastState) {
+		return lastState.getSquares().get(Position.of(endSquare)) == null;
 	}
 
 	//Determine if player is moving a good ghost to his exit square
 	boolean isMovingGoodToExit(String movingPiece, String endSquare, GhostsState lastState) {			
 		Color turn = lastState.getTurn();
 		List<Optional<Piece>> pieces = lastState.getPieces();
-		int index = getIndexFromPieceName(movingPiece);
-		char row = endSquare.charAt(1);
-		char col = endSquare.charAt(2);
+		int index = Piece.idOf(movingPiece);
 		
 		if (!pieces.get(index).isPresent()) {				// When you move a good ghost to the exit, you should reveal everything and end the game. 
 															// Reveal will be done by gameState.makeMove(operations);
@@ -319,15 +335,8 @@ public class GhostsLogic {
 			
 		} else {
 		
-			if (turn.isBlack()) {
-				String pieceKind = pieces.get(index).get().getPieceKind();
-				return pieceKind.charAt(1) == 'G' && ((row == '5' && col == '0') 
-													|| (row == '5' && col == '5'));
-			} else {
-				String pieceKind = pieces.get(index).get().getPieceKind();
-				return pieceKind.charAt(1) == 'G' && ((row == '0' && col == '0') 
-													|| (row == '0' && col == '5'));
-			}
+			return pieces.get(index).get().isGood()
+					&& BoardGeometry.isExit(getSquareIndex(endSquare), turn);
 		}
 	}
 
@@ -339,9 +348,9 @@ public class GhostsLogic {
 		if (turn.isBlack()) {
 			for (int i = 8; i < 16; i++) {		
 				if (pieces.get(i).isPresent()) {				//Returns true if this holder contains a (non-null) instance.
-					if (pieces.get(i).get().getPieceKind() == "BGood") {
+					if (pieces.get(i).get().getPieceKind() == PieceKind.BGood) {
 						hasGood = true;
-					} else if (pieces.get(i).get().getPieceKind() == "BEvil") {
+					} else if (pieces.get(i).get().getPieceKind() == PieceKind.BEvil) {
 						hasEvil = true;
 					}
 				}
@@ -352,9 +361,9 @@ public class GhostsLogic {
 		} else {
 			for (int i = 0; i < 8; i++) {
 				if (pieces.get(i).isPresent()) {	
-					if (pieces.get(i).get().getPieceKind() == "WGood") {
+					if (pieces.get(i).get().getPieceKind() == PieceKind.WGood) {
 						hasGood = true;
-					} else if (pieces.get(i).get().getPieceKind() == "WEvil") {
+					} else if (pieces.get(i).get().getPieceKind() == PieceKind.WEvil) {
 						hasEvil = true;
 					}
 				}
@@ -371,22 +380,22 @@ public class GhostsLogic {
 		Color turn = lastState.getTurn();
 		Map<Position, String> squares = lastState.getSquares();
 		List<Optional<Piece>> pieces = lastState.getPieces();
-		String downLeft = squares.get(new Position(5, 0));
-		String downRight = squares.get(new Position(5, 5));
-		String upLeft = squares.get(new Position(0, 0));
-		String upRight = squares.get(new Position(0, 5));
+		String downLeft = squares.get(Position.of(5, 0));
+		String downRight = squares.get(Position.of(5, 5));
+		String upLeft = squares.get(Position.of(0, 0));
+		String upRight = squares.get(Position.of(0, 5));
 
 		if (turn.isBlack()) {
 			if (downLeft != null) {
-				int index = getIndexFromPieceName(downLeft);
+				int index = Piece.idOf(downLeft);
 				if (pieces.get(index).isPresent())
-					return pieces.get(index).get().getPieceKind() == "BGood";
+					return pieces.get(index).get().getPieceKind() == PieceKind.BGood;
 				else
 					return false;
 			} else if (downRight != null) {
-				int index = getIndexFromPieceName(downRight);
+				int index = Piece.idOf(downRight);
 				if (pieces.get(index).isPresent())
-					return pieces.get(index).get().getPieceKind() == "BGood";
+					return pieces.get(index).get().getPieceKind() == PieceKind.BGood;
 				else
 					return false;
 			} else {
@@ -394,15 +403,15 @@ public class GhostsLogic {
 			}
 		} else {
 			if (upLeft != null) {
-				int index = getIndexFromPieceName(upLeft);
+				int index = Piece.idOf(upLeft);
 				if (pieces.get(index).isPresent())
-					return pieces.get(index).get().getPieceKind() == "WGood";
+					return pieces.get(index).get().getPieceKind() == PieceKind.WGood;
 				else
 					return false;
 			} else if (upRight != null) {
-				int index = getIndexFromPieceName(upRight);
+				int index = Piece.idOf(upRight);
 				if (pieces.get(index).isPresent())
-					return pieces.get(index).get().getPieceKind() == "WGood";
+					return pieces.get(index).get().getPieceKind() == PieceKind.WGood;
 				else
 					return false;
 			} else {
@@ -415,18 +424,9 @@ public class GhostsLogic {
 	boolean validStartAndEndSquareNumber(String startSquare, String endSquare) {
 		check(startSquare.length() == 3, startSquare);
 		check(endSquare.length() == 3, endSquare);
-		int i1 = (int) (startSquare.charAt(1) - '0');
-		int i2 = (int) (startSquare.charAt(2) - '0');
-		int i3 = (int) (endSquare.charAt(1) - '0');
-		int i4 = (int) (endSquare.charAt(2) - '0');
-
-		if (Math.abs(i1 - i3) >= 1 && Math.abs(i2 - i4) >= 1)
-			return false;
-
-		return (startSquare.charAt(0) == 'S' && endSquare.charAt(0) == 'S')
-				&& (Math.abs(i1 - i3) == 1 || Math.abs(i2 - i4) == 1)
-				&& (i1 >= 0 && i1 < 6) && (i2 >= 0 && i2 < 6)
-				&& (i3 >= 0 && i3 < 6) && (i4 >= 0 && i4 < 6);
+		int start = Position.indexOfKey(startSquare);
+		int end = Position.indexOfKey(endSquare);
+		return start >= 0 && end >= 0 && BoardGeometry.areNeighbours(start, end);
 	}
 
 	// Determine if movinf piece exists and it is right color
@@ -436,7 +436,7 @@ public class GhostsLogic {
 		if (movingPiece == null) {
 			return false;
 		} else {
-			int index = getIndexFromPieceName(movingPiece);
+			int index = Piece.idOf(movingPiece);
 			if (turn.isBlack()) {
 				if (index >= 8 && index < 16) {
 					return pieces.get(index).isPresent();
@@ -456,23 +456,24 @@ public class GhostsLogic {
 	// Determine if there is a piece on start square
 	boolean movingPieceWasInStartSquare(String movingPiece, String startSquare, 
 			GhostsState lastState) {
-		Map<Position, String> squares = lastState.getSquares();
-		int row = (int) (startSquare.charAt(1) - '0');
-		int col = (int) (startSquare.charAt(2) - '0');
-		String pieceStr = squares.get(new Position(row, col));
-		return (movingPiece.compareTo(pieceStr) == 0);
+		return movingPieceWasInStartSquare(movingPiece, getSquareIndex(startSquare), lastState);
+	}
+
+	boolean movingPieceWasInStartSquare(String movingPiece, int startSquare, 
+			GhostsState lastState) {
+		return Position.of(startSquare).equals(lastState.getPosition(movingPiece));
 	}
 
 	// Determine if player is moving a piece to capture his another piece
 	boolean sameSideCapture(String endSquare, GhostsState lastState) {
-		Color turn = lastState.getTurn();
+		return sameSideCapture(getSquareIndex(endSquare), lastState);
+	}
+
+	boolean sameSideCapture(int endSquare, GhostsState lastState) {
 		List<Optional<Piece>> pieces = lastState.getPieces();
-		Map<Position, String> squares = lastState.getSquares();
-		int row = (int) (endSquare.charAt(1) - '0');
-		int col = (int) (endSquare.charAt(2) - '0');
-		String pieceStr = squares.get(new Position(row, col));
+		String pieceStr = lastState.getSquares().get(Position.of(endSquare));
 		if (pieceStr != null) {
-			int index = getIndexFromPieceName(pieceStr);
+			int index = Piece.idOf(pieceStr);
 			
 			if (pieces.get(index).isPresent()) {// endSquare's piece is not null means it is on
 												// the same
@@ -484,25 +485,9 @@ public class GhostsLogic {
 		return false;
 	}
 
-	String pieceIdToString(int pieceId) {
-		if (pieceId >= 0 && pieceId <= 3)
-			return "WGood";
-		else if (pieceId >= 4 && pieceId <= 7)
-			return "WEvil";
-		else if (pieceId >= 8 && pieceId <= 11)
-			return "BGood";
-		else
-			return "BEvil";
-	}
-	
-	// return int value of the number after "P" in Px/xx
-	int getIndexFromPieceName(String piecename) {
-		if (piecename.length() == 2)
-			return (int)(piecename.charAt(1) - '0');
-		else {			// P10~P15
-			int tenth = (int)(piecename.charAt(1) - '0') * 10;
-			return tenth + (int)(piecename.charAt(2) - '0');
-		}
+	// return square index 0 ~ 35 of square string "Sxy"
+	int getSquareIndex(String squareString) {
+		return Position.indexOf(squareString.charAt(1) - '0', squareString.charAt(2) - '0');
 	}
 
 	List<String> getPiecesInRange(int fromInclusive, int toInclusive) {
@@ -530,7 +515,7 @@ public class GhostsLogic {
 	}
 
 	@SuppressWarnings("unchecked")
-	GhostsState gameApiStateToGhostsState(Map<String, Object> gameApiState, 
+	public GhostsState gameApiStateToGhostsState(Map<String, Object> gameApiState, 
 			Color turnOfColor, List<String> playerIds) {
 		List<Optional<Piece>> Pieces = Lists.newArrayList();
 		Map<Position, String> Squares = Maps.newHashMap();
@@ -543,7 +528,7 @@ public class GhostsLogic {
 			if (pieceString == null) { // means not visible
 				piece = null;
 			} else {
-				piece = new Piece(pieceString, P + i);
+				piece = new Piece(PieceKind.fromString(pieceString), i);
 			}
 			Pieces.add(Optional.fromNullable(piece));
 		}
@@ -553,21 +538,26 @@ public class GhostsLogic {
 			for (int j = 0; j < 6; j++) {
 				// if squareString is null, meaning no piece here
 				String squareString = (String) gameApiState.get((S + i) + j);
-				Position pos = new Position(i, j);
-				Squares.put(pos, squareString);
+				Squares.put(Position.of(i, j), squareString);
 			}
 		}
 		
 		/** Convert Deploy info to GhostsState form */
 		String wDeployInfo = (String) gameApiState.get(WDeployed);
 		String bDeployInfo = (String) gameApiState.get(BDeployed);
-		wFinished = (wDeployInfo == "true") ? true : false;
-		bFinished = (bDeployInfo == "true") ? true : false;
+		wFinished = isDeployedValue(wDeployInfo);
+		bFinished = isDeployedValue(bDeployInfo);
 
 		return new GhostsState(turnOfColor, ImmutableList.copyOf(playerIds),
 				ImmutableList.copyOf(Pieces), Squares, wFinished, bFinished);
 	}
 	
+	// Value of the WDeployed/BDeployed keys
+	static boolean isDeployedValue(Object deployInfo) {
+		// decoded states hold new String objects, so compare by value
+		return "true".equals(deployInfo);
+	}
+
 	<T> List<T> concat(List<T> a, List<T> b) {
 	    return Lists.newArrayList(Iterables.concat(a, b));
 	}
@@ -6,9 +6,9 @@ import java.util.Map;
 import java.util.Random;
 
 import org.game_api.GameApi.*;
-import org.ghosts.ai.AlphaBetaPruning;
-import org.ghosts.ai.DateTimer;
-import org.ghosts.ai.Heuristic;
+import org.game_api.UpdateUIDeltaDecoder;
+import org.ghosts.ai.AiMoveService;
+import org.ghosts.ai.SynchronousAiMoveService;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
@@ -87,13 +87,22 @@ public class GhostsPresenter {
 		void setAnimateArgs(List<Piece> piecesList, Map<Position, String> squares, Position startPos, Position endPosition, boolean isDnd);
 	}
 
+	// The move of the AI takes at most 2.5 second
+	private static final int AI_TIME_LIMIT_MILLIS = 2500;
+
 	private final GhostsLogic ghostsLogic = new GhostsLogic();
+	private final GhostsStateTracker stateTracker = new GhostsStateTracker(ghostsLogic);
+	private final UpdateUIDeltaDecoder deltaDecoder = new UpdateUIDeltaDecoder();
 	private final View view;
 	private final Container container;
+	private final AiMoveService aiMoveService;
 	/** A viewer doesn't have a color. */
 	private Optional<Color> myColor;
 	private boolean hasAiMakeMove = true;
+	/** The state of the search that is running, or null. */
+	private Map<String, Object> searchedApiState;
 	private GhostsState ghostsState;
+	private LegalMoves legalMoves;
 	private List<Piece> selectedPieceToMove;
 	private List<Piece> selectedPieceToDeploy;
 	private final List<Boolean> pieceDeployed = Lists.newArrayList();
@@ -104,8 +113,13 @@ public class GhostsPresenter {
 
 	
 	public GhostsPresenter(View view, Container container) {
+		this(view, container, new SynchronousAiMoveService());
+	}
+
+	public GhostsPresenter(View view, Container container, AiMoveService aiMoveService) {
 		this.view = view;
 		this.container = container;
+		this.aiMoveService = aiMoveService;
 		view.setPresenter(this);
 		
 		for (int i = 0; i < 16; i++) {								// Initialize pieceDeployed
@@ -113,18 +127,23 @@ public class GhostsPresenter {
 		}
 	    for (int i = 0; i < 2; i++) {								// Initialize possiblePositions for deploy phase
 			for (int j = 1; j < 5; j++) {
-				bPossiblePositions.add(new Position(i,j));
+				bPossiblePositions.add(Position.of(i,j));
 			}
 	    }
 	    for (int i = 4; i < 6; i++) {
 			for (int j = 1; j < 5; j++) {
-				wPossiblePositions.add(new Position(i,j));
+				wPossiblePositions.add(Position.of(i,j));
 			}
 	    }
 	}
 
 	/** Updates the presenter and the view with the state in updateUI. */
 	public void updateUI(UpdateUI updateUI) {
+		if (searchedApiState != null && !searchedApiState.equals(updateUI.getState())) {
+			aiMoveService.cancel();		// a search for an older state is useless now
+			searchedApiState = null;
+			hasAiMakeMove = false;		// so the search starts again if it's still the AI's turn
+		}
 		List<String> playerIds = updateUI.getPlayerIds();
 		String yourPlayerId = updateUI.getYourPlayerId();
 	    int yourPlayerIndex = updateUI.getPlayerIndex(yourPlayerId);
@@ -147,7 +166,13 @@ public class GhostsPresenter {
 	      }
 	    }	
 	    
-	    ghostsState = ghostsLogic.gameApiStateToGhostsState(updateUI.getState(), turnOfColor, playerIds);
+	    if (updateUI.isAiPlayer()) {
+	    	aiMoveService.prepare();		// e.g., load the AI while the pieces are deployed
+	    }
+
+	    ghostsState = stateTracker.getState(updateUI.getLastState(), updateUI.getLastMove(),
+	    		updateUI.getState(), turnOfColor, playerIds);
+	    legalMoves = new LegalMoves(ghostsState);
     
 	    if (!ghostsState.isWhiteDeployed()) {						// The W player initialize board and deploy
 	    	if (myColor.isPresent() && myColor.get().isWhite()) {
@@ -177,23 +202,15 @@ public class GhostsPresenter {
 	    if (updateUI.isAiPlayer()) {							
 	        if (!hasAiMakeMove) {	       	        	
 	        	hasAiMakeMove = true;
-	        	Heuristic heuristic = new Heuristic();	          
-			
-		        AlphaBetaPruning ai = new AlphaBetaPruning(heuristic, ghostsState);
-		        
-		        // The move of the AI takes at most 5 second
-		        DateTimer timer = new DateTimer(2500);
-	       
-		        // The depth is 4 though due to the time limit, it may not reach that deep
-		        Move move = ai.findBestMove(100, timer);
-		        
-		        String startSquare = move.getStart().toSquareString();
-		        String endSquare = move.getDestination().toSquareString();
-		        String movingPiece = ghostsState.getSquares().get(move.getStart());							
-
-		        view.setAnimateArgs(getPiecesList(), ghostsState.getSquares(), move.getStart(), move.getDestination(), false);
-		        container.sendMakeMove(ghostsLogic.getMove(movingPiece, startSquare, 
-		        		endSquare, ghostsState));
+	        	final GhostsState searchedState = ghostsState;
+	        	searchedApiState = updateUI.getState();
+	        	aiMoveService.findBestMove(searchedState, AI_TIME_LIMIT_MILLIS, new AiMoveService.Callback() {
+	        		@Override
+	        		public void onBestMove(Move move) {
+	        			searchedApiState = null;
+	        			sendAiMove(searchedState, move);
+	        		}
+	        	});
 		        return;
 	        }
 	    }	   
@@ -218,6 +235,35 @@ public class GhostsPresenter {
 	    }
 	}
 
+	/**
+	 * Updates the presenter with a delta of a container in delta mode (see {@link DeltaContainer}).
+	 * The state of the previous update is the lastState of the delta, so {@link #stateTracker}
+	 * applies the move to the GhostsState it already has. After a missed delta the container is
+	 * asked for a snapshot, and the deltas are ignored until it arrives.
+	 */
+	public void updateUIDelta(UpdateUIDelta delta) {
+		UpdateUI updateUI = deltaDecoder.decode(delta);
+		if (updateUI != null) {
+			updateUI(updateUI);
+			return;
+		}
+		RequestSnapshot request = deltaDecoder.getSnapshotRequest(delta.getYourPlayerId());
+		if (request != null && container instanceof DeltaContainer) {
+			((DeltaContainer) container).sendRequestSnapshot(request);
+		}
+	}
+
+	// Send the move found by AI, state is the state the AI searched from
+	private void sendAiMove(GhostsState state, Move move) {
+		String startSquare = move.getStart().toSquareString();
+		String endSquare = move.getDestination().toSquareString();
+		String movingPiece = state.getSquares().get(move.getStart());
+
+		view.setAnimateArgs(getPiecesList(), state.getSquares(), move.getStart(), move.getDestination(), false);
+		container.sendMakeMove(ghostsLogic.getMove(movingPiece, startSquare, 
+				endSquare, state));
+	}
+
 	private void chooseNextPieceToDeploy() {
 		view.chooseNextPieceToDeploy(getPiecesList(), deployTable, ghostsState.getTurn(), pieceDeployed);
 	}
@@ -253,12 +299,12 @@ public class GhostsPresenter {
 	 */
 	public void squareSelectedToMove(Position endPosition, boolean isDnd) {
 		check(isMyTurn() && !selectedPieceToMove.isEmpty()												// Sometimes will throw unhandled exception!!!
-				&& getPossiblePositionsToMove().contains(endPosition));
+				&& legalMoves.isLegal(selectedPieceToMove.get(0).getPieceId(), endPosition));
 		Piece p = selectedPieceToMove.get(0);
 		String movingPiece, startSquare;
 		movingPiece = p.getPieceName();
-		startSquare = getSquarePositionFromPieceName(movingPiece).toSquareString();
-		Position startPos = getSquarePositionFromPieceName(movingPiece);
+		Position startPos = ghostsState.getPosition(movingPiece);
+		startSquare = startPos.toSquareString();
 
 		view.setAnimateArgs(getPiecesList(), ghostsState.getSquares(), startPos, endPosition, isDnd);
 		container.sendMakeMove(ghostsLogic.getMove(movingPiece, startSquare, 
@@ -300,7 +346,7 @@ public class GhostsPresenter {
 		
 		Piece p = selectedPieceToDeploy.get(0);
 		deployOperations.add(new Set(deployPosition.toSquareString(), p.getPieceName()));
-		pieceDeployed.set(ghostsLogic.getIndexFromPieceName(p.getPieceName()), true);
+		pieceDeployed.set(p.getPieceId(), true);
 		selectedPieceToDeploy.clear();												//	during deploy, no move sent to server, so must clear
 		if (myColor.get().isWhite()) {
 			wPossiblePositions.remove(deployPosition);
@@ -378,47 +424,13 @@ public class GhostsPresenter {
 	 * Position scan order: down, up, left, right
 	 */
 	private List<Position> getPossiblePositionsToMove() {		
-		Piece p = selectedPieceToMove.get(0);
-		String movingPiece;
-		movingPiece = p.getPieceName();										
-		Position origin = getSquarePositionFromPieceName(movingPiece);
-		int row = origin.getRow();
-		int col = origin.getCol();
-		List<Position> possiblePositions = Lists.newArrayList();
-		List<Position> list = Lists.newArrayList();
-		list.add(new Position(row - 1, col));
-		list.add(new Position(row + 1, col));
-		list.add(new Position(row, col - 1));
-		list.add(new Position(row, col + 1));
-		for (Position pos : list) {
-			if (isInsideBoard(pos) && !ghostsLogic.sameSideCapture(pos.toSquareString(), ghostsState)) {
-				possiblePositions.add(pos);
-			}
-		}
-		return possiblePositions;
-	}
-	
-	private boolean isInsideBoard(Position p) {
-		int row = p.getRow();
-		int col = p.getCol();
-		return row >= 0 && row <= 5 && col >= 0 && col <= 5;
+		return legalMoves.getTargets(selectedPieceToMove.get(0).getPieceId());
 	}
 	
 	private boolean isMyTurn() {
 	    return myColor.isPresent() && myColor.get() == ghostsState.getTurn();
 	}
 
-	private Position getSquarePositionFromPieceName(String piece) {			// Must can return the square string from name of selected piece
-		Map<Position, String> squares = ghostsState.getSquares();
-		for (Position p : squares.keySet()) {
-			if (squares.get(p) != null) {
-				if (squares.get(p).compareTo(piece) == 0)
-					return p;
-			}
-		}
-		return null;
-	}
-	
 	/*
 	 * Return a List<Piece> form of piecelist, if not visible then it's null
 	 */
@@ -445,6 +457,16 @@ public class GhostsPresenter {
 	    return this.ghostsState;
 	}
 	
+	/** The moves of the player to move in {@link #getState}. */
+	public LegalMoves getLegalMoves() {
+		return legalMoves;
+	}
+	
+	/** The piece selected to move, or null if none is selected. */
+	public Piece getSelectedPieceToMove() {
+		return selectedPieceToMove == null || selectedPieceToMove.isEmpty() ? null : selectedPieceToMove.get(0);
+	}
+	
 	/*
 	 * check if both player finish deployment
 	 */
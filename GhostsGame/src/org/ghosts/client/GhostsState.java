@@ -2,6 +2,7 @@ package org.ghosts.client;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collections;
 import java.util.Map;
 
 import com.google.common.base.Optional;
@@ -24,6 +25,11 @@ public class GhostsState {
 	 * @arg Position here will be object of Position class
 	 */
 	private final Map<Position, String> Squares;
+	/**
+	 * The reverse of Squares: piecePositions[i] is the position of Pi, or null if Pi is not on
+	 * the board. Squares can't be changed through the state, so the index stays consistent.
+	 */
+	private final Position[] piecePositions = new Position[Piece.NUMBER_OF_PIECES];
 	
 	// if one player hasn't deploy his ghosts, then game cannot start
 	boolean wDeployFinished;
@@ -36,7 +42,12 @@ public class GhostsState {
 		this.turn = checkNotNull(turn);
 		this.playerIds = checkNotNull(playerIds);
 		this.Pieces = checkNotNull(Pieces);
-		this.Squares = checkNotNull(Squares);
+		this.Squares = Collections.unmodifiableMap(checkNotNull(Squares));
+		for (Map.Entry<Position, String> entry : Squares.entrySet()) {
+			if (entry.getValue() != null) {
+				piecePositions[Piece.idOf(entry.getValue())] = entry.getKey();
+			}
+		}
 		this.wDeployFinished = wDeployFinished;
 		this.bDeployFinished = bDeployFinished;
 	}
@@ -49,9 +60,20 @@ public class GhostsState {
 		return Pieces;
 	}
 
+	/** The squares as an unmodifiable map; the state owns the map passed to its constructor. */
 	public Map<Position, String> getSquares() {
 		return Squares;
 	}
+
+	/** Returns the position of piece pieceId (0 ~ 15), or null if it is not on the board. */
+	public Position getPosition(int pieceId) {
+		return piecePositions[pieceId];
+	}
+
+	/** Returns the position of pieceName (one of "P0" ~ "P15"), or null if it is not on the board. */
+	public Position getPosition(String pieceName) {
+		return piecePositions[Piece.idOf(pieceName)];
+	}
 	
 	public boolean isWhiteDeployed() {
 		return wDeployFinished;
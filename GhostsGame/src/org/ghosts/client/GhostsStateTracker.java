@@ -0,0 +1,216 @@
+package org.ghosts.client;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.SetVisibility;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Converts the GameApi states of a match to GhostsStates, reusing the previous conversion.
+ *
+ * When the state before a move was converted already, the state after the move is derived from
+ * it by re-reading only the keys that the move sets, deletes or reveals; every other move
+ * (e.g., the board initialization with Shuffle) and every state we haven't seen before is
+ * converted in full by {@link GhostsLogic#gameApiStateToGhostsState}.
+ * The states are recognized by identity first and then by equality, so both the maps of an
+ * in-process container and the maps decoded from messages work.
+ *
+ * With crossCheck on, every incremental conversion is compared with the full one (for tests).
+ */
+public class GhostsStateTracker {
+	// The states of both players and the viewer, before and after the last move
+	private static final int CACHE_SIZE = 4;
+	private static final String P = "P";
+	private static final String S = "S";
+	private static final String WDeployed = "WDeployed";
+	private static final String BDeployed = "BDeployed";
+
+	private final GhostsLogic ghostsLogic;
+	private final boolean crossCheck;
+	private final LinkedList<CacheEntry> cache = Lists.newLinkedList();
+	private int fullConversions = 0;
+	private int incrementalConversions = 0;
+
+	public GhostsStateTracker(GhostsLogic ghostsLogic) {
+		this(ghostsLogic, false);
+	}
+
+	public GhostsStateTracker(GhostsLogic ghostsLogic, boolean crossCheck) {
+		this.ghostsLogic = ghostsLogic;
+		this.crossCheck = crossCheck;
+	}
+
+	/** Returns the GhostsState of apiState, converting it in full unless we have seen it. */
+	public GhostsState getState(Map<String, Object> apiState, Color turn, List<String> playerIds) {
+		CacheEntry entry = find(apiState, playerIds, true);
+		if (entry == null) {
+			fullConversions++;
+			entry = new CacheEntry(apiState,
+					ghostsLogic.gameApiStateToGhostsState(apiState, turn, playerIds));
+			add(entry);
+		}
+		return withTurn(entry.ghostsState, turn);
+	}
+
+	/**
+	 * Returns the GhostsState of apiState, which lastMove made from lastApiState.
+	 * lastApiState may be null, e.g., before the first move.
+	 */
+	public GhostsState getState(Map<String, Object> lastApiState, List<Operation> lastMove,
+			Map<String, Object> apiState, Color turn, List<String> playerIds) {
+		CacheEntry entry = find(apiState, playerIds, false);
+		if (entry != null) {
+			return withTurn(entry.ghostsState, turn);
+		}
+		CacheEntry lastEntry = lastApiState == null ? null : find(lastApiState, playerIds, true);
+		if (lastEntry == null || !isIncremental(lastMove)) {
+			fullConversions++;
+			entry = new CacheEntry(apiState,
+					ghostsLogic.gameApiStateToGhostsState(apiState, turn, playerIds));
+			add(entry);
+			return entry.ghostsState;
+		}
+		incrementalConversions++;
+		GhostsState ghostsState = applyMove(lastEntry.ghostsState, lastMove, apiState, turn);
+		if (crossCheck) {
+			checkSameState(ghostsState,
+					ghostsLogic.gameApiStateToGhostsState(apiState, turn, playerIds));
+		}
+		add(new CacheEntry(apiState, ghostsState));
+		return ghostsState;
+	}
+
+	public int getFullConversions() {
+		return fullConversions;
+	}
+
+	public int getIncrementalConversions() {
+		return incrementalConversions;
+	}
+
+	// Equal (but not identical) maps are only looked for if checkEquals, since comparing with a
+	// state that differs in a few keys costs about as much as converting it
+	private CacheEntry find(Map<String, Object> apiState, List<String> playerIds,
+			boolean checkEquals) {
+		for (CacheEntry entry : cache) {
+			if (entry.apiState == apiState && entry.ghostsState.getPlayerIds().equals(playerIds)) {
+				return entry;
+			}
+		}
+		if (checkEquals) {
+			for (CacheEntry entry : cache) {
+				if (entry.apiState.equals(apiState)
+						&& entry.ghostsState.getPlayerIds().equals(playerIds)) {
+					return entry;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void add(CacheEntry entry) {
+		cache.addFirst(entry);
+		if (cache.size() > CACHE_SIZE) {
+			cache.removeLast();
+		}
+	}
+
+	// Only moves that change single keys can be applied key by key
+	private boolean isIncremental(List<Operation> lastMove) {
+		if (lastMove == null) {
+			return false;
+		}
+		for (Operation operation : lastMove) {
+			if (!(operation instanceof Set || operation instanceof Delete
+					|| operation instanceof SetVisibility || operation instanceof SetTurn
+					|| operation instanceof EndGame)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Re-reads the keys of lastMove from apiState; pieces and squares that lastMove didn't touch
+	// are shared with lastState
+	private GhostsState applyMove(GhostsState lastState, List<Operation> lastMove,
+			Map<String, Object> apiState, Color turn) {
+		List<Optional<Piece>> pieces = Lists.newArrayList(lastState.getPieces());
+		Map<Position, String> squares = Maps.newHashMap(lastState.getSquares());
+		boolean wFinished = lastState.isWhiteDeployed();
+		boolean bFinished = lastState.isBlackDeployed();
+		for (Operation operation : lastMove) {
+			String key;
+			if (operation instanceof Set) {
+				key = ((Set) operation).getKey();
+			} else if (operation instanceof Delete) {
+				key = ((Delete) operation).getKey();
+			} else if (operation instanceof SetVisibility) {
+				key = ((SetVisibility) operation).getKey();
+			} else {
+				continue;
+			}
+			Object value = apiState.get(key);
+			if (key.startsWith(P)) {
+				int pieceId = Piece.idOf(key);
+				pieces.set(pieceId, value == null ? Optional.<Piece>absent()
+						: Optional.of(new Piece(PieceKind.fromString((String) value), pieceId)));
+			} else if (key.startsWith(S)) {
+				squares.put(Position.of(ghostsLogic.getSquareIndex(key)), (String) value);
+			} else if (key.equals(WDeployed)) {
+				wFinished = GhostsLogic.isDeployedValue(value);
+			} else if (key.equals(BDeployed)) {
+				bFinished = GhostsLogic.isDeployedValue(value);
+			}
+		}
+		return new GhostsState(turn, lastState.getPlayerIds(), ImmutableList.copyOf(pieces),
+				squares, wFinished, bFinished);
+	}
+
+	private GhostsState withTurn(GhostsState ghostsState, Color turn) {
+		if (ghostsState.getTurn() == turn) {
+			return ghostsState;
+		}
+		return new GhostsState(turn, ghostsState.getPlayerIds(), ghostsState.getPieces(),
+				ghostsState.getSquares(), ghostsState.isWhiteDeployed(),
+				ghostsState.isBlackDeployed());
+	}
+
+	// Piece equality only compares the kinds, so the ids are compared too
+	private void checkSameState(GhostsState incremental, GhostsState full) {
+		boolean same = incremental.getTurn() == full.getTurn()
+				&& incremental.getPlayerIds().equals(full.getPlayerIds())
+				&& incremental.getSquares().equals(full.getSquares())
+				&& incremental.isWhiteDeployed() == full.isWhiteDeployed()
+				&& incremental.isBlackDeployed() == full.isBlackDeployed();
+		for (int i = 0; same && i < Piece.NUMBER_OF_PIECES; i++) {
+			Optional<Piece> a = incremental.getPieces().get(i);
+			Optional<Piece> b = full.getPieces().get(i);
+			same = a.equals(b) && (!a.isPresent() || a.get().getPieceId() == b.get().getPieceId());
+		}
+		if (!same) {
+			throw new IllegalStateException("Incremental GhostsState differs from full conversion,"
+					+ " squares=" + incremental.getSquares() + " expected " + full.getSquares());
+		}
+	}
+
+	private static class CacheEntry {
+		final Map<String, Object> apiState;
+		final GhostsState ghostsState;
+
+		CacheEntry(Map<String, Object> apiState, GhostsState ghostsState) {
+			this.apiState = apiState;
+			this.ghostsState = ghostsState;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.ghosts.client;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The moves the player to move can make in one {@link GhostsState}, computed once when the state
+ * arrives. A piece can move to each neighbour square that is inside the board and not occupied by
+ * a piece of its own side. The table is indexed both by piece and by target square, so the checks
+ * of the presenter, the input router and the drop controllers are O(1).
+ */
+public final class LegalMoves {
+	// bit i of targetsOf[pieceId] is set if the piece can move to square i
+	private final long[] targetsOf = new long[Piece.NUMBER_OF_PIECES];
+	// bit pieceId of piecesMovingTo[i] is set if the piece can move to square i
+	private final int[] piecesMovingTo = new int[Position.NUMBER_OF_SQUARES];
+	private final List<ImmutableList<Position>> targetLists;
+
+	public LegalMoves(GhostsState state) {
+		int[] occupants = new int[Position.NUMBER_OF_SQUARES];
+		for (int i = 0; i < occupants.length; i++) {
+			occupants[i] = -1;
+		}
+		for (int pieceId = 0; pieceId < Piece.NUMBER_OF_PIECES; pieceId++) {
+			Position position = state.getPosition(pieceId);
+			if (position != null) {
+				occupants[position.getIndex()] = pieceId;
+			}
+		}
+		boolean whiteMoves = state.getTurn().isWhite();
+		ImmutableList.Builder<ImmutableList<Position>> lists = ImmutableList.builder();
+		for (int pieceId = 0; pieceId < Piece.NUMBER_OF_PIECES; pieceId++) {
+			Position origin = state.getPosition(pieceId);
+			if (origin == null || Piece.isWhitePieceId(pieceId) != whiteMoves) {
+				lists.add(ImmutableList.<Position>of());
+				continue;
+			}
+			// Position scan order: down, up, left, right
+			ImmutableList.Builder<Position> targets = ImmutableList.builder();
+			for (int k = 0; k < BoardGeometry.getNeighbourCount(origin.getIndex()); k++) {
+				int square = BoardGeometry.getNeighbour(origin.getIndex(), k);
+				int occupant = occupants[square];
+				if (occupant >= 0 && Piece.isWhitePieceId(occupant) == whiteMoves) {
+					continue;		// same side capture
+				}
+				targetsOf[pieceId] |= 1L << square;
+				piecesMovingTo[square] |= 1 << pieceId;
+				targets.add(Position.of(square));
+			}
+			lists.add(targets.build());
+		}
+		targetLists = lists.build();
+	}
+
+	/** Returns true if the piece can move to target. */
+	public boolean isLegal(int pieceId, Position target) {
+		return target.isInsideBoard() && (targetsOf[pieceId] & (1L << target.getIndex())) != 0;
+	}
+
+	/** Returns true if some piece can move to target. */
+	public boolean isTarget(Position target) {
+		return target.isInsideBoard() && piecesMovingTo[target.getIndex()] != 0;
+	}
+
+	/** Returns true if the piece can move at all. */
+	public boolean hasMoves(int pieceId) {
+		return targetsOf[pieceId] != 0;
+	}
+
+	/** The squares the piece can move to, in the order down, up, left, right. */
+	public List<Position> getTargets(int pieceId) {
+		return targetLists.get(pieceId);
+	}
+}
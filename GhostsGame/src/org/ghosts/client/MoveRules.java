@@ -0,0 +1,226 @@
+package org.ghosts.client;
+
+import static org.game_api.GameApi.ALL;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.SetVisibility;
+
+/**
+ * The rules of a deploy and of a move, checked operation by operation against a {@link Board}.
+ * {@link MoveVerifier} checks the moves of a game against the GhostsState of the last state and
+ * {@link org.ghosts.server.ReplayVerifier} replays logs on a compact board; both use these rules,
+ * so they accept the same moves and report the same violations.
+ */
+public final class MoveRules {
+	public static final int PIECES_PER_PLAYER = Piece.NUMBER_OF_PIECES / 2;
+	private static final String WDeployed = "WDeployed";
+	private static final String BDeployed = "BDeployed";
+	private static final String TRUE = "true";
+
+	/** The board before the move, as far as the verifier can see it. */
+	public interface Board {
+		Color getTurn();
+
+		String getPlayerId(Color color);
+
+		/** The id of the piece on square, or -1 if the square is empty. */
+		int getPieceAt(int square);
+
+		/** The kind of pieceId before the move, or null if the verifier can't see it. */
+		PieceKind getKind(int pieceId);
+
+		/**
+		 * The kind of pieceId after the move, e.g., revealed by an exit, or null if the verifier
+		 * can't see it.
+		 */
+		PieceKind getKindAfterMove(int pieceId);
+	}
+
+	private MoveRules() {
+	}
+
+	/**
+	 * Returns null if move is a legal deploy of color, otherwise the first rule it breaks. The
+	 * deploy is the same on every board, so it only needs the player ids.
+	 */
+	public static String findDeployViolation(List<Operation> move, List<String> playerIds,
+			Color color) {
+		if (move.size() != PIECES_PER_PLAYER + 2) {
+			return "Deploy must set " + PIECES_PER_PLAYER + " squares";
+		}
+		if (!isSetTurn(move.get(0), playerIds.get(color.getOpposite().ordinal()))) {
+			return "Deploy must pass the turn to the opponent";
+		}
+		int firstRow = getFirstDeployRow(color);
+		int firstPiece = color.isWhite() ? 0 : PIECES_PER_PLAYER;
+		int squareMask = 0;
+		int pieceMask = 0;
+		for (int i = 1; i <= PIECES_PER_PLAYER; i++) {
+			if (!(move.get(i) instanceof Set)) {
+				return "Deploy must only set squares";
+			}
+			Set set = (Set) move.get(i);
+			int square = Position.indexOfKey(set.getKey());
+			int pieceId = set.getValue() instanceof String ? Piece.idOfKey((String) set.getValue()) : -1;
+			if (square < 0 || Position.rowOf(square) < firstRow
+					|| Position.rowOf(square) > firstRow + 1 || Position.colOf(square) < 1
+					|| Position.colOf(square) > Position.BOARD_SIZE - 2) {
+				return "Not a deploy square: " + set.getKey();
+			}
+			if (pieceId < firstPiece || pieceId >= firstPiece + PIECES_PER_PLAYER) {
+				return "Not a piece of the deploying player: " + set.getValue();
+			}
+			if (!ALL.equals(set.getVisibleToPlayerIds())) {
+				return "Deployed squares must be visible to all: " + set;
+			}
+			// 2 rows of 4 deploy squares, 8 pieces
+			int squareBit = 1 << ((Position.rowOf(square) - firstRow) * 4 + Position.colOf(square) - 1);
+			int pieceBit = 1 << (pieceId - firstPiece);
+			if ((squareMask & squareBit) != 0 || (pieceMask & pieceBit) != 0) {
+				return "Square or piece deployed twice: " + set;
+			}
+			squareMask |= squareBit;
+			pieceMask |= pieceBit;
+		}
+		Operation last = move.get(PIECES_PER_PLAYER + 1);
+		if (!(last instanceof Set) || !((Set) last).getKey().equals(color.isWhite() ? WDeployed : BDeployed)
+				|| !TRUE.equals(((Set) last).getValue())
+				|| !ALL.equals(((Set) last).getVisibleToPlayerIds())) {
+			return "Deploy must end by setting " + (color.isWhite() ? WDeployed : BDeployed);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns null if move is a legal move of the player to move on board, otherwise the first
+	 * rule it breaks. A legal move sets the end square (operation 1), deletes the start square
+	 * (2), deletes a captured piece (3) and, if a good ghost exits, ends the game.
+	 */
+	public static String findMoveViolation(List<Operation> move, Board board) {
+		Color turn = board.getTurn();
+		if (move.size() < 3) {
+			return "A move has at least 3 operations";
+		}
+		if (!isSetTurn(move.get(0), board.getPlayerId(turn.getOpposite()))) {
+			return "A move must pass the turn to the opponent";
+		}
+		if (!(move.get(1) instanceof Set) || !(move.get(2) instanceof Delete)) {
+			return "A move must set the end square and delete the start square";
+		}
+		Set set = (Set) move.get(1);
+		int end = Position.indexOfKey(set.getKey());
+		int start = Position.indexOfKey(((Delete) move.get(2)).getKey());
+		if (end < 0 || start < 0 || !BoardGeometry.areNeighbours(start, end)) {
+			return "End square is not next to the start square";
+		}
+		if (!(set.getValue() instanceof String) || !ALL.equals(set.getVisibleToPlayerIds())) {
+			return "End square must be set to a piece, visible to all";
+		}
+		int pieceId = Piece.idOfKey((String) set.getValue());
+		if (pieceId < 0 || Piece.isWhitePieceId(pieceId) != turn.isWhite()) {
+			return "Moving piece is not a piece of the mover: " + set.getValue();
+		}
+		if (board.getPieceAt(start) != pieceId) {
+			return "Moving piece is not on the start square";
+		}
+
+		int next = 3;
+		int captured = board.getPieceAt(end);
+		if (captured >= 0) {
+			if (Piece.isWhitePieceId(captured) == turn.isWhite()) {
+				return "Can't capture a piece of the same side";
+			}
+			if (move.size() < 4 || !(move.get(3) instanceof Delete)
+					|| !Piece.nameOf(captured).equals(((Delete) move.get(3)).getKey())) {
+				return "Captured piece must be deleted";
+			}
+			next = 4;
+		}
+
+		boolean isExitSquare = BoardGeometry.isExit(end, turn);
+		PieceKind kind = board.getKind(pieceId);
+		if (move.size() == next) {
+			// Only who sees the piece can tell that a good ghost reached the exit
+			if (isExitSquare && kind != null && kind.isGood()) {
+				return "A good ghost on the exit must end the game";
+			}
+			return null;
+		}
+		if (!isExitSquare) {
+			return "Only an exit can end the game";
+		}
+		kind = kind != null ? kind : board.getKindAfterMove(pieceId);
+		if (kind == null || !kind.isGood()) {
+			return "Only a good ghost can exit";
+		}
+		return findExitViolation(move, next, board);
+	}
+
+	/** Returns true if the legal move ends the game, i.e., a good ghost exits. */
+	public static boolean isExit(List<Operation> move) {
+		return move.get(move.size() - 1) instanceof EndGame;
+	}
+
+	/*
+	 * An exit reveals exactly the pieces of the mover that are on the board before the move, in
+	 * the order of their ids, to all; this is what the mover's GhostsLogic sends. The positions are
+	 * public, so every verifier computes the same set.
+	 */
+	private static String findExitViolation(List<Operation> move, int next, Board board) {
+		Color turn = board.getTurn();
+		int moverPieces = 0;
+		for (int square = 0; square < Position.NUMBER_OF_SQUARES; square++) {
+			int pieceId = board.getPieceAt(square);
+			if (pieceId >= 0 && Piece.isWhitePieceId(pieceId) == turn.isWhite()) {
+				moverPieces |= 1 << pieceId;
+			}
+		}
+		int i = next;
+		for (int pieceId = 0; pieceId < Piece.NUMBER_OF_PIECES; pieceId++) {
+			if ((moverPieces & (1 << pieceId)) == 0) {
+				continue;
+			}
+			if (i == move.size() - 1 || !isRevealOf(move.get(i), pieceId)) {
+				return "An exit must reveal the pieces of the mover in order, next: "
+						+ Piece.nameOf(pieceId);
+			}
+			i++;
+		}
+		if (i != move.size() - 1) {
+			return "An exit may only reveal the pieces of the mover";
+		}
+		Operation last = move.get(move.size() - 1);
+		if (!(last instanceof EndGame) || !isWinner((EndGame) last, board.getPlayerId(turn))) {
+			return "An exit must end the game with the mover as the winner";
+		}
+		return null;
+	}
+
+	// The first of the 2 rows where color deploys
+	private static int getFirstDeployRow(Color color) {
+		return color.isWhite() ? Position.BOARD_SIZE - 2 : 0;
+	}
+
+	public static boolean isSetTurn(Operation operation, String playerId) {
+		return operation instanceof SetTurn && ((SetTurn) operation).getPlayerId().equals(playerId)
+				&& ((SetTurn) operation).getNumberOfSecondsForTurn() == 0;
+	}
+
+	private static boolean isRevealOf(Operation operation, int pieceId) {
+		return operation instanceof SetVisibility
+				&& ((SetVisibility) operation).getKey().equals(Piece.nameOf(pieceId))
+				&& ALL.equals(((SetVisibility) operation).getVisibleToPlayerIds());
+	}
+
+	private static boolean isWinner(EndGame endGame, String playerId) {
+		Map<String, Integer> scores = endGame.getPlayerIdToScore();
+		return scores.size() == 1 && Integer.valueOf(1).equals(scores.get(playerId));
+	}
+}
@@ -0,0 +1,85 @@
+package org.ghosts.client;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.VerifyMove;
+
+import com.google.common.base.Optional;
+
+/**
+ * Checks a move directly against the last state (adjacency, piece ownership, capture, exit and
+ * deploy squares), without building the list of expected operations.
+ * Only uses what every player can see: squares and piece ids, and the piece kinds that the
+ * last state shows or that the move reveals. So an exit move can be verified by the opponent too,
+ * which can't see the kind of the exiting ghost before the move.
+ * The rules themselves are in {@link MoveRules}.
+ */
+class MoveVerifier {
+	private final GhostsLogic ghostsLogic;
+
+	MoveVerifier(GhostsLogic ghostsLogic) {
+		this.ghostsLogic = ghostsLogic;
+	}
+
+	/**
+	 * Returns null if the last move of verifyMove is legal, otherwise the first rule it breaks.
+	 * lastState is null before the board initialization.
+	 */
+	String findViolation(VerifyMove verifyMove, GhostsState lastState) {
+		List<Operation> lastMove = verifyMove.getLastMove();
+		List<String> playerIds = verifyMove.getPlayerIds();
+		if (lastState == null) {
+			// Only happens once a match, so the full comparison is fine
+			return ghostsLogic.getBoardInitialOperations(playerIds).equals(lastMove)
+					? null : "Not the board initialization";
+		} else if (!lastState.isWhiteDeployed()) {
+			return MoveRules.findDeployViolation(lastMove, playerIds, Color.W);
+		} else if (!lastState.isBlackDeployed()) {
+			return MoveRules.findDeployViolation(lastMove, playerIds, Color.B);
+		} else {
+			return MoveRules.findMoveViolation(lastMove, new StateBoard(lastState,
+					verifyMove.getState()));
+		}
+	}
+
+	// The last state, and the kinds that the state after the move shows
+	private static class StateBoard implements MoveRules.Board {
+		private final GhostsState lastState;
+		private final Map<String, Object> state;
+
+		StateBoard(GhostsState lastState, Map<String, Object> state) {
+			this.lastState = lastState;
+			this.state = state;
+		}
+
+		@Override
+		public Color getTurn() {
+			return lastState.getTurn();
+		}
+
+		@Override
+		public String getPlayerId(Color color) {
+			return lastState.getPlayerId(color);
+		}
+
+		@Override
+		public int getPieceAt(int square) {
+			String piece = lastState.getSquares().get(Position.of(square));
+			return piece == null ? -1 : Piece.idOf(piece);
+		}
+
+		@Override
+		public PieceKind getKind(int pieceId) {
+			Optional<Piece> piece = lastState.getPieces().get(pieceId);
+			return piece.isPresent() ? piece.get().getPieceKind() : null;
+		}
+
+		@Override
+		public PieceKind getKindAfterMove(int pieceId) {
+			Object kind = state.get(Piece.nameOf(pieceId));
+			return kind instanceof String ? PieceKind.fromString((String) kind) : null;
+		}
+	}
+}
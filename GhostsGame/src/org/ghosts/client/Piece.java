@@ -1,32 +1,85 @@
 package org.ghosts.client;
 
-//import static com.google.common.base.Preconditions.checkNotNull;
+public class Piece extends Equality {
+	public static final int NUMBER_OF_PIECES = 16;
 
-//import com.google.common.base.Objects;
+	// Piece names used as GameApi keys, indexed by piece id: "P0" ~ "P15"
+	private static final String[] NAMES = new String[NUMBER_OF_PIECES];
+	static {
+		for (int i = 0; i < NUMBER_OF_PIECES; i++) {
+			NAMES[i] = "P" + i;
+		}
+	}
 
-public class Piece extends Equality {
-	private String pieceKind;	// "WGood" or "WEvil" or "BGood" or "BEvil"
-	private String pieceName;	// "P0" ~ "P15"
+	private final PieceKind pieceKind;
+	private final int pieceId;		// 0 ~ 15, P0 ~ P7 are white and P8 ~ P15 are black
 
-	public Piece(String kind, String name) {
+	public Piece(PieceKind kind, int id) {
 		this.pieceKind = kind;
-		this.pieceName = name;
+		this.pieceId = id;
+	}
+
+	// Used at GameApi boundary, kind is "WGood" or "WEvil" or "BGood" or "BEvil", name is "P0" ~ "P15"
+	public Piece(String kind, String name) {
+		this(PieceKind.fromString(kind), idOf(name));
 	}
 
-	public String getPieceKind() {
+	public PieceKind getPieceKind() {
 		return pieceKind;
 	}
 	
+	public int getPieceId() {
+		return pieceId;
+	}
+
 	public String getPieceName() {
-		return pieceName;
+		return NAMES[pieceId];
 	}
 	
 	public boolean isWhitePiece() {
-		return pieceKind.charAt(0) == 'W';
+		return pieceKind.isWhite();
 	}
 	
 	public boolean isBlackPiece() {
-		return pieceKind.charAt(0) == 'B';
+		return pieceKind.isBlack();
+	}
+
+	public boolean isGood() {
+		return pieceKind.isGood();
+	}
+
+	// Return GameApi key of piece id, e.g. 3 -> "P3"
+	public static String nameOf(int pieceId) {
+		return NAMES[pieceId];
+	}
+
+	// Return piece id of GameApi key "Px/xx", x or xx since could be 10~15
+	public static int idOf(String pieceName) {
+		if (pieceName.length() == 2)
+			return pieceName.charAt(1) - '0';
+		else			// P10~P15
+			return 10 + (pieceName.charAt(2) - '0');
+	}
+
+	// Return piece id of GameApi key "P0" ~ "P15", or -1 if key isn't a piece
+	public static int idOfKey(String key) {
+		if (key == null || key.length() < 2 || key.length() > 3 || key.charAt(0) != 'P') {
+			return -1;
+		}
+		int id = 0;
+		for (int i = 1; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			id = id * 10 + c - '0';
+		}
+		return id < NUMBER_OF_PIECES && NAMES[id].equals(key) ? id : -1;
+	}
+
+	// P0 ~ P7 belong to white player and P8 ~ P15 belong to black player
+	public static boolean isWhitePieceId(int pieceId) {
+		return pieceId < NUMBER_OF_PIECES / 2;
 	}
 
 	@Override
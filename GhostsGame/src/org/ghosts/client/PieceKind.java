@@ -0,0 +1,60 @@
+package org.ghosts.client;
+
+/*
+ * Kind of a ghost. The constant names are the strings used for piece values in GameApi
+ * state ("WGood", "WEvil", "BGood", "BEvil"), so name() is the only string form needed.
+ */
+public enum PieceKind {
+	WGood(Color.W, true),
+	WEvil(Color.W, false),
+	BGood(Color.B, true),
+	BEvil(Color.B, false);
+
+	private final Color color;
+	private final boolean good;
+
+	private PieceKind(Color color, boolean good) {
+		this.color = color;
+		this.good = good;
+	}
+
+	public Color getColor() {
+		return color;
+	}
+
+	public boolean isWhite() {
+		return color.isWhite();
+	}
+
+	public boolean isBlack() {
+		return color.isBlack();
+	}
+
+	public boolean isGood() {
+		return good;
+	}
+
+	public boolean isEvil() {
+		return !good;
+	}
+
+	public static PieceKind of(Color color, boolean good) {
+		if (color.isWhite()) {
+			return good ? WGood : WEvil;
+		}
+		return good ? BGood : BEvil;
+	}
+
+	// Convert GameApi piece value "WGood"/"WEvil"/"BGood"/"BEvil" to PieceKind
+	public static PieceKind fromString(String kind) {
+		boolean good = kind.charAt(1) == 'G';
+		switch (kind.charAt(0)) {
+		case 'W':
+			return good ? WGood : WEvil;
+		case 'B':
+			return good ? BGood : BEvil;
+		default:
+			throw new IllegalArgumentException("Unknown pieceKind=" + kind);
+		}
+	}
+}
@@ -1,10 +1,24 @@
 package org.ghosts.client;
 
-import com.google.common.base.Objects;
-
 public class Position {
-	private int row;
-	private int col;
+	public static final int BOARD_SIZE = 6;
+	public static final int NUMBER_OF_SQUARES = BOARD_SIZE * BOARD_SIZE;
+
+	/*
+	 * Canonical instances of the 36 squares, indexed by square index (row * 6 + col).
+	 * Use Position.of(...) in board-geometry code so that no Position is allocated per lookup.
+	 */
+	private static final Position[] SQUARES = new Position[NUMBER_OF_SQUARES];
+	static {
+		for (int i = 0; i < BOARD_SIZE; i++) {
+			for (int j = 0; j < BOARD_SIZE; j++) {
+				SQUARES[indexOf(i, j)] = new Position(i, j);
+			}
+		}
+	}
+
+	private final int row;
+	private final int col;
 
 	public Position() {
 		row = -1;
@@ -16,6 +30,49 @@ public class Position {
 		this.col = col;
 	}
 
+	/*
+	 * Return the interned Position of (row, col). Positions outside the board are
+	 * not interned, a new object is returned for them.
+	 */
+	public static Position of(int row, int col) {
+		if (isInsideBoard(row, col)) {
+			return SQUARES[indexOf(row, col)];
+		}
+		return new Position(row, col);
+	}
+
+	// Return the interned Position of square index 0 ~ 35
+	public static Position of(int index) {
+		return SQUARES[index];
+	}
+
+	// Return square index 0 ~ 35 of (row, col), caller must make sure it is inside board
+	public static int indexOf(int row, int col) {
+		return row * BOARD_SIZE + col;
+	}
+
+	// Return square index 0 ~ 35 of GameApi key "Sxy", or -1 if key isn't a square
+	public static int indexOfKey(String key) {
+		if (key == null || key.length() != 3 || key.charAt(0) != 'S') {
+			return -1;
+		}
+		int row = key.charAt(1) - '0';
+		int col = key.charAt(2) - '0';
+		return isInsideBoard(row, col) ? indexOf(row, col) : -1;
+	}
+
+	public static int rowOf(int index) {
+		return index / BOARD_SIZE;
+	}
+
+	public static int colOf(int index) {
+		return index % BOARD_SIZE;
+	}
+
+	public static boolean isInsideBoard(int row, int col) {
+		return row >= 0 && row < BOARD_SIZE && col >= 0 && col < BOARD_SIZE;
+	}
+
 	public int getRow() {
 		return row;
 	}
@@ -24,6 +81,15 @@ public class Position {
 		return col;
 	}
 
+	// Return square index 0 ~ 35, or -1 if this position is outside the board
+	public int getIndex() {
+		return isInsideBoard() ? indexOf(row, col) : -1;
+	}
+
+	public boolean isInsideBoard() {
+		return isInsideBoard(row, col);
+	}
+
 	/*
 	 * Determine whether position pos is exit for specific side
 	 */
@@ -44,12 +110,12 @@ public class Position {
 	}
 */
 	public String toSquareString() {
-		return ("S" + row) + col;
+		return isInsideBoard() ? BoardGeometry.getSquareKey(getIndex()) : ("S" + row) + col;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(row, col);
+		return row * BOARD_SIZE + col;		// unique for squares inside board
 	}
 
 	@Override
@@ -1,16 +1,10 @@
 package org.ghosts.client;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.ghosts.client.Move.MoveType;
 
-import com.google.common.base.Optional;
-import com.google.common.collect.Lists;
-
 public class StateExplorer {
 	GhostsLogic ghostsLogic = new GhostsLogic();
 	
@@ -32,77 +26,54 @@ public class StateExplorer {
 	}
 
 	public Set<Move> getPossibleMovesFromPosition(GhostsState state, Position piecePosition) {
-		Set<Move> moves = new HashSet<Move>();								
-		Position origin = piecePosition;
-		int row = origin.getRow();
-		int col = origin.getCol();
-		List<Position> list = Lists.newArrayList();
-		list.add(new Position(row - 1, col));
-		list.add(new Position(row + 1, col));
-		list.add(new Position(row, col - 1));
-		list.add(new Position(row, col + 1));
-		for (Position pos : list) {
-			if (isInsideBoard(pos) && !sameSideCapture(state, pos)) {
-				if (isExitMove(state, origin, pos)) {
-					moves.add(new Move(origin, pos, MoveType.EXIT));
-				} else if (isCaptureMove(state, pos)) {
-					moves.add(new Move(origin, pos, MoveType.CAPTURE));
-				} else {
-					moves.add(new Move(origin, pos, MoveType.MOVE));
-				}
-			}
+		return getPossibleMovesFromSquare(state, piecePosition.getIndex());
+	}
+
+	public Set<Move> getPossibleMovesFromSquare(GhostsState state, int square) {
+		Set<Move> moves = new HashSet<Move>();
+		Position origin = Position.of(square);
+		for (int k = 0; k < BoardGeometry.getNeighbourCount(square); k++) {
+			addMoveIfValid(state, origin, BoardGeometry.getNeighbour(square, k), moves);
 		}
-		
 		return moves;
 	}
 
-	private boolean sameSideCapture(GhostsState state, Position end) {
-		Map<Position, String> squares = state.getSquares();
-		int row = end.getRow();
-		int col = end.getCol();
-		String pieceStr = squares.get(new Position(row, col));
-		if (pieceStr != null) {
-			int index = getIndexFromPieceName(pieceStr);
-			if ( (state.getTurn().isWhite() && index < 8) || (state.getTurn().isBlack() && index >= 8) ) {
-				return true;
+	private void addMoveIfValid(GhostsState state, Position origin, int square, Set<Move> moves) {
+		Position pos = Position.of(square);
+		if (!sameSideCapture(state, square)) {
+			if (isExitMove(state, origin, square)) {
+				moves.add(new Move(origin, pos, MoveType.EXIT));
+			} else if (isCaptureMove(state, square)) {
+				moves.add(new Move(origin, pos, MoveType.CAPTURE));
+			} else {
+				moves.add(new Move(origin, pos, MoveType.MOVE));
 			}
 		}
-		return false;
 	}
 
-	private boolean isCaptureMove(GhostsState state, Position pos) {
-		Map<Position, String> squares = state.getSquares();
-		int row = pos.getRow();
-		int col = pos.getCol();
-		String pieceStr = squares.get(new Position(row, col));
-		if (pieceStr != null) {									 
-/*			int index = getIndexFromPieceName(pieceStr);
-			if (state.getTurn().isWhite() && index >= 8) {
-				return true;
-			} else if (state.getTurn().isBlack() && index < 8){
+	private boolean sameSideCapture(GhostsState state, int square) {
+		String pieceStr = state.getSquares().get(Position.of(square));
+		if (pieceStr != null) {
+			int index = Piece.idOf(pieceStr);
+			if ( (state.getTurn().isWhite() && index < 8) || (state.getTurn().isBlack() && index >= 8) ) {
 				return true;
 			}
-			*/
-			return true;		// since we already check if sameSideCapture, if there is piece on end position, it must be capture move
 		}
 		return false;
 	}
 
+	private boolean isCaptureMove(GhostsState state, int square) {
+		String pieceStr = state.getSquares().get(Position.of(square));
+		// since we already check if sameSideCapture, if there is piece on end position, it must be capture move
+		return pieceStr != null;
+	}
+
 	// Used in Heuristic class, so in that situation we will set a complete guess state that all pieces are visible (Attention! Not to used in normal case!!!!!!!!!!!!!)
-	private boolean isExitMove(GhostsState state, Position origin, Position pos) {		
-		Color turn = state.getTurn();
-		if (turn.isWhite()) {
-			if (pos.getRow() == 0 && (pos.getCol() == 0 || pos.getCol() == 5)) {
-				Piece p = getPieceFromOrigin(state, origin);
-				if(p.isWhitePiece())
-					return true;
-			}
-		} else {
-			if (pos.getRow() == 5 && (pos.getCol() == 0 || pos.getCol() == 5)) {
-				Piece p = getPieceFromOrigin(state, origin);
-				if(p.isWhitePiece())
-					return true;
-			}
+	private boolean isExitMove(GhostsState state, Position origin, int square) {		
+		if (BoardGeometry.isExit(square, state.getTurn())) {
+			Piece p = getPieceFromOrigin(state, origin);
+			if(p.isWhitePiece())
+				return true;
 		}
 		return false;
 	}
@@ -110,44 +81,32 @@ public class StateExplorer {
 	// return player's piece of current turn
 	public Set<Position> getPossiblePiecePositions(GhostsState state) {
 		Set<Position> piecePositions = new HashSet<Position>();
-		Color turn = state.getTurn();
-		Map<Position, String> squares = state.getSquares();
-		for (int i = 0; i < 6; i++) {
-			for (int j = 0; j < 6; j++) {
-				Position pos = new Position(i, j);
-				String pieceName = squares.get(pos);
-				if (pieceName != null) {			// means there is a piece on this position
-					int index = getIndexFromPieceName(pieceName);
-					if (turn.isWhite() && index < 8) {
-						piecePositions.add(pos);
-					} else if (turn.isBlack() && index >= 8) {
-						piecePositions.add(pos);
-					}
-				}
+		// white pieces are P0 ~ P7, black pieces are P8 ~ P15
+		int first = state.getTurn().isWhite() ? 0 : Piece.NUMBER_OF_PIECES / 2;
+		for (int pieceId = first; pieceId < first + Piece.NUMBER_OF_PIECES / 2; pieceId++) {
+			Position pos = state.getPosition(pieceId);
+			if (pos != null) {			// means this piece is on the board
+				piecePositions.add(pos);
 			}
 		}
 		
 		return piecePositions;
 	}
 	
-	// return int value of the number after "P" in Px/xx
-	public int getIndexFromPieceName(String piecename) {
-		if (piecename.length() == 2)
-			return (int)(piecename.charAt(1) - '0');
-		else {			// P10~P15
-			int tenth = (int)(piecename.charAt(1) - '0') * 10;
-			return tenth + (int)(piecename.charAt(2) - '0');
-		}
-	}
-	
 	public boolean isInsideBoard(Position p) {
-		int row = p.getRow();
-		int col = p.getCol();
-		return row >= 0 && row <= 5 && col >= 0 && col <= 5;
+		return isInsideBoard(p.getRow(), p.getCol());
+	}
+
+	public boolean isInsideBoard(int row, int col) {
+		return Position.isInsideBoard(row, col);
 	}
 	
 	public Piece getPieceFromOrigin(GhostsState state, Position origin) {
-		int index = getIndexFromPieceName(state.getSquares().get(origin));
+		return getPieceFromSquare(state, origin.getIndex());
+	}
+
+	public Piece getPieceFromSquare(GhostsState state, int square) {
+		int index = Piece.idOf(state.getSquares().get(Position.of(square)));
 		if (state.getPieces().get(index).isPresent())
 			return state.getPieces().get(index).get();
 		return null;
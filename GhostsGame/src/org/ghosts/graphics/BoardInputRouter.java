@@ -0,0 +1,152 @@
+package org.ghosts.graphics;
+
+import java.util.List;
+
+import org.ghosts.client.LegalMoves;
+import org.ghosts.client.Piece;
+import org.ghosts.client.Position;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Touch;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.TouchEndEvent;
+import com.google.gwt.event.dom.client.TouchEndHandler;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * The input of the board of {@link GhostsGraphics}. One click handler and one touch handler are
+ * added to the widget of the {@link BoardRenderer} when the board is created; they ask the
+ * renderer for the cell at the point of the event and pass it to
+ * the current {@link Mode}, which the view sets on every step of a turn. So a click costs the
+ * same at the end of a game as at the start, however many turns were played.
+ *
+ * The targets of a move are looked up in the {@link LegalMoves} of the state; the squares of a
+ * deploy in a table filled when the mode is set.
+ *
+ * A touch is handled on touchend and its emulated click is cancelled, so it is handled once.
+ */
+public class BoardInputRouter {
+	public enum Mode {
+		/** The board ignores input, e.g., during the turn of the opponent. */
+		IDLE,
+		/** A click on a clickable piece selects it. */
+		SELECT_PIECE,
+		/** A click on a target moves the selected piece there; a click on a piece selects it. */
+		SELECT_TARGET,
+		/** A click on a target deploys the selected piece there. */
+		DEPLOY,
+	}
+
+	public interface Listener {
+		void onPieceSelected(Piece piece);
+
+		void onTargetSelected(Position position);
+
+		void onDeploySquareSelected(Position position);
+	}
+
+	private final BoardRenderer board;
+	private final Listener listener;
+	private Mode mode = Mode.IDLE;
+	private final boolean[] deployTargets = new boolean[Position.NUMBER_OF_SQUARES];
+	private LegalMoves legalMoves;
+	private int movingPieceId = -1;
+
+	public BoardInputRouter(BoardRenderer board, Listener listener) {
+		this.board = board;
+		this.listener = listener;
+		final Widget surface = board.asWidget();
+		surface.addDomHandler(new ClickHandler() {
+			@Override
+			public void onClick(ClickEvent event) {
+				Element element = surface.getElement();
+				onPoint(event.getRelativeX(element), event.getRelativeY(element));
+			}
+		}, ClickEvent.getType());
+		surface.addDomHandler(new TouchEndHandler() {
+			@Override
+			public void onTouchEnd(TouchEndEvent event) {
+				JsArray<Touch> touches = event.getChangedTouches();
+				if (touches.length() == 0) {
+					return;
+				}
+				event.preventDefault();
+				Element element = surface.getElement();
+				onPoint(touches.get(0).getRelativeX(element), touches.get(0).getRelativeY(element));
+			}
+		}, TouchEndEvent.getType());
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public void ignoreInput() {
+		setMode(Mode.IDLE, null);
+	}
+
+	public void selectPiece() {
+		setMode(Mode.SELECT_PIECE, null);
+	}
+
+	/** A click on a square that legalMoves allows for the piece moves it there. */
+	public void selectTarget(LegalMoves legalMoves, int pieceId) {
+		setMode(Mode.SELECT_TARGET, null);
+		this.legalMoves = legalMoves;
+		this.movingPieceId = pieceId;
+	}
+
+	public void selectDeploySquare(List<Position> possiblePositions) {
+		setMode(Mode.DEPLOY, possiblePositions);
+	}
+
+	private void setMode(Mode newMode, List<Position> possibleDeployPositions) {
+		mode = newMode;
+		legalMoves = null;
+		movingPieceId = -1;
+		for (int i = 0; i < deployTargets.length; i++) {
+			deployTargets[i] = false;
+		}
+		if (possibleDeployPositions != null) {
+			for (Position position : possibleDeployPositions) {
+				deployTargets[position.getIndex()] = true;
+			}
+		}
+	}
+
+	private void onPoint(int x, int y) {
+		int index = board.getCellIndexAt(x, y);
+		if (index < 0) {
+			return;
+		}
+		Position position = Position.of(index);
+		switch (mode) {
+		case SELECT_PIECE:
+			selectPieceAt(position);
+			break;
+		case SELECT_TARGET:
+			if (legalMoves.isLegal(movingPieceId, position)) {
+				listener.onTargetSelected(position);
+			} else {
+				selectPieceAt(position);
+			}
+			break;
+		case DEPLOY:
+			if (deployTargets[index]) {
+				listener.onDeploySquareSelected(position);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void selectPieceAt(Position position) {
+		Piece piece = board.getClickablePiece(position.getRow(), position.getCol());
+		if (piece != null) {
+			listener.onPieceSelected(piece);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package org.ghosts.graphics;
+
+import org.ghosts.client.Piece;
+
+import com.google.gwt.resources.client.ImageResource;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * The 6*6 board of {@link GhostsGraphics}: {@link CanvasBoard} draws it on a canvas,
+ * {@link RetainedBoard} is the DOM fallback for browsers without canvas.
+ */
+public interface BoardRenderer {
+	/** The widget that shows the board and gets its clicks and touches. */
+	Widget asWidget();
+
+	/**
+	 * Shows cells[i][j] in every cell; a cell is clickable if isClickable[i][j] and it shows a
+	 * piece. Returns the number of cells whose image changed.
+	 */
+	int render(PieceImage[][] cells, boolean[][] isClickable);
+
+	/** The piece in the cell if it can be clicked, or null. */
+	Piece getClickablePiece(int row, int col);
+
+	/**
+	 * The index ({@link org.ghosts.client.Position#indexOf}) of the cell at x, y (relative to
+	 * the widget), or -1 if there is no cell there.
+	 */
+	int getCellIndexAt(int x, int y);
+
+	int getCellWidth();
+
+	int getCellHeight();
+
+	/**
+	 * Returns the image of the cell, for an animation that moves it off the cell, and hides the
+	 * cell until the next render.
+	 */
+	ImageResource lift(int row, int col);
+}
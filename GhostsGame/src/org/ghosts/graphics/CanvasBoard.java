@@ -0,0 +1,133 @@
+package org.ghosts.graphics;
+
+import org.ghosts.client.Piece;
+import org.ghosts.client.Position;
+
+import com.google.gwt.canvas.client.Canvas;
+import com.google.gwt.canvas.dom.client.Context2d;
+import com.google.gwt.resources.client.ImageResource;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * The {@link BoardRenderer} that draws the board on one canvas from a {@link PieceAtlas}, instead
+ * of 36 Images in a grid. {@link #render} marks the cells whose tile changed as dirty and redraws
+ * only their rectangles, so a move repaints two or three cells; the first render waits for the
+ * atlas and paints the whole board at once.
+ */
+public class CanvasBoard implements BoardRenderer {
+	private static final int SIZE = 6;
+
+	private final Canvas canvas;
+	private final PieceAtlas atlas;
+	private final PieceImageSupplier pieceImageSupplier;
+	private final int cellWidth;
+	private final int cellHeight;
+	// what the cells should show; null before the first render
+	private final ImageResource[][] renderedResources = new ImageResource[SIZE][SIZE];
+	private final Piece[][] renderedPieces = new Piece[SIZE][SIZE];
+	private final boolean[][] clickable = new boolean[SIZE][SIZE];
+	// cells that don't show renderedResources yet, or were lifted
+	private final boolean[][] dirty = new boolean[SIZE][SIZE];
+
+	/** Returns a CanvasBoard, or null if the browser has no canvas (use a RetainedBoard then). */
+	public static CanvasBoard createIfSupported(PieceImages pieceImages,
+			PieceImageSupplier pieceImageSupplier) {
+		Canvas canvas = Canvas.createIfSupported();
+		if (canvas == null) {
+			return null;
+		}
+		return new CanvasBoard(canvas, new PieceAtlas(pieceImages), pieceImageSupplier);
+	}
+
+	private CanvasBoard(Canvas canvas, PieceAtlas atlas, PieceImageSupplier pieceImageSupplier) {
+		this.canvas = canvas;
+		this.atlas = atlas;
+		this.pieceImageSupplier = pieceImageSupplier;
+		cellWidth = atlas.getTileWidth();
+		cellHeight = atlas.getTileHeight();
+		canvas.setCoordinateSpaceWidth(cellWidth * SIZE);
+		canvas.setCoordinateSpaceHeight(cellHeight * SIZE);
+		canvas.setPixelSize(cellWidth * SIZE, cellHeight * SIZE);
+		atlas.whenReady(new PieceAtlas.ReadyHandler() {
+			@Override
+			public void onReady() {
+				paintDirtyCells();
+			}
+		});
+	}
+
+	@Override
+	public Widget asWidget() {
+		return canvas;
+	}
+
+	@Override
+	public int render(PieceImage[][] cells, boolean[][] isClickable) {
+		int changed = 0;
+		for (int i = 0; i < SIZE; i++) {
+			for (int j = 0; j < SIZE; j++) {
+				// Piece equality ignores the id, so the piece is always updated for the input router
+				renderedPieces[i][j] = cells[i][j].piece;
+				clickable[i][j] = isClickable[i][j];
+				ImageResource resource = pieceImageSupplier.getResource(cells[i][j]);
+				if (resource != renderedResources[i][j] || dirty[i][j]) {
+					renderedResources[i][j] = resource;
+					dirty[i][j] = true;
+					changed++;
+				}
+			}
+		}
+		paintDirtyCells();
+		return changed;
+	}
+
+	private void paintDirtyCells() {
+		if (!atlas.isReady()) {
+			return;
+		}
+		Context2d context = canvas.getContext2d();
+		for (int i = 0; i < SIZE; i++) {
+			for (int j = 0; j < SIZE; j++) {
+				if (dirty[i][j] && renderedResources[i][j] != null) {
+					context.clearRect(j * cellWidth, i * cellHeight, cellWidth, cellHeight);
+					atlas.drawTile(context, renderedResources[i][j], j * cellWidth, i * cellHeight,
+							cellWidth, cellHeight);
+					dirty[i][j] = false;
+				}
+			}
+		}
+	}
+
+	@Override
+	public Piece getClickablePiece(int row, int col) {
+		return clickable[row][col] ? renderedPieces[row][col] : null;
+	}
+
+	@Override
+	public int getCellIndexAt(int x, int y) {
+		// the canvas may be scaled by css, so use its size on the page
+		int width = canvas.getOffsetWidth();
+		int height = canvas.getOffsetHeight();
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return -1;
+		}
+		return Position.indexOf(y * SIZE / height, x * SIZE / width);
+	}
+
+	@Override
+	public int getCellWidth() {
+		return canvas.getOffsetWidth() / SIZE;
+	}
+
+	@Override
+	public int getCellHeight() {
+		return canvas.getOffsetHeight() / SIZE;
+	}
+
+	@Override
+	public ImageResource lift(int row, int col) {
+		canvas.getContext2d().clearRect(col * cellWidth, row * cellHeight, cellWidth, cellHeight);
+		dirty[row][col] = true;
+		return renderedResources[row][col];
+	}
+}
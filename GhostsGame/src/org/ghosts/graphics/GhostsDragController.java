@@ -36,7 +36,7 @@ public class GhostsDragController extends PickupDragController {
 		// Get pieces list from presenter
 		List<Piece> pieces = presenter.getPiecesList();
 		// Get piece index from pieceName
-		int index = getIndexFromPieceName(pieceName);
+		int index = Piece.idOf(pieceName);
 		// Get Piece object
 		Piece piece = pieces.get(index);
 		
@@ -48,16 +48,4 @@ public class GhostsDragController extends PickupDragController {
 		int col = (image.getAbsoluteLeft() / 96);
 		return new Position(row, col);
 	}
-
-	/* 
-	 * return int value of the number after "P" in Px/xx
-	 */
-	int getIndexFromPieceName(String piecename) {
-		if (piecename.length() == 2)
-			return (int) (piecename.charAt(1) - '0');
-		else { // P10~P15
-			int tenth = (int) (piecename.charAt(1) - '0') * 10;
-			return tenth + (int) (piecename.charAt(2) - '0');
-		}
-	}
 }
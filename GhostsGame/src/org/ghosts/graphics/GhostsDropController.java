@@ -1,7 +1,7 @@
 package org.ghosts.graphics;
 
-import java.util.List;
 import org.ghosts.client.GhostsPresenter;
+import org.ghosts.client.Piece;
 import org.ghosts.client.Position;
 
 import com.allen_sauer.gwt.dnd.client.DragContext;
@@ -10,27 +10,52 @@ import com.allen_sauer.gwt.dnd.client.drop.SimpleDropController;
 import com.google.gwt.media.client.Audio;
 import com.google.gwt.user.client.ui.AbsolutePanel;
 
+/**
+ * The drop target of one square. Whether the dragged piece can go there is looked up in the
+ * {@link org.ghosts.client.LegalMoves} of the presenter, so the feedback while dragging over the
+ * square and the drop itself cost O(1).
+ */
 public class GhostsDropController extends SimpleDropController {
+	private static final String LEGAL_TARGET_STYLE = "legalDropTarget";
+
 	private final Position pos;
 	private final GhostsPresenter presenter;
 	private final AbsolutePanel panel;
 	private Audio sound; 
-	private final List<Position> possiblePositions;
 	
 	public GhostsDropController(AbsolutePanel panel, Position pos, 
-			GhostsPresenter presenter, List<Position> possiblePositions, Audio sound) {		
+			GhostsPresenter presenter, Audio sound) {		
 		super(panel);
 		this.panel = panel;
 		this.pos = pos;
 		this.presenter = presenter;
 		this.sound = sound;
-		this.possiblePositions = possiblePositions;
+	}
+
+	private boolean isLegalTarget() {
+		Piece piece = presenter.getSelectedPieceToMove();
+		return piece != null && presenter.getLegalMoves().isLegal(piece.getPieceId(), pos);
+	}
+
+	@Override
+	public void onEnter(DragContext context) {
+		super.onEnter(context);
+		if (isLegalTarget()) {
+			panel.addStyleName(LEGAL_TARGET_STYLE);
+		}
+	}
+
+	@Override
+	public void onLeave(DragContext context) {
+		panel.removeStyleName(LEGAL_TARGET_STYLE);
+		super.onLeave(context);
 	}
 
 	@Override
 	public void onDrop(DragContext context) {
-		// If dropping position is contained in possiblePositions, then call squareSelectedToMove
-		if (possiblePositions.contains(pos)) {
+		panel.removeStyleName(LEGAL_TARGET_STYLE);
+		// If the dragged piece can move here, then call squareSelectedToMove
+		if (isLegalTarget()) {
 			presenter.squareSelectedToMove(pos, true);
 			if (sound != null)
 				sound.play();
@@ -31,7 +31,7 @@ public class GhostsEntryPoint implements EntryPoint {
 
 	@Override
 	public void onModuleLoad() {
-		Game game = new Game() {
+		Game game = new DeltaGame() {
 			@Override
 			public void sendVerifyMove(VerifyMove verifyMove) {
 				container.sendVerifyMoveDone(new GhostsLogic().verify(verifyMove));
@@ -41,10 +41,15 @@ public class GhostsEntryPoint implements EntryPoint {
 			public void sendUpdateUI(UpdateUI updateUI) {
 				ghostsPresenter.updateUI(updateUI);
 			}
+
+			@Override
+			public void sendUpdateUIDelta(UpdateUIDelta updateUIDelta) {
+				ghostsPresenter.updateUIDelta(updateUIDelta);
+			}
 		};
 		container = new ContainerConnector(game);
 		GhostsGraphics ghostsGraphics = new GhostsGraphics();
-		ghostsPresenter = new GhostsPresenter(ghostsGraphics, container);
+		ghostsPresenter = new GhostsPresenter(ghostsGraphics, container, new LazyAiMoveService());
 		
 		RootPanel.get("mainDiv").add(ghostsGraphics);
 		container.sendGameReady();
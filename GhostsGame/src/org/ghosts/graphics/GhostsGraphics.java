@@ -10,17 +10,14 @@ import org.ghosts.client.Color;
 import org.ghosts.client.GhostsPresenter;
 import org.ghosts.client.Piece;
 import org.ghosts.client.Position;
-import org.ghosts.graphics.PieceMovingAnimation;
-import org.ghosts.sounds.GameSounds;
+import org.ghosts.sounds.SoundEngine;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.gwt.core.shared.GWT;
-import com.google.gwt.dom.client.AudioElement;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
-import com.google.gwt.media.client.Audio;
 import com.google.gwt.resources.client.ImageResource;
 import com.google.gwt.uibinder.client.UiBinder;
 import com.google.gwt.uibinder.client.UiField;
@@ -30,13 +27,11 @@ import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.Grid;
-import com.google.gwt.user.client.ui.HTMLTable;
-import com.google.gwt.user.client.ui.HTMLTable.Cell;
 import com.google.gwt.user.client.ui.HorizontalPanel;
 import com.google.gwt.user.client.ui.Image;
 import com.google.gwt.user.client.ui.RootPanel;
 import com.google.gwt.user.client.ui.Widget;
-import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.Command;
 
 /**
  * Graphics for the game of ghosts.
@@ -56,11 +51,10 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 	private boolean enableClicks = false;
 	private final PieceImageSupplier pieceImageSupplier;
 	private GhostsPresenter presenter;
-	private PieceMovingAnimation animation;
-	private Audio pieceDown;
-    private Audio pieceCaptured;
-	private Image[][] allImages;
-	private AbsolutePanel[][] myPanel = new AbsolutePanel[6][6];
+	private MoveAnimator animator;
+	private final SoundEngine sounds = SoundEngine.get();
+	private BoardRenderer board;
+	private BoardInputRouter inputRouter;
 	
 	private GhostsDragController dragCtrl;								// For Dnd use
 	private GhostsDropController target;								// For Dnd use
@@ -74,7 +68,6 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 	private boolean hasAnimation = false;
 	
 //	private static PieceImages pieceImages = GWT.create(PieceImages.class);
-    private static GameSounds gameSounds = GWT.create(GameSounds.class);
 
 	public GhostsGraphics() {
 		PieceImages pieceImages = GWT.create(PieceImages.class);
@@ -82,48 +75,36 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 		GhostsGraphicsUiBinder uiBinder = GWT
 				.create(GhostsGraphicsUiBinder.class);
 		initWidget(uiBinder.createAndBindUi(this));
-		initGrid();
-		
-//		playArea.setPixelSize(620, 620);
-		playArea.add(gameGrid);
-		
-		if (Audio.isSupported()) {
-			pieceDown = Audio.createIfSupported();
-//			pieceDown.setControls(false);
-			
-/*			if (pieceDown.canPlayType(AudioElement.TYPE_WAV).equals(AudioElement.CAN_PLAY_PROBABLY) ||
-					pieceDown.canPlayType(AudioElement.TYPE_WAV).equals(AudioElement.CAN_PLAY_MAYBE)) {
-				pieceDown.addSource(gameSounds.pieceDownWav().getSafeUri().asString(), AudioElement.TYPE_WAV);
-			} else if (pieceDown.canPlayType(AudioElement.TYPE_MP3).equals(AudioElement.CAN_PLAY_PROBABLY) ||
-					pieceDown.canPlayType(AudioElement.TYPE_MP3).equals(AudioElement.CAN_PLAY_MAYBE)) {
-				pieceDown.addSource(gameSounds.pieceDownMp3().getSafeUri().asString(), AudioElement.TYPE_MP3);
-			} else if (pieceDown.canPlayType(AudioElement.TYPE_OGG).equals(AudioElement.CAN_PLAY_PROBABLY) ||
-					pieceDown.canPlayType(AudioElement.TYPE_OGG).equals(AudioElement.CAN_PLAY_MAYBE)) {
-				pieceDown.addSource(gameSounds.pieceDownOgg().getSafeUri().asString(), AudioElement.TYPE_OGG);
+		board = CanvasBoard.createIfSupported(pieceImages, pieceImageSupplier);
+		if (board == null) {
+			initGrid();
+			board = new RetainedBoard(gameGrid, pieceImageSupplier);
+		} else {
+			gameGrid.removeFromParent();
+		}
+		inputRouter = new BoardInputRouter(board, new BoardInputRouter.Listener() {
+			@Override
+			public void onPieceSelected(Piece piece) {
+				if (enableClicks) {
+					presenter.pieceSelectedToMove(piece);
+				}
 			}
-*/			
-			pieceDown.addSource(gameSounds.pieceDownMp3().getSafeUri().asString(), AudioElement.TYPE_MP3);
-			pieceDown.addSource(gameSounds.pieceDownWav().getSafeUri().asString(), AudioElement.TYPE_WAV);
-			
-			pieceCaptured = Audio.createIfSupported();
-			
-/*			pieceCaptured.setControls(false);
-			
-			if (pieceCaptured.canPlayType(AudioElement.TYPE_WAV).equals(AudioElement.CAN_PLAY_PROBABLY) ||
-					pieceCaptured.canPlayType(AudioElement.TYPE_WAV).equals(AudioElement.CAN_PLAY_MAYBE)) {
-				pieceCaptured.addSource(gameSounds.pieceCapturedWav().getSafeUri().asString(), AudioElement.TYPE_WAV);
-			} else if (pieceCaptured.canPlayType(AudioElement.TYPE_MP3).equals(AudioElement.CAN_PLAY_PROBABLY) ||
-					pieceCaptured.canPlayType(AudioElement.TYPE_MP3).equals(AudioElement.CAN_PLAY_MAYBE)) {
-				pieceCaptured.addSource(gameSounds.pieceCapturedMp3().getSafeUri().asString(), AudioElement.TYPE_MP3);
-			} else if (pieceCaptured.canPlayType(AudioElement.TYPE_OGG).equals(AudioElement.CAN_PLAY_PROBABLY) ||
-					pieceCaptured.canPlayType(AudioElement.TYPE_OGG).equals(AudioElement.CAN_PLAY_MAYBE)) {
-				pieceCaptured.addSource(gameSounds.pieceCapturedOgg().getSafeUri().asString(), AudioElement.TYPE_OGG);
+
+			@Override
+			public void onTargetSelected(Position position) {
+				presenter.squareSelectedToMove(position, false);
 			}
-			
-*/			
-			pieceCaptured.addSource(gameSounds.pieceCapturedMp3().getSafeUri().asString(), AudioElement.TYPE_MP3);
-			pieceCaptured.addSource(gameSounds.pieceCapturedWav().getSafeUri().asString(), AudioElement.TYPE_WAV);
-		}
+
+			@Override
+			public void onDeploySquareSelected(Position position) {
+				presenter.squareSelectedToDeploy(position);
+				sounds.play(SoundEngine.Clip.PIECE_DOWN);
+			}
+		});
+		
+//		playArea.setPixelSize(620, 620);
+		playArea.add(board.asWidget());
+		animator = new MoveAnimator(playArea, board, sounds);
 	}
 
 	/**
@@ -142,14 +123,14 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 	}
 	
 	/*
-	 * Create a 6*6 Image matrix with all pieces only display back
+	 * Create a 6*6 PieceImage matrix with all pieces only display back
 	 */
-	private Image[][] createAllBackPieces(Map<Position, String> squares) {
+	private PieceImage[][] createAllBackPieces(Map<Position, String> squares) {
 		PieceImage[][] images = new PieceImage[6][6];
 		for (int i = 0; i < 6; i++) {
 			for (int j = 0; j < 6; j++) {
 				if (squares.get(new Position(i, j)) != null) {
-					int index = getIndexFromPieceName(squares.get(new Position(
+					int index = Piece.idOf(squares.get(new Position(
 							i, j)));
 					if (index < 8)
 						images[i][j] = PieceImage.Factory
@@ -162,21 +143,20 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 				}
 			}
 		}
-		return createImagesForGrid(images, false, null); // We don't need to use turn in createImagesForGrid
-															// since withClick is false already
+		return images;
 	}
 
 	/*
-	 * Create a 6*6 Image matrix with current player's pieces display front and
+	 * Create a 6*6 PieceImage matrix with current player's pieces display front and
 	 * opponent's pieces only display back
 	 */
-	private Image[][] createNormalPieces(List<Piece> pieces,
-			Map<Position, String> squares, Color color, boolean withClick) {
+	private PieceImage[][] createNormalPieces(List<Piece> pieces,
+			Map<Position, String> squares, Color color) {
 		PieceImage[][] images = new PieceImage[6][6];
 		for (int i = 0; i < 6; i++) {
 			for (int j = 0; j < 6; j++) {
 				if (squares.get(new Position(i, j)) != null) {
-					int index = getIndexFromPieceName(squares.get(new Position(
+					int index = Piece.idOf(squares.get(new Position(
 							i, j)));
 					if (color.isWhite()) {
 						if (index < 8)
@@ -199,22 +179,22 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 			}
 		}
 
-		return createImagesForGrid(images, withClick, color);
+		return images;
 	}
 
 	/*
-	 * Create a 6*6 Image matrix with current player's pieces display front and
+	 * Create a 6*6 PieceImage matrix with current player's pieces display front and
 	 * opponent's pieces only display back
 	 */
-	private Image[][] createDeployedPieces(Map<Position, Piece> deployTable,
-			Color turn, boolean withClick) {
+	private PieceImage[][] createDeployedPieces(Map<Position, Piece> deployTable,
+			Color turn) {
 		PieceImage[][] images = new PieceImage[6][6];
 		for (int i = 0; i < 6; i++) {
 			for (int j = 0; j < 6; j++) {
 				Position pos = new Position(i, j);
 				if (deployTable.containsKey(pos)) {
 					Piece piece = deployTable.get(pos);
-					int index = getIndexFromPieceName(piece.getPieceName());
+					int index = piece.getPieceId();
 					if (turn.isWhite()) {
 						if (index < 8)
 							images[i][j] = PieceImage.Factory
@@ -236,104 +216,51 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 			}
 		}
 
-		return createImagesForGrid(images, withClick, turn);
+		return images;
 	}
 
 	/*
-	 * Helper function for createAllBackPieces and createNormalPieces
+	 * Show images on the board, with the background or exit image on the empty squares.
+	 * With withClick, the pieces of turn can be clicked to select them. Only the squares that
+	 * changed since the last update are touched, see RetainedBoard.
 	 */
-	private Image[][] createImagesForGrid(PieceImage[][] images,
-			boolean withClick, Color turn) {
-		
-		// Initialize the drag controller
-//	    dragCtrl = new GhostsDragController(playArea, false, presenter);
-//	    dragCtrl.setBehaviorConstrainedToBoundaryPanel(true);
-//	    dragCtrl.setBehaviorMultipleSelection(false);
-//	    dragCtrl.setBehaviorDragStartSensitivity(1);
-		
-		Image[][] res = new Image[6][6];
+	private void renderBoard(PieceImage[][] images, boolean withClick, Color turn) {
+		PieceImage[][] cells = new PieceImage[6][6];
+		boolean[][] clickable = new boolean[6][6];
 		for (int i = 0; i < 6; i++) {
 			for (int j = 0; j < 6; j++) {
 				if (images[i][j] != null) {
-					PieceImage img = images[i][j];
-					final PieceImage imgFinal = img;
-
-					Image image = new Image(pieceImageSupplier.getResource(img));
-
-					if (withClick && imgFinal.piece != null) {
-						if ((turn.isWhite() && imgFinal.piece.isWhitePiece()) || // only add click listener to current player's piece
-								(turn.isBlack() && imgFinal.piece
-										.isBlackPiece())) {
-							
-							image.addClickHandler(new ClickHandler() {
-								@Override
-								public void onClick(ClickEvent event) {
-									if (enableClicks) {
-										presenter.pieceSelectedToMove(imgFinal.piece);
-									}
-								}
-							});
-							
-							// make current player's piece dragable
-//							dragCtrl.makeDraggable(image);		
-						}
-					}
-
-					res[i][j] = image;
+					cells[i][j] = images[i][j];
+					Piece piece = images[i][j].piece;
+					// only add click listener to current player's piece
+					clickable[i][j] = withClick && piece != null
+							&& ((turn.isWhite() && piece.isWhitePiece())
+									|| (turn.isBlack() && piece.isBlackPiece()));
 				} else {
-					res[i][j] = null;
+					cells[i][j] = getEmptySquareImage(i, j);
 				}
 			}
 		}
-		allImages = res;
-		return res;
+		board.render(cells, clickable);
 	}
 
 	/*
-	 * Place piece images on grid
+	 * The background or exit image of an empty square
 	 */
-	private void placeImagesOnGrid(Grid grid, Image[][] images) {
-		grid.clear();
-		for (int i = 0; i < 6; i++) {
-			for (int j = 0; j < 6; j++) {
-				AbsolutePanel imageContainer = new AbsolutePanel();
-				imageContainer.setStyleName("imgContainer");
-				if (images[i][j] != null) { // means there is a piece on this        
-											// position, even empty, add a panel to myPanel
-					imageContainer.add(images[i][j]);
-
-				} else {					// add backround or exit image for rest of grids
-					Image img;
-					PieceImage pieceImage;
-					if (j == 0 && (i == 0 || i == 5)) {
-						pieceImage = PieceImage.Factory.getLeftExit();
-						img = new Image(pieceImageSupplier.getResource(pieceImage));
-					} else if (j == 5 && (i == 0 || i == 5)) {
-						pieceImage = PieceImage.Factory.getRightExit();
-						img = new Image(pieceImageSupplier.getResource(pieceImage));
-					} else {
-						if (presenter.isAllDeployed()) {
-							pieceImage = PieceImage.Factory.getBackground();
-						
-						} else {	// if player doesn't finish deployment, highligt the area to deploy
-							if ((i == 0 || i == 1) && (j >= 1 && j <= 4) && presenter.getMyColor() == Color.B) {
-								pieceImage = PieceImage.Factory.getDeployPlace();			
-							} else if ((i == 4 || i == 5) && (j >= 1 && j <= 4) && presenter.getMyColor() == Color.W) {
-								pieceImage = PieceImage.Factory.getDeployPlace();
-							} else {
-								pieceImage = PieceImage.Factory.getBackground();
-							}
-						}
-						img = new Image(pieceImageSupplier.getResource(pieceImage));
-					}
-					
-					imageContainer.add(img);
-				}
-				myPanel[i][j] = imageContainer;
-//				myPanel[i][j].setPixelSize(96, 96);
-
-				// just add Image to grid
-				grid.setWidget(i, j, myPanel[i][j]);
+	private PieceImage getEmptySquareImage(int i, int j) {
+		if (j == 0 && (i == 0 || i == 5)) {
+			return PieceImage.Factory.getLeftExit();
+		} else if (j == 5 && (i == 0 || i == 5)) {
+			return PieceImage.Factory.getRightExit();
+		} else if (presenter.isAllDeployed()) {
+			return PieceImage.Factory.getBackground();
+		} else {	// if player doesn't finish deployment, highligt the area to deploy
+			if ((i == 0 || i == 1) && (j >= 1 && j <= 4) && presenter.getMyColor() == Color.B) {
+				return PieceImage.Factory.getDeployPlace();
+			} else if ((i == 4 || i == 5) && (j >= 1 && j <= 4) && presenter.getMyColor() == Color.W) {
+				return PieceImage.Factory.getDeployPlace();
+			} else {
+				return PieceImage.Factory.getBackground();
 			}
 		}
 	}
@@ -409,93 +336,65 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 
 	@Override
 	public void setViewerState(final Map<Position, String> squares) {
-
-		Timer animationTimer = new Timer() { 
-		      public void run() {
-		    	  placeImagesOnGrid(gameGrid, createAllBackPieces(squares));
-		  		  placeImagesOnDeployPanel(deploySelectArea, ImmutableList.<Image> of()); // For viewer, we don't care about deploy panel
-		      }
-		}; 
-		
-		if (hasAnimation) {
-			animateMove(animate_pieces, animate_squares, animate_startPos, animate_endPos);
-			if (animate_isDnd) {
-//				animationTimer.schedule(0);
-				placeImagesOnGrid(gameGrid, createAllBackPieces(squares));
-		  		  placeImagesOnDeployPanel(deploySelectArea, ImmutableList.<Image> of()); // For viewer, we don't care about deploy panel
-			} else {
-				animationTimer.schedule(1000);
+		inputRouter.ignoreInput();
+		showState(new Command() {
+			@Override
+			public void execute() {
+				renderBoard(createAllBackPieces(squares), false, null);
+				placeImagesOnDeployPanel(deploySelectArea, ImmutableList.<Image> of()); // For viewer, we don't care about deploy panel
 			}
-			hasAnimation = false;
-		} else {
-//			animationTimer.schedule(0);
-			placeImagesOnGrid(gameGrid, createAllBackPieces(squares));
-	  		  placeImagesOnDeployPanel(deploySelectArea, ImmutableList.<Image> of()); // For viewer, we don't care about deploy panel
-		}
-		
+		});
 	}
 
 	@Override
 	public void setPlayerState(final List<Piece> pieces,
 			final Map<Position, String> squares, final Color myColor,
 			final List<Boolean> pieceDeployed) {
-		
-		Timer animationTimer = new Timer() { 
-		      public void run() {
-		    	  placeImagesOnGrid(gameGrid,
-		  				createNormalPieces(pieces, squares, myColor, false));
-		    	  placeImagesOnDeployPanel(deploySelectArea,
-		  				createRemainingPiecesToDeploy(pieces, pieceDeployed, myColor));
-		      }
-		    }; 
-		
-		if (hasAnimation) {
-			animateMove(animate_pieces, animate_squares, animate_startPos, animate_endPos);
-			if (animate_isDnd) {
-//				animationTimer.schedule(0);
-				placeImagesOnGrid(gameGrid,
-		  				createNormalPieces(pieces, squares, myColor, false));
-		    	  placeImagesOnDeployPanel(deploySelectArea,
-		  				createRemainingPiecesToDeploy(pieces, pieceDeployed, myColor));
-			} else {
-				animationTimer.schedule(1000);
+		inputRouter.ignoreInput();	// until the presenter asks for the next move
+		showState(new Command() {
+			@Override
+			public void execute() {
+				renderBoard(createNormalPieces(pieces, squares, myColor), false, myColor);
+				placeImagesOnDeployPanel(deploySelectArea,
+						createRemainingPiecesToDeploy(pieces, pieceDeployed, myColor));
 			}
+		});
+	}
+
+	/*
+	 * Show a new state: after the animation of the last move if there is one (see setAnimateArgs),
+	 * at once otherwise.
+	 */
+	private void showState(Command showBoard) {
+		if (hasAnimation) {
 			hasAnimation = false;
+			animateMove(animate_squares, animate_startPos, animate_endPos, showBoard);
 		} else {
-//			animationTimer.schedule(0);
-			placeImagesOnGrid(gameGrid,
-	  				createNormalPieces(pieces, squares, myColor, false));
-	    	  placeImagesOnDeployPanel(deploySelectArea,
-	  				createRemainingPiecesToDeploy(pieces, pieceDeployed, myColor));
+			// a newer state than the queued animations, e.g., after a drag and drop
+			animator.cancelAll();
+			showBoard.execute();
 		}
 	}
 
 	@Override
-	public void chooseNextPieceToMove(List<Piece> pieces,
-			Map<Position, String> squares, Color turn) {
+	public void chooseNextPieceToMove(final List<Piece> pieces,
+			final Map<Position, String> squares, final Color turn) {
 		enableClicks = true; // here we need to add clickhandler to every
 								// current player's piece image
-		placeImagesOnGrid(gameGrid,
-				createNormalPieces(pieces, squares, turn, true)); // this turn
-																	// is
-																	// myColor
+		inputRouter.selectPiece();
+		// after the animation of the last move, which shows the board without clicks
+		animator.afterMoves(new Command() {
+			@Override
+			public void execute() {
+				renderBoard(createNormalPieces(pieces, squares, turn), true, turn); // this turn is myColor
+			}
+		});
 	}
 
 	@Override
 	public void chooseSquareToMove(List<Position> possiblePositions) {
-		
-		final List<Position> pos = possiblePositions;
-		gameGrid.addClickHandler(new ClickHandler() {
-			@Override
-			public void onClick(ClickEvent event) {
-				Cell cell = ((HTMLTable) event.getSource())
-						.getCellForEvent(event);
-				Position p = new Position(cell.getRowIndex(), cell
-						.getCellIndex());
-				if (pos.contains(p))
-					presenter.squareSelectedToMove(p, false);
-			}
-		});
+		inputRouter.selectTarget(presenter.getLegalMoves(),
+				presenter.getSelectedPieceToMove().getPieceId());
 			
 		// Add all position to drop controller, then inside GhostsDropController we will determine
 		// if this move is valid
@@ -504,7 +403,7 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 			for (int j = 0; j < 6; j++) {
 				Position p = new Position(i, j);
 				boolean isCapture = (squares.get(p) == null) ? false : true;
-				target = new GhostsDropController(myPanel[p.getRow()][p.getCol()], p, presenter, possiblePositions, isCapture ? pieceCaptured : pieceDown);
+				target = new GhostsDropController(board.getContainer(p.getRow(), p.getCol()), p, presenter, isCapture ? pieceCaptured : pieceDown);
 				dragCtrl.registerDropController(target);
 			}
 		}
@@ -516,8 +415,8 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 			Map<Position, Piece> deployTable, Color turn,
 			List<Boolean> pieceDeployed) {
 		enableClicks = true;
-		placeImagesOnGrid(gameGrid,
-				createDeployedPieces(deployTable, turn, false));
+		inputRouter.ignoreInput();	// until a piece is selected on the deploy panel
+		renderBoard(createDeployedPieces(deployTable, turn), false, turn);
 		placeImagesOnDeployPanel(deploySelectArea,
 				createRemainingPiecesToDeploy(pieces, pieceDeployed, turn));
 		
@@ -528,34 +427,7 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 
 	@Override
 	public void chooseSquareToDeploy(List<Position> possiblePositions) {
-		final List<Position> pos = possiblePositions;
-
-		gameGrid.addClickHandler(new ClickHandler() {
-			@Override
-			public void onClick(ClickEvent event) {
-				Cell cell = ((HTMLTable) event.getSource())
-						.getCellForEvent(event);
-				Position p = new Position(cell.getRowIndex(), cell										// will throw null pointer exception, don't know why?????????????*****************
-						.getCellIndex());
-				if (pos.contains(p)) {
-					presenter.squareSelectedToDeploy(p);
-					if (pieceDown != null)
-						pieceDown.play();
-				}
-			}
-		});
-	}
-
-	/*
-	 * return int value of the number after "P" in Px/xx
-	 */
-	int getIndexFromPieceName(String piecename) {
-		if (piecename.length() == 2)
-			return (int) (piecename.charAt(1) - '0');
-		else { // P10~P15
-			int tenth = (int) (piecename.charAt(1) - '0') * 10;
-			return tenth + (int) (piecename.charAt(2) - '0');
-		}
+		inputRouter.selectDeploySquare(possiblePositions);
 	}
 
 	/*
@@ -581,22 +453,17 @@ public class GhostsGraphics extends Composite implements GhostsPresenter.View {
 	@Override
 	public void animateMove(List<Piece> pieces, Map<Position, String> squares,		
 			Position startPos, Position endPos) {
+		animateMove(squares, startPos, endPos, null);
+	}
 
-		Image startImage = allImages[startPos.getRow()][startPos.getCol()];
-		
-		int sx = startPos.getRow();
-		int sy = startPos.getCol();
-		int ex = endPos.getRow();
-		int ey = endPos.getCol();
+	/*
+	 * Queue the animation of the move; showBoard shows the board after it once the piece arrives.
+	 */
+	private void animateMove(Map<Position, String> squares, Position startPos, Position endPos,
+			Command showBoard) {
 		boolean isCapture = (squares.get(endPos) == null) ? false : true;
-				
-//	    animation = new PieceMovingAnimation(myPanel[sx][sy].getAbsoluteLeft(), myPanel[sx][sy].getAbsoluteTop(),
-//		myPanel[ex][ey].getAbsoluteLeft(), myPanel[ex][ey].getAbsoluteTop(), startImage, isCapture ? pieceCaptured : pieceDown);	
-		
-		// Because we make game to auto scale according to web explorer, so we cannot use absolute position to make animation
-		animation = new PieceMovingAnimation(startImage.getWidth() * sy, startImage.getHeight() * sx,		
-				startImage.getWidth() * ey, startImage.getHeight() * ex, startImage, isCapture ? pieceCaptured : pieceDown);
-		animation.run(1000);
+		animator.enqueue(startPos, endPos,
+				isCapture ? SoundEngine.Clip.PIECE_CAPTURED : SoundEngine.Clip.PIECE_DOWN, showBoard);
 	}
 
 	@Override
@@ -0,0 +1,71 @@
+package org.ghosts.graphics;
+
+import org.ghosts.ai.AiMoveService;
+import org.ghosts.ai.AlphaBetaPruning;
+import org.ghosts.ai.CancellableTimer;
+import org.ghosts.ai.DateTimer;
+import org.ghosts.ai.Heuristic;
+import org.ghosts.client.GhostsState;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+/**
+ * Runs the AI search in the browser without freezing the UI: the search is split into steps that
+ * are run by {@link Scheduler#scheduleIncremental}, which yields to the browser event loop between
+ * them. Each run takes about a frame: the steps get a slice of {@value #SLICE_MILLIS} ms that is
+ * also checked inside a step (see {@link AlphaBetaPruning.Search#step(org.ghosts.ai.Timer)}). A
+ * root move that takes longer is searched again in a slice twice as long, up to the time left.
+ */
+public class IncrementalAiMoveService implements AiMoveService {
+	private static final int SLICE_MILLIS = 10;
+
+	private CancellableTimer runningTimer;
+
+	@Override
+	public void prepare() {
+		// loaded with its code, see LazyAiMoveService
+	}
+
+	@Override
+	public void findBestMove(GhostsState state, final int milliseconds, final Callback callback) {
+		cancel();
+		final CancellableTimer timer = new CancellableTimer(new DateTimer(milliseconds));
+		final long deadline = System.currentTimeMillis() + milliseconds;
+		final AlphaBetaPruning.Search search = new AlphaBetaPruning(new Heuristic(), state)
+				.newSearch(AlphaBetaPruning.MAX_DEPTH, timer);
+		runningTimer = timer;
+		Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+			@Override
+			public boolean execute() {
+				if (timer.isCancelled()) {
+					return false;
+				}
+				// no time limit, see DateTimer
+				long remaining = milliseconds > 0 ? deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+				DateTimer slice = new DateTimer(
+						(int) Math.max(1, search.getNextSlice(SLICE_MILLIS, remaining)));
+				boolean more;
+				do {
+					more = search.step(slice);
+				} while (more && !slice.didTimeout());
+				if (more) {
+					return true;
+				}
+				if (!timer.isCancelled()) {		// a cancelled search ends by timeout as well
+					runningTimer = null;
+					callback.onBestMove(search.getBestMove());
+				}
+				return false;
+			}
+		});
+	}
+
+	@Override
+	public void cancel() {
+		if (runningTimer != null) {
+			runningTimer.cancel();
+			runningTimer = null;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package org.ghosts.graphics;
+
+import org.ghosts.ai.AiMoveService;
+import org.ghosts.client.GhostsState;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.RunAsyncCallback;
+
+/**
+ * An {@link AiMoveService} whose code is a split point of the GWT build: AlphaBetaPruning,
+ * Heuristic and {@link IncrementalAiMoveService} are only referenced from the
+ * {@link GWT#runAsync} callback, so sessions without an AI player never download them. The code
+ * is fetched on {@link #prepare}, which the presenter calls when it first plays for the AI
+ * (during the deployment), or at the latest on the first {@link #findBestMove}, which then runs
+ * once the code is loaded.
+ */
+public class LazyAiMoveService implements AiMoveService {
+	private AiMoveService loaded;
+	private boolean loading = false;
+	// the search asked for before the code was loaded
+	private GhostsState pendingState;
+	private int pendingMilliseconds;
+	private Callback pendingCallback;
+
+	@Override
+	public void prepare() {
+		load();
+	}
+
+	@Override
+	public void findBestMove(GhostsState state, int milliseconds, Callback callback) {
+		if (loaded != null) {
+			loaded.findBestMove(state, milliseconds, callback);
+			return;
+		}
+		pendingState = state;
+		pendingMilliseconds = milliseconds;
+		pendingCallback = callback;
+		load();
+	}
+
+	@Override
+	public void cancel() {
+		if (loaded != null) {
+			loaded.cancel();
+		}
+		pendingState = null;
+		pendingCallback = null;
+	}
+
+	private void load() {
+		if (loaded != null || loading) {
+			return;
+		}
+		loading = true;
+		GWT.runAsync(LazyAiMoveService.class, new RunAsyncCallback() {
+			@Override
+			public void onSuccess() {
+				loading = false;
+				loaded = new IncrementalAiMoveService();
+				if (pendingCallback != null) {
+					Callback callback = pendingCallback;
+					GhostsState state = pendingState;
+					pendingState = null;
+					pendingCallback = null;
+					loaded.findBestMove(state, pendingMilliseconds, callback);
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable reason) {
+				// the next prepare or findBestMove tries again
+				loading = false;
+				GWT.log("Loading the AI failed", reason);
+			}
+		});
+	}
+}
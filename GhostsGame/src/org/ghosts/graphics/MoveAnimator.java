@@ -0,0 +1,183 @@
+package org.ghosts.graphics;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.ghosts.client.Position;
+import org.ghosts.sounds.SoundEngine;
+
+import com.google.common.collect.Lists;
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationHandle;
+import com.google.gwt.resources.client.ImageResource;
+import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.ui.AbsolutePanel;
+import com.google.gwt.user.client.ui.Image;
+
+/**
+ * Plays the moves of {@link GhostsGraphics} one after another on the frame clock of the browser
+ * (requestAnimationFrame). A move lifts the piece off its cell of the {@link BoardRenderer},
+ * slides one overlay Image, reused by all moves, to the destination cell, and then at once shows
+ * the board after the move, so the next update isn't held back by a fixed delay.
+ *
+ * Moves that arrive during an animation are queued. If more than {@link #MAX_QUEUED_MOVES} are
+ * waiting, e.g., when a viewer catches up with a game, the queue is dropped and the newest board
+ * is shown without animation.
+ */
+public class MoveAnimator {
+	private static final int DURATION_MILLIS = 1000;
+	private static final int MAX_QUEUED_MOVES = 2;
+
+	private static class MoveAnimation {
+		final Position start;
+		final Position end;
+		final SoundEngine.Clip soundAtEnd;
+		final Command showBoardAfter;
+
+		MoveAnimation(Position start, Position end, SoundEngine.Clip soundAtEnd,
+				Command showBoardAfter) {
+			this.start = start;
+			this.end = end;
+			this.soundAtEnd = soundAtEnd;
+			this.showBoardAfter = showBoardAfter;
+		}
+	}
+
+	private final AbsolutePanel overlayPanel;
+	private final BoardRenderer board;
+	private final SoundEngine sounds;
+	private final Image overlay = new Image();
+	// the first is running
+	private final LinkedList<MoveAnimation> queue = new LinkedList<MoveAnimation>();
+	private final List<Command> afterQueue = Lists.newArrayList();
+	private final AnimationCallback frameCallback = new AnimationCallback() {
+		@Override
+		public void execute(double timestamp) {
+			onFrame(timestamp);
+		}
+	};
+	private AnimationHandle frame;
+	private double startTime;
+	private int startX, startY;
+	private int endX, endY;
+
+	/** overlayPanel must contain the widget of board. */
+	public MoveAnimator(AbsolutePanel overlayPanel, BoardRenderer board, SoundEngine sounds) {
+		this.overlayPanel = overlayPanel;
+		this.board = board;
+		this.sounds = sounds;
+		overlay.setVisible(false);
+	}
+
+	/**
+	 * Queues the move from start to end; soundAtEnd (may be null) plays when the piece arrives and
+	 * showBoardAfter (may be null) shows the board after the move.
+	 */
+	public void enqueue(Position start, Position end, SoundEngine.Clip soundAtEnd,
+			Command showBoardAfter) {
+		MoveAnimation move = new MoveAnimation(start, end, soundAtEnd, showBoardAfter);
+		int waiting = queue.size() - 1;
+		if (waiting >= MAX_QUEUED_MOVES) {
+			// faster than we can play: skip to the newest board
+			cancelAll();
+			if (showBoardAfter != null) {
+				showBoardAfter.execute();
+			}
+			return;
+		}
+		queue.add(move);
+		if (queue.size() == 1) {
+			start(move);
+		}
+	}
+
+	/**
+	 * Runs command once the queued moves have been played (at once if there are none), e.g., to
+	 * show a board that must not be replaced by the board after a move.
+	 */
+	public void afterMoves(Command command) {
+		if (queue.isEmpty()) {
+			command.execute();
+		} else {
+			afterQueue.add(command);
+		}
+	}
+
+	/**
+	 * Drops the queued moves and the commands waiting for them without showing their boards, e.g.,
+	 * before a newer board is shown.
+	 */
+	public void cancelAll() {
+		if (frame != null) {
+			frame.cancel();
+			frame = null;
+		}
+		queue.clear();
+		afterQueue.clear();
+		overlay.setVisible(false);
+	}
+
+	public boolean isAnimating() {
+		return !queue.isEmpty();
+	}
+
+	private void start(MoveAnimation move) {
+		ImageResource resource = board.lift(move.start.getRow(), move.start.getCol());
+		int width = board.getCellWidth();
+		int height = board.getCellHeight();
+		int boardLeft = board.asWidget().getAbsoluteLeft() - overlayPanel.getAbsoluteLeft();
+		int boardTop = board.asWidget().getAbsoluteTop() - overlayPanel.getAbsoluteTop();
+		startX = boardLeft + width * move.start.getCol();
+		startY = boardTop + height * move.start.getRow();
+		endX = boardLeft + width * move.end.getCol();
+		endY = boardTop + height * move.end.getRow();
+		overlay.setResource(resource);
+		overlay.setPixelSize(width, height);
+		if (overlay.getParent() != overlayPanel) {
+			overlayPanel.add(overlay, startX, startY);
+		} else {
+			overlayPanel.setWidgetPosition(overlay, startX, startY);
+		}
+		overlay.setVisible(true);
+		startTime = -1;
+		frame = AnimationScheduler.get().requestAnimationFrame(frameCallback);
+	}
+
+	private void onFrame(double timestamp) {
+		if (startTime < 0) {
+			startTime = timestamp;
+		}
+		double progress = Math.min(1, (timestamp - startTime) / DURATION_MILLIS);
+		// ease in and out, like com.google.gwt.animation.client.Animation
+		double eased = (1 + Math.cos(Math.PI + progress * Math.PI)) / 2;
+		overlayPanel.setWidgetPosition(overlay, (int) (startX + eased * (endX - startX)),
+				(int) (startY + eased * (endY - startY)));
+		if (progress < 1) {
+			frame = AnimationScheduler.get().requestAnimationFrame(frameCallback);
+		} else {
+			frame = null;
+			complete();
+		}
+	}
+
+	private void complete() {
+		MoveAnimation move = queue.removeFirst();
+		overlay.setVisible(false);
+		if (move.soundAtEnd != null) {
+			sounds.play(move.soundAtEnd);
+		}
+		if (move.showBoardAfter != null) {
+			move.showBoardAfter.execute();
+		}
+		if (!queue.isEmpty()) {
+			start(queue.getFirst());
+			return;
+		}
+		List<Command> commands = Lists.newArrayList(afterQueue);
+		afterQueue.clear();
+		for (Command command : commands) {
+			command.execute();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package org.ghosts.graphics;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gwt.canvas.client.Canvas;
+import com.google.gwt.canvas.dom.client.Context2d;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.ImageElement;
+import com.google.gwt.resources.client.ImageResource;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * All the tiles of {@link PieceImages} side by side on one offscreen canvas, so
+ * {@link CanvasBoard} draws every cell from one source. The images of the bundle are loaded once
+ * (one image element per url, since the bundle may already pack several tiles in one image) and
+ * copied to the atlas; until then {@link #isReady} is false.
+ */
+public class PieceAtlas {
+	public interface ReadyHandler {
+		void onReady();
+	}
+
+	private static final int LOAD_POLL_MILLIS = 20;
+
+	private final Canvas canvas;
+	private final List<ImageResource> tiles;
+	private final Map<ImageResource, Integer> tileLefts = Maps.newHashMap();
+	private final Map<String, ImageElement> sources = Maps.newHashMap();
+	private final List<ReadyHandler> readyHandlers = Lists.newArrayList();
+	private final int tileWidth;
+	private final int tileHeight;
+	private boolean ready = false;
+
+	/** Call only if {@link Canvas#isSupported}. */
+	public PieceAtlas(PieceImages pieceImages) {
+		tiles = ImmutableList.of(pieceImages.whiteback(), pieceImages.blackback(),
+				pieceImages.good(), pieceImages.evil(), pieceImages.backround(),
+				pieceImages.leftexit(), pieceImages.rightexit(), pieceImages.deployplace());
+		int width = 0;
+		int maxWidth = 0;
+		int maxHeight = 0;
+		for (ImageResource tile : tiles) {
+			tileLefts.put(tile, width);
+			width += tile.getWidth();
+			maxWidth = Math.max(maxWidth, tile.getWidth());
+			maxHeight = Math.max(maxHeight, tile.getHeight());
+			String url = tile.getSafeUri().asString();
+			if (!sources.containsKey(url)) {
+				ImageElement source = Document.get().createImageElement();
+				source.setSrc(url);
+				sources.put(url, source);
+			}
+		}
+		tileWidth = maxWidth;
+		tileHeight = maxHeight;
+		canvas = Canvas.createIfSupported();
+		canvas.setCoordinateSpaceWidth(width);
+		canvas.setCoordinateSpaceHeight(maxHeight);
+		new Timer() {
+			@Override
+			public void run() {
+				if (copyTilesIfLoaded()) {
+					cancel();
+				}
+			}
+		}.scheduleRepeating(LOAD_POLL_MILLIS);
+	}
+
+	private boolean copyTilesIfLoaded() {
+		for (ImageElement source : sources.values()) {
+			if (!source.getPropertyBoolean("complete")) {
+				return false;
+			}
+		}
+		Context2d context = canvas.getContext2d();
+		for (ImageResource tile : tiles) {
+			ImageElement source = sources.get(tile.getSafeUri().asString());
+			context.drawImage(source, tile.getLeft(), tile.getTop(), tile.getWidth(),
+					tile.getHeight(), tileLefts.get(tile), 0, tile.getWidth(), tile.getHeight());
+		}
+		ready = true;
+		for (ReadyHandler handler : readyHandlers) {
+			handler.onReady();
+		}
+		readyHandlers.clear();
+		return true;
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	/** Calls handler once the atlas is ready, at once if it already is. */
+	public void whenReady(ReadyHandler handler) {
+		if (ready) {
+			handler.onReady();
+		} else {
+			readyHandlers.add(handler);
+		}
+	}
+
+	/** The width of the widest tile; the tiles of the bundle all have the same size. */
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	/** Draws tile, which must be one of the tiles of the atlas, scaled to the given rectangle. */
+	public void drawTile(Context2d context, ImageResource tile, double x, double y, double width,
+			double height) {
+		context.drawImage(canvas.getCanvasElement(), tileLefts.get(tile), 0, tile.getWidth(),
+				tile.getHeight(), x, y, width, height);
+	}
+}
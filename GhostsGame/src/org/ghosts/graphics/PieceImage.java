@@ -65,7 +65,7 @@ public final class PieceImage extends Equality {
 	}
 
 	private String piece2str() {
-		return piece.getPieceKind().substring(1, 5);		//only return "Good" or "Evil"
+		return piece.isGood() ? "Good" : "Evil";		//only return "Good" or "Evil"
 	}
 
 	@Override
@@ -37,12 +37,10 @@ public class PieceImageSupplier {
 	}
 
 	private ImageResource getFrontOfPieceImage(Piece piece) {		
-		if (piece.getPieceKind() == "WGood" || piece.getPieceKind() == "BGood") {
+		if (piece.isGood()) {
 			return pieceImages.good();
-		} else if (piece.getPieceKind() == "WEvil" || piece.getPieceKind() == "BEvil") {
-			return pieceImages.evil();
 		} else {
-			throw new RuntimeException("Forgot pieceKind=" + piece.getPieceKind());
+			return pieceImages.evil();
 		}
 	}
 
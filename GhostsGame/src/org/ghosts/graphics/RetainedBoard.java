@@ -0,0 +1,117 @@
+package org.ghosts.graphics;
+
+import org.ghosts.client.Piece;
+import org.ghosts.client.Position;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.resources.client.ImageResource;
+import com.google.gwt.user.client.ui.AbsolutePanel;
+import com.google.gwt.user.client.ui.Grid;
+import com.google.gwt.user.client.ui.Image;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * The DOM {@link BoardRenderer}, the fallback for browsers without canvas. Every cell of the
+ * grid gets one container and one Image when the board is created; {@link #render} compares the
+ * new PieceImages with the rendered ones and only sets the resource of the cells that changed,
+ * so a move touches two or three cells instead of rebuilding 36 widgets.
+ *
+ * The board keeps the piece rendered in every cell and whether it can be clicked, for
+ * {@link BoardInputRouter}.
+ */
+public class RetainedBoard implements BoardRenderer {
+	private static final int SIZE = 6;
+
+	private final Grid grid;
+	private final PieceImageSupplier pieceImageSupplier;
+	private final AbsolutePanel[][] containers = new AbsolutePanel[SIZE][SIZE];
+	private final Image[][] images = new Image[SIZE][SIZE];
+	// what the cells show now; null before the first render
+	private final ImageResource[][] renderedResources = new ImageResource[SIZE][SIZE];
+	private final Piece[][] renderedPieces = new Piece[SIZE][SIZE];
+	private final boolean[][] clickable = new boolean[SIZE][SIZE];
+
+	public RetainedBoard(Grid grid, PieceImageSupplier pieceImageSupplier) {
+		this.grid = grid;
+		this.pieceImageSupplier = pieceImageSupplier;
+		for (int i = 0; i < SIZE; i++) {
+			for (int j = 0; j < SIZE; j++) {
+				Image image = new Image();
+				AbsolutePanel container = new AbsolutePanel();
+				container.setStyleName("imgContainer");
+				container.add(image);
+				images[i][j] = image;
+				containers[i][j] = container;
+				grid.setWidget(i, j, container);
+			}
+		}
+	}
+
+	@Override
+	public Widget asWidget() {
+		return grid;
+	}
+
+	@Override
+	public int render(PieceImage[][] cells, boolean[][] isClickable) {
+		int changed = 0;
+		for (int i = 0; i < SIZE; i++) {
+			for (int j = 0; j < SIZE; j++) {
+				// Piece equality ignores the id, so the piece is always updated for the input router
+				renderedPieces[i][j] = cells[i][j].piece;
+				clickable[i][j] = isClickable[i][j];
+				ImageResource resource = pieceImageSupplier.getResource(cells[i][j]);
+				Image image = images[i][j];
+				if (resource != renderedResources[i][j] || !image.isVisible()) {
+					image.setResource(resource);
+					image.setVisible(true);
+					renderedResources[i][j] = resource;
+					changed++;
+				}
+			}
+		}
+		return changed;
+	}
+
+	@Override
+	public Piece getClickablePiece(int row, int col) {
+		return clickable[row][col] ? renderedPieces[row][col] : null;
+	}
+
+	@Override
+	public int getCellIndexAt(int x, int y) {
+		// the offsets of the cells are relative to the table of the grid
+		for (int i = 0; i < SIZE; i++) {
+			for (int j = 0; j < SIZE; j++) {
+				Element cell = grid.getCellFormatter().getElement(i, j);
+				int left = cell.getOffsetLeft();
+				int top = cell.getOffsetTop();
+				if (x >= left && x < left + cell.getOffsetWidth()
+						&& y >= top && y < top + cell.getOffsetHeight()) {
+					return Position.indexOf(i, j);
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int getCellWidth() {
+		return images[0][0].getWidth();
+	}
+
+	@Override
+	public int getCellHeight() {
+		return images[0][0].getHeight();
+	}
+
+	public AbsolutePanel getContainer(int row, int col) {
+		return containers[row][col];
+	}
+
+	@Override
+	public ImageResource lift(int row, int col) {
+		images[row][col].setVisible(false);
+		return renderedResources[row][col];
+	}
+}
@@ -0,0 +1,105 @@
+package org.ghosts.server;
+
+import java.util.List;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.ghosts.client.Color;
+import org.ghosts.client.GhostsLogic;
+import org.ghosts.client.GhostsState;
+import org.ghosts.client.GhostsStateTracker;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A game held by {@link ActiveGameCache}: its GameState and the GhostsStates of its players. The
+ * GhostsStates are derived by a {@link GhostsStateTracker}, so after a move only the changed keys
+ * are converted.
+ * <p>
+ * An ActiveGame is not thread-safe; use it under {@link ActiveGameCache#getLock}.
+ */
+public class ActiveGame {
+	private final String gameId;
+	private final List<String> playerIds;
+	private final GhostsStateTracker stateTracker = new GhostsStateTracker(new GhostsLogic());
+	private GameState gameState;
+	private GameState lastGameState;
+	private List<Operation> lastMove;
+	private String lastMovePlayerId;
+	private String turnPlayerId;
+	private int moveCount;
+
+	ActiveGame(String gameId, List<String> playerIds, GameRepository.StoredGame storedGame) {
+		this.gameId = gameId;
+		this.playerIds = ImmutableList.copyOf(playerIds);
+		this.gameState = storedGame.gameState;
+		this.lastMove = storedGame.lastMove;
+		this.lastMovePlayerId = storedGame.lastMovePlayerId;
+		this.turnPlayerId = storedGame.turnPlayerId;
+		this.moveCount = storedGame.moveCount;
+	}
+
+	/**
+	 * Moves to move number moveNumber; stateAfter is the state after it, so a Shuffle gives the
+	 * same state here as in the game. Returns false (and changes nothing) if moveNumber is not
+	 * the next move, e.g., because moves were made while the game was not cached.
+	 */
+	boolean moveMade(int moveNumber, String playerId, List<Operation> move, GameState stateAfter,
+			String turnPlayerId) {
+		if (moveNumber != moveCount + 1) {
+			return false;
+		}
+		lastGameState = gameState;
+		gameState = stateAfter.copy();
+		lastMove = ImmutableList.copyOf(move);
+		lastMovePlayerId = playerId;
+		this.turnPlayerId = turnPlayerId;
+		moveCount = moveNumber;
+		return true;
+	}
+
+	/** Returns the GhostsState as seen by playerId, converting only what the last move changed. */
+	public GhostsState getGhostsState(String playerId) {
+		return stateTracker.getState(
+				lastGameState == null ? null : lastGameState.getStateForPlayerId(playerId),
+				lastMove, gameState.getStateForPlayerId(playerId), getTurn(), playerIds);
+	}
+
+	/** The color of turnPlayerId (white before the first move). */
+	public Color getTurn() {
+		int index = turnPlayerId == null ? 0 : playerIds.indexOf(turnPlayerId);
+		return Color.values()[Math.max(0, index)];
+	}
+
+	public String getGameId() {
+		return gameId;
+	}
+
+	public List<String> getPlayerIds() {
+		return playerIds;
+	}
+
+	public GameState getGameState() {
+		return gameState;
+	}
+
+	public List<Operation> getLastMove() {
+		return lastMove;
+	}
+
+	public String getLastMovePlayerId() {
+		return lastMovePlayerId;
+	}
+
+	public String getTurnPlayerId() {
+		return turnPlayerId;
+	}
+
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	GhostsStateTracker getStateTracker() {
+		return stateTracker;
+	}
+}
@@ -0,0 +1,126 @@
+package org.ghosts.server;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import net.sf.jsr107cache.Cache;
+import net.sf.jsr107cache.CacheStatistics;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Keeps the active games in memory as {@link ActiveGame}s, so a request for a game doesn't load
+ * it from the store and convert its state again. The games sit in a jsr107 {@link Cache}, e.g.,
+ * an {@link InMemoryCache} with LRU and idle eviction; a missing game is loaded from a
+ * {@link GameLoader}.
+ * <p>
+ * Every game id has a lock from a fixed set of stripes: {@link #get} loads a game under its lock,
+ * so concurrent requests load it once, and the callers use an ActiveGame under the same lock.
+ * <p>
+ * As a {@link MoveRecorder} in front of the recorder that stores the moves, the cache applies
+ * every move to the cached game, so the games of running sessions stay cached and current.
+ */
+public class ActiveGameCache implements MoveRecorder {
+	private static final int LOCK_STRIPES = 64;
+
+	private final Cache cache;
+	private final GameLoader loader;
+	private final MoveRecorder next;
+	private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong loadNanos = new AtomicLong();
+
+	/** next may be null if the moves are only applied to the cache. */
+	public ActiveGameCache(Cache cache, GameLoader loader, MoveRecorder next) {
+		this.cache = cache;
+		this.loader = loader;
+		this.next = next;
+	}
+
+	/** The lock of gameId; hold it while using its ActiveGame. */
+	public Lock getLock(String gameId) {
+		return locks.get(gameId);
+	}
+
+	/** Returns the game, loading it on a miss, or null if it is not stored. */
+	public ActiveGame get(String gameId, List<String> playerIds) {
+		ActiveGame game = (ActiveGame) cache.get(gameId);
+		if (game != null) {
+			return game;
+		}
+		Lock lock = getLock(gameId);
+		lock.lock();
+		try {
+			// another request may have loaded it while we waited
+			game = (ActiveGame) cache.peek(gameId);
+			if (game == null) {
+				long start = System.nanoTime();
+				GameRepository.StoredGame storedGame = loader.load(gameId);
+				loads.incrementAndGet();
+				loadNanos.addAndGet(System.nanoTime() - start);
+				if (storedGame == null) {
+					return null;
+				}
+				game = new ActiveGame(gameId, playerIds, storedGame);
+				cache.put(gameId, game);
+			}
+			return game;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void appendMove(String gameId, int moveNumber, String playerId, List<Operation> move,
+			GameState stateAfter, String turnPlayerId) {
+		Lock lock = getLock(gameId);
+		lock.lock();
+		try {
+			ActiveGame game = (ActiveGame) cache.peek(gameId);
+			if (game != null
+					&& !game.moveMade(moveNumber, playerId, move, stateAfter, turnPlayerId)) {
+				// out of date, the next get loads it again
+				cache.remove(gameId);
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (next != null) {
+			next.appendMove(gameId, moveNumber, playerId, move, stateAfter, turnPlayerId);
+		}
+	}
+
+	@Override
+	public void gameEnded(String gameId) {
+		cache.remove(gameId);
+		if (next != null) {
+			next.gameEnded(gameId);
+		}
+	}
+
+	/** The hits and misses of {@link #get}. */
+	public CacheStatistics getStatistics() {
+		return cache.getCacheStatistics();
+	}
+
+	/** The share of {@link #get}s that found the game cached, or 1 if there were none. */
+	public double getHitRate() {
+		CacheStatistics statistics = cache.getCacheStatistics();
+		long requests = (long) statistics.getCacheHits() + statistics.getCacheMisses();
+		return requests == 0 ? 1.0 : statistics.getCacheHits() / (double) requests;
+	}
+
+	/** The games loaded from the GameLoader, including those that were not stored. */
+	public long getLoads() {
+		return loads.get();
+	}
+
+	public long getAverageLoadNanos() {
+		long count = loads.get();
+		return count == 0 ? 0 : loadNanos.get() / count;
+	}
+}
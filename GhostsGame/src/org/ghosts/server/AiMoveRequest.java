@@ -0,0 +1,56 @@
+package org.ghosts.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ghosts.client.Color;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A request for the AI move of one game: the GameApi state (as seen by the AI player),
+ * whose turn it is, and how long the search may take.
+ */
+public class AiMoveRequest {
+	private final String gameId;
+	private final Map<String, Object> state;
+	private final Color turn;
+	private final List<String> playerIds;
+	private final int timeBudgetMillis;
+
+	public AiMoveRequest(String gameId, Map<String, Object> state, Color turn,
+			List<String> playerIds, int timeBudgetMillis) {
+		checkArgument(timeBudgetMillis > 0, timeBudgetMillis);
+		this.gameId = checkNotNull(gameId);
+		// hidden keys map to null, which ImmutableMap doesn't allow
+		this.state = Collections.unmodifiableMap(new HashMap<String, Object>(state));
+		this.turn = checkNotNull(turn);
+		this.playerIds = ImmutableList.copyOf(playerIds);
+		this.timeBudgetMillis = timeBudgetMillis;
+	}
+
+	public String getGameId() {
+		return gameId;
+	}
+
+	public Map<String, Object> getState() {
+		return state;
+	}
+
+	public Color getTurn() {
+		return turn;
+	}
+
+	public List<String> getPlayerIds() {
+		return playerIds;
+	}
+
+	public int getTimeBudgetMillis() {
+		return timeBudgetMillis;
+	}
+}
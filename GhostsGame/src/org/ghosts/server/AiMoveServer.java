@@ -0,0 +1,328 @@
+package org.ghosts.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ghosts.ai.AlphaBetaPruning;
+import org.ghosts.ai.CancellableTimer;
+import org.ghosts.ai.Heuristic;
+import org.ghosts.ai.Timer;
+import org.ghosts.client.GhostsLogic;
+import org.ghosts.client.GhostsState;
+import org.ghosts.client.Move;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * In-process AI move endpoint shared by many games.
+ *
+ * Searches run on a fixed pool of worker threads that share one run queue. A worker runs a
+ * search for at most one time slice, and then puts it back at the end of the queue, so a long
+ * search cannot starve the games queued behind it. The slice is checked inside the search (see
+ * {@link AlphaBetaPruning.Search#step(Timer)}), so it also bounds a root move that
+ * takes longer than a slice: that move is searched again in a slice twice as long, up to the
+ * time left of the request, so the deepening only ends by the time budget (or the maximum depth).
+ * The time budget of a request counts from its submission, so the time spent waiting in the queue
+ * is part of it. At most maxPending requests are admitted,
+ * further requests are rejected right away instead of queueing up behind a deadline they can't
+ * meet.
+ *
+ * A game only keeps its pending search, so that a newer request supersedes it, and when it made
+ * its last request. No search state is kept between the moves of a game: every search starts
+ * from a state in which {@link AlphaBetaPruning} guesses the hidden pieces anew, and the search
+ * has no table or move order whose entries would still hold after the guess changes. Every
+ * idleMillis, the games that made no request for idleMillis are evicted.
+ */
+public class AiMoveServer {
+	private static final long DEFAULT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final BlockingQueue<SearchTask> runQueue = new LinkedBlockingQueue<SearchTask>();
+	private final ConcurrentHashMap<String, GameContext> games =
+			new ConcurrentHashMap<String, GameContext>();
+	private final int maxPending;
+	private final long idleNanos;
+	private final long sliceNanos;
+	private final Ticker ticker;
+	// null if the searches are run by runNext
+	private ExecutorService workers;
+	private ScheduledExecutorService evictor;
+
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+	private final LatencyStats queueWait = new LatencyStats();
+	private final LatencyStats latency = new LatencyStats();
+
+	public AiMoveServer(int workerThreads, int maxPending, long idleMillis) {
+		this(workerThreads, maxPending, idleMillis, DEFAULT_SLICE_NANOS);
+	}
+
+	public AiMoveServer(int workerThreads, int maxPending, long idleMillis, long sliceNanos) {
+		this(maxPending, idleMillis, sliceNanos, Ticker.systemTicker());
+		checkArgument(workerThreads > 0);
+		this.workers = Executors.newFixedThreadPool(workerThreads);
+		for (int i = 0; i < workerThreads; i++) {
+			workers.execute(new Worker());
+		}
+		this.evictor = Executors.newSingleThreadScheduledExecutor();
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evictIdleGames();
+			}
+		}, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * A server without threads, for tests: the searches only run in {@link #runNext} and the
+	 * games are only evicted by {@link #evictIdleGames}, and ticker is the clock of the time
+	 * budgets, the slices and the idle time.
+	 */
+	AiMoveServer(int maxPending, long idleMillis, long sliceNanos, Ticker ticker) {
+		checkArgument(maxPending > 0 && idleMillis > 0 && sliceNanos > 0);
+		this.maxPending = maxPending;
+		this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+		this.sliceNanos = sliceNanos;
+		this.ticker = ticker;
+	}
+
+	/**
+	 * Queues the search of the AI move for request. A newer request of the same game cancels the
+	 * pending one, whose future is then cancelled. The returned future fails with
+	 * {@link RejectedExecutionException} if the server is full.
+	 */
+	public ListenableFuture<Move> submit(AiMoveRequest request) {
+		if (pending.incrementAndGet() > maxPending) {
+			pending.decrementAndGet();
+			rejected.incrementAndGet();
+			return Futures.immediateFailedFuture(new RejectedExecutionException(
+					"AI move server is full, pending=" + maxPending));
+		}
+		SearchTask task = new SearchTask(request, getContext(request.getGameId()), ticker);
+		task.context.replaceTask(task);
+		runQueue.add(task);
+		return task.result;
+	}
+
+	private GameContext getContext(String gameId) {
+		GameContext context = games.get(gameId);
+		if (context == null) {
+			context = new GameContext();
+			GameContext existing = games.putIfAbsent(gameId, context);
+			if (existing != null) {
+				context = existing;
+			}
+		}
+		context.lastUsedNanos = ticker.read();
+		return context;
+	}
+
+	/** Removes the games that made no request for idleMillis. Returns how many were removed. */
+	public int evictIdleGames() {
+		long now = ticker.read();
+		int evicted = 0;
+		for (Iterator<GameContext> it = games.values().iterator(); it.hasNext();) {
+			GameContext context = it.next();
+			if (now - context.lastUsedNanos > idleNanos && !context.hasTask()) {
+				it.remove();
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	public int getQueueDepth() {
+		return runQueue.size();
+	}
+
+	public int getPendingRequests() {
+		return pending.get();
+	}
+
+	public int getActiveGames() {
+		return games.size();
+	}
+
+	public long getRejectedRequests() {
+		return rejected.get();
+	}
+
+	/** Time from submission until a worker first runs the search. */
+	public LatencyStats.Snapshot getQueueWaitStats() {
+		return queueWait.snapshot();
+	}
+
+	/** Time from submission until the move is ready. */
+	public LatencyStats.Snapshot getLatencyStats() {
+		return latency.snapshot();
+	}
+
+	public void shutdown() {
+		if (workers != null) {
+			workers.shutdownNow();
+			evictor.shutdownNow();
+		}
+		for (SearchTask task; (task = runQueue.poll()) != null;) {
+			task.result.cancel(false);
+		}
+	}
+
+	private void finish(SearchTask task) {
+		pending.decrementAndGet();
+		task.context.clearTask(task);
+		latency.record(ticker.read() - task.submittedNanos);
+	}
+
+	/**
+	 * Runs one slice of the search at the head of the queue, like a worker does. Returns false if
+	 * the queue is empty.
+	 */
+	boolean runNext() {
+		SearchTask task = runQueue.poll();
+		if (task == null) {
+			return false;
+		}
+		if (runSlice(task)) {
+			runQueue.add(task);
+		}
+		return true;
+	}
+
+	private boolean isSuperseded(SearchTask task) {
+		if (task.timer.isCancelled() || task.result.isCancelled()) {
+			task.result.cancel(false);
+			finish(task);
+			return true;
+		}
+		return false;
+	}
+
+	// Returns true if the search of task needs more time
+	private boolean runSlice(SearchTask task) {
+		try {
+			if (isSuperseded(task)) {
+				return false;
+			}
+			if (task.search == null) {
+				queueWait.record(ticker.read() - task.submittedNanos);
+				task.start();
+			}
+			long now = ticker.read();
+			Timer slice = new DeadlineTimer(ticker,
+					now + task.search.getNextSlice(sliceNanos, task.deadlineNanos - now));
+			boolean more;
+			do {
+				more = task.search.step(slice);
+			} while (more && !slice.didTimeout());
+			if (more) {
+				return true;
+			}
+			if (isSuperseded(task)) {
+				return false;
+			}
+			Move move = task.search.getBestMove();
+			finish(task);
+			task.result.set(move);
+		} catch (RuntimeException e) {
+			finish(task);
+			task.result.setException(e);
+		}
+		return false;
+	}
+
+	private class Worker implements Runnable {
+		@Override
+		public void run() {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					SearchTask task = runQueue.take();
+					if (runSlice(task)) {
+						runQueue.add(task);
+					}
+				}
+			} catch (InterruptedException e) {
+				// shutdown
+			}
+		}
+	}
+
+	private static class DeadlineTimer implements Timer {
+		private final Ticker ticker;
+		private final long deadlineNanos;
+
+		DeadlineTimer(Ticker ticker, long deadlineNanos) {
+			this.ticker = ticker;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		@Override
+		public boolean didTimeout() {
+			return ticker.read() - deadlineNanos > 0;
+		}
+	}
+
+	private static class GameContext {
+		final Heuristic heuristic = new Heuristic();
+		final GhostsLogic ghostsLogic = new GhostsLogic();
+		volatile long lastUsedNanos;
+		private SearchTask task;
+
+		synchronized void replaceTask(SearchTask newTask) {
+			if (task != null) {
+				task.timer.cancel();
+			}
+			task = newTask;
+		}
+
+		synchronized void clearTask(SearchTask finishedTask) {
+			if (task == finishedTask) {
+				task = null;
+			}
+		}
+
+		synchronized boolean hasTask() {
+			return task != null;
+		}
+	}
+
+	private static class SearchTask {
+		final AiMoveRequest request;
+		final GameContext context;
+		final long submittedNanos;
+		final long deadlineNanos;
+		final CancellableTimer timer;
+		final SettableFuture<Move> result = SettableFuture.create();
+		AlphaBetaPruning.Search search;
+
+		SearchTask(AiMoveRequest request, GameContext context, Ticker ticker) {
+			this.request = request;
+			this.context = context;
+			this.submittedNanos = ticker.read();
+			this.deadlineNanos = submittedNanos
+					+ TimeUnit.MILLISECONDS.toNanos(request.getTimeBudgetMillis());
+			this.timer = new CancellableTimer(new DeadlineTimer(ticker, deadlineNanos));
+		}
+
+		// Heuristic and GhostsLogic keep no per-search state, so a superseded task that is still
+		// running does not disturb the new one
+		void start() {
+			GhostsState state = context.ghostsLogic.gameApiStateToGhostsState(request.getState(),
+					request.getTurn(), request.getPlayerIds());
+			search = new AlphaBetaPruning(context.heuristic, state).newSearch(
+					AlphaBetaPruning.MAX_DEPTH, timer);
+		}
+	}
+}
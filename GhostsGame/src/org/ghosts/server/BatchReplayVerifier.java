@@ -0,0 +1,91 @@
+package org.ghosts.server;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Verifies many {@link GameLog}s in parallel on a fork-join pool. The logs are split in halves
+ * until a task has few enough of them, and every such task replays its logs on one
+ * {@link ReplayVerifier}, so a board is allocated per task, not per game or per move.
+ */
+public class BatchReplayVerifier {
+	// Logs replayed by one task, large enough that a task costs much more than forking it
+	static final int LOGS_PER_TASK = 32;
+
+	/** The outcome of a batch: a result per log, in the order of the logs. */
+	public static class Report {
+		public final List<ReplayVerifier.Result> results;
+		public final long elapsedNanos;
+
+		Report(List<ReplayVerifier.Result> results, long elapsedNanos) {
+			this.results = results;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public double getGamesPerSecond() {
+			return results.size() / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+		}
+
+		public List<ReplayVerifier.Result> getIllegalGames() {
+			List<ReplayVerifier.Result> illegalGames = Lists.newArrayList();
+			for (ReplayVerifier.Result result : results) {
+				if (!result.isLegal()) {
+					illegalGames.add(result);
+				}
+			}
+			return illegalGames;
+		}
+	}
+
+	private final ForkJoinPool pool;
+
+	public BatchReplayVerifier(int parallelism) {
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	public Report verifyAll(List<GameLog> gameLogs) {
+		long start = System.nanoTime();
+		ReplayVerifier.Result[] results = new ReplayVerifier.Result[gameLogs.size()];
+		pool.invoke(new VerifyTask(gameLogs, results, 0, gameLogs.size()));
+		return new Report(ImmutableList.copyOf(results), System.nanoTime() - start);
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	private static class VerifyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<GameLog> gameLogs;
+		private final ReplayVerifier.Result[] results;
+		private final int from;
+		private final int to;
+
+		VerifyTask(List<GameLog> gameLogs, ReplayVerifier.Result[] results, int from, int to) {
+			this.gameLogs = gameLogs;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= LOGS_PER_TASK) {
+				ReplayVerifier verifier = new ReplayVerifier();
+				for (int i = from; i < to; i++) {
+					results[i] = verifier.verify(gameLogs.get(i));
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new VerifyTask(gameLogs, results, from, middle),
+					new VerifyTask(gameLogs, results, middle, to));
+		}
+	}
+}
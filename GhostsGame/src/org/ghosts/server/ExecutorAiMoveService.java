@@ -0,0 +1,103 @@
+package org.ghosts.server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ghosts.ai.AiMoveService;
+import org.ghosts.ai.AlphaBetaPruning;
+import org.ghosts.ai.CancellableTimer;
+import org.ghosts.ai.DateTimer;
+import org.ghosts.ai.Heuristic;
+import org.ghosts.client.GhostsState;
+import org.ghosts.client.Move;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Runs the AI search on a dedicated executor, so the thread calling {@link #findBestMove}
+ * (e.g., a container callback) is not blocked during the search.
+ * The best move is delivered on callbackExecutor, which is the search thread by default.
+ */
+public class ExecutorAiMoveService implements AiMoveService {
+	private final ExecutorService searchExecutor;
+	private final Executor callbackExecutor;
+	private final int maxMilliseconds;
+	private CancellableTimer runningTimer;
+
+	public ExecutorAiMoveService() {
+		this(Executors.newSingleThreadExecutor(), MoreExecutors.sameThreadExecutor());
+	}
+
+	public ExecutorAiMoveService(ExecutorService searchExecutor, Executor callbackExecutor) {
+		this(searchExecutor, callbackExecutor, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * maxMilliseconds caps the time the caller asks for, e.g., when many games share
+	 * searchExecutor.
+	 */
+	public ExecutorAiMoveService(ExecutorService searchExecutor, Executor callbackExecutor,
+			int maxMilliseconds) {
+		this.searchExecutor = searchExecutor;
+		this.callbackExecutor = callbackExecutor;
+		this.maxMilliseconds = maxMilliseconds;
+	}
+
+	@Override
+	public void prepare() {
+		// the search needs nothing loaded
+	}
+
+	@Override
+	public synchronized void findBestMove(final GhostsState state, int milliseconds,
+			final Callback callback) {
+		cancel();
+		final CancellableTimer timer = new CancellableTimer(
+				new DateTimer(Math.min(milliseconds, maxMilliseconds)));
+		runningTimer = timer;
+		searchExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (timer.isCancelled()) {
+					return;
+				}
+				AlphaBetaPruning ai = new AlphaBetaPruning(new Heuristic(), state);
+				final Move move = ai.findBestMove(AlphaBetaPruning.MAX_DEPTH, timer);
+				if (!finish(timer)) {
+					return;
+				}
+				callbackExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						callback.onBestMove(move);
+					}
+				});
+			}
+		});
+	}
+
+	// Returns false if the search of timer was cancelled meanwhile
+	private synchronized boolean finish(CancellableTimer timer) {
+		if (timer.isCancelled()) {
+			return false;
+		}
+		if (runningTimer == timer) {
+			runningTimer = null;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized void cancel() {
+		if (runningTimer != null) {
+			runningTimer.cancel();
+			runningTimer = null;
+		}
+	}
+
+	public void shutdown() {
+		cancel();
+		searchExecutor.shutdownNow();
+	}
+}
@@ -0,0 +1,81 @@
+package org.ghosts.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Reads an archive written by {@link GameArchiveWriter} through memory-mapped buffers. A game
+ * is found through the index and read in place with a {@link GameRecord}, so a scan of the whole
+ * archive allocates nothing per game:
+ * <pre>
+ * GameRecord record = new GameRecord();
+ * for (int i = 0; i &lt; reader.size(); i++) {
+ *   reader.read(i, record);
+ *   ...
+ * }
+ * </pre>
+ * Only the games that were indexed when the reader was opened are read. A single mapping is
+ * used for each file, so the data file must stay under 2GB (about 10 million games).
+ */
+public class GameArchiveReader {
+	private final MappedByteBuffer data;
+	private final MappedByteBuffer index;
+	private final int size;
+
+	public GameArchiveReader(File file) throws IOException {
+		data = map(file, GameArchiveWriter.DATA_MAGIC);
+		index = map(GameArchiveWriter.indexFileOf(file), GameArchiveWriter.INDEX_MAGIC);
+		size = (index.capacity() - GameArchiveWriter.FILE_HEADER_BYTES) / 8;
+	}
+
+	/** The number of games in the archive. */
+	public int size() {
+		return size;
+	}
+
+	/** Points record at game i. The record stays valid as long as this reader is reachable. */
+	public GameRecord read(int i, GameRecord record) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Game " + i + " of " + size);
+		}
+		long offset = index.getLong(GameArchiveWriter.FILE_HEADER_BYTES + 8 * i);
+		return record.wrap(data, (int) offset);
+	}
+
+	/** Decodes game i into a GameLog, e.g., for {@link ReplayVerifier}. */
+	public GameLog readGameLog(int i, List<String> playerIds) {
+		return GameLogCodec.decode(read(i, new GameRecord()), String.valueOf(i), playerIds);
+	}
+
+	private static MappedByteBuffer map(File file, int magic) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Archive file is larger than 2GB: " + file);
+			}
+			checkFileHeader(channel, magic);
+			// the mapping stays valid after the file is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	static void checkFileHeader(FileChannel channel, int magic) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(GameArchiveWriter.FILE_HEADER_BYTES);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) {
+				throw new IOException("Not a game archive: file is too short");
+			}
+		}
+		if (header.getInt(0) != magic || header.getInt(4) != GameArchiveWriter.VERSION) {
+			throw new IOException("Not a game archive of version " + GameArchiveWriter.VERSION);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.ghosts.server;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends games to an archive: the {@link GameRecord}s one after the other in the data file,
+ * and the offset of every record in an index file next to it (the data file name + ".index").
+ * <p>
+ * The records and offsets are buffered and the data is always written before the offsets, so
+ * the index never points past the data. Opening an archive drops a record that was written
+ * without its offset, e.g., by a crash, so appends resume right after the last indexed game.
+ */
+public class GameArchiveWriter implements Closeable {
+	static final int DATA_MAGIC = 0x47485354; // "GHST"
+	static final int INDEX_MAGIC = 0x47484958; // "GHIX"
+	static final int VERSION = 1;
+	static final int FILE_HEADER_BYTES = 8;
+	private static final int BUFFER_BYTES = 1 << 17;
+
+	private final FileChannel data;
+	private final FileChannel index;
+	private final ByteBuffer dataBuffer = ByteBuffer.allocate(BUFFER_BYTES);
+	private final ByteBuffer indexBuffer = ByteBuffer.allocate(BUFFER_BYTES / 16);
+	private final GameRecord record = new GameRecord();
+	private long dataEnd;
+
+	public GameArchiveWriter(File file) throws IOException {
+		data = new RandomAccessFile(file, "rw").getChannel();
+		index = new RandomAccessFile(indexFileOf(file), "rw").getChannel();
+		if (data.size() == 0) {
+			index.truncate(0);
+			writeFileHeader(data, DATA_MAGIC);
+			writeFileHeader(index, INDEX_MAGIC);
+		} else {
+			GameArchiveReader.checkFileHeader(data, DATA_MAGIC);
+			GameArchiveReader.checkFileHeader(index, INDEX_MAGIC);
+		}
+		recover();
+	}
+
+	static File indexFileOf(File file) {
+		return new File(file.getPath() + ".index");
+	}
+
+	/** Appends gameLog; it is in the files after the next {@link #flush} or {@link #close}. */
+	public void append(GameLog gameLog) throws IOException {
+		if (dataBuffer.remaining() < GameLogCodec.maxLength(gameLog)
+				|| !indexBuffer.hasRemaining()) {
+			flush();
+		}
+		int start = dataBuffer.position();
+		try {
+			GameLogCodec.encode(gameLog, dataBuffer);
+		} catch (RuntimeException e) {
+			// leave no part of a game that can't be encoded
+			dataBuffer.position(start);
+			throw e;
+		}
+		indexBuffer.putLong(dataEnd);
+		dataEnd += dataBuffer.position() - start;
+	}
+
+	public void flush() throws IOException {
+		dataBuffer.flip();
+		while (dataBuffer.hasRemaining()) {
+			data.write(dataBuffer);
+		}
+		dataBuffer.clear();
+		indexBuffer.flip();
+		while (indexBuffer.hasRemaining()) {
+			index.write(indexBuffer);
+		}
+		indexBuffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			data.close();
+			index.close();
+		}
+	}
+
+	// Truncates both files to the last whole, indexed record and positions them at the end
+	private void recover() throws IOException {
+		long games = (index.size() - FILE_HEADER_BYTES) / 8;
+		index.truncate(FILE_HEADER_BYTES + games * 8);
+		dataEnd = FILE_HEADER_BYTES;
+		if (games > 0) {
+			ByteBuffer offset = ByteBuffer.allocate(8);
+			readFully(index, offset, FILE_HEADER_BYTES + (games - 1) * 8);
+			long lastRecord = offset.getLong(0);
+			ByteBuffer header = ByteBuffer.allocate(GameRecord.HEADER_BYTES);
+			readFully(data, header, lastRecord);
+			dataEnd = lastRecord + record.wrap(header, 0).getLength();
+		}
+		if (data.size() < dataEnd) {
+			throw new IOException("Archive data ends before its last indexed game");
+		}
+		data.truncate(dataEnd);
+		data.position(dataEnd);
+		index.position(index.size());
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Archive is truncated");
+			}
+		}
+	}
+
+	private static void writeFileHeader(FileChannel channel, int magic) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+		header.putInt(magic).putInt(VERSION).flip();
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+	}
+}
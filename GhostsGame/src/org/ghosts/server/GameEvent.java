@@ -0,0 +1,63 @@
+package org.ghosts.server;
+
+import javax.jdo.annotations.IdentityType;
+import javax.jdo.annotations.PersistenceCapable;
+import javax.jdo.annotations.Persistent;
+import javax.jdo.annotations.PrimaryKey;
+
+/**
+ * One move of a stored game, as written by {@link GameRepository}: the MakeMove of moveNumber
+ * (1 is the first move) in the JSON of {@link org.game_api.GameApiJsonCodec}.
+ */
+@PersistenceCapable(identityType = IdentityType.APPLICATION, detachable = "true")
+public class GameEvent {
+	@PrimaryKey
+	@Persistent
+	private String key;
+
+	@Persistent
+	private String gameId;
+
+	@Persistent
+	private int moveNumber;
+
+	@Persistent
+	private String playerId;
+
+	// a blob, so a move is not limited to the 500 bytes of an indexed value
+	@Persistent(serialized = "true")
+	private byte[] makeMove;
+
+	// for JDO
+	private GameEvent() {
+	}
+
+	GameEvent(String gameId, int moveNumber, String playerId, byte[] makeMove) {
+		this.key = keyOf(gameId, moveNumber);
+		this.gameId = gameId;
+		this.moveNumber = moveNumber;
+		this.playerId = playerId;
+		this.makeMove = makeMove;
+	}
+
+	// the moves of a game sort by key, like they sort by moveNumber
+	static String keyOf(String gameId, int moveNumber) {
+		return gameId + "/" + String.format("%08d", moveNumber);
+	}
+
+	public String getGameId() {
+		return gameId;
+	}
+
+	public int getMoveNumber() {
+		return moveNumber;
+	}
+
+	public String getPlayerId() {
+		return playerId;
+	}
+
+	public byte[] getMakeMove() {
+		return makeMove;
+	}
+}
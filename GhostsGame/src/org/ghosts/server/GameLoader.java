@@ -0,0 +1,7 @@
+package org.ghosts.server;
+
+/** Loads the stored games for {@link ActiveGameCache}. */
+public interface GameLoader {
+	/** Returns gameId as of its last stored move, or null if nothing is stored for it. */
+	GameRepository.StoredGame load(String gameId);
+}
@@ -0,0 +1,75 @@
+package org.ghosts.server;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.ghosts.client.Piece;
+import org.ghosts.client.PieceKind;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The record of a whole game: the board initialization and every move after it, in order.
+ * <p>
+ * The board initialization shuffles the ghosts, so it can't be replayed as it was sent. The log
+ * keeps the resolved initialization instead: SetTurn to white, then one Set of every piece
+ * "P0" ~ "P15" to its kind after the shuffle, visible to its owner.
+ */
+public class GameLog {
+	private final String gameId;
+	private final List<String> playerIds;
+	private final List<Operation> initialOperations;
+	private final List<List<Operation>> moves;
+
+	public GameLog(String gameId, List<String> playerIds, List<Operation> initialOperations,
+			List<List<Operation>> moves) {
+		this.gameId = gameId;
+		this.playerIds = ImmutableList.copyOf(playerIds);
+		this.initialOperations = ImmutableList.copyOf(initialOperations);
+		this.moves = ImmutableList.copyOf(moves);
+	}
+
+	/**
+	 * Returns the resolved board initialization, reading the kinds of the shuffled pieces from
+	 * the states of white (P0 ~ P7) and black (P8 ~ P15) after the initialization.
+	 */
+	public static List<Operation> getInitialOperations(List<String> playerIds,
+			Map<String, Object> whiteState, Map<String, Object> blackState) {
+		PieceKind[] kinds = new PieceKind[Piece.NUMBER_OF_PIECES];
+		for (int i = 0; i < Piece.NUMBER_OF_PIECES; i++) {
+			Object kind = (Piece.isWhitePieceId(i) ? whiteState : blackState).get(Piece.nameOf(i));
+			kinds[i] = PieceKind.fromString((String) kind);
+		}
+		return getInitialOperations(playerIds, kinds);
+	}
+
+	/** Returns the resolved board initialization that deals kinds[i] to piece i. */
+	public static List<Operation> getInitialOperations(List<String> playerIds, PieceKind[] kinds) {
+		ImmutableList.Builder<Operation> operations = ImmutableList.builder();
+		operations.add(new SetTurn(playerIds.get(0)));
+		for (int i = 0; i < Piece.NUMBER_OF_PIECES; i++) {
+			operations.add(new Set(Piece.nameOf(i), kinds[i].name(),
+					ImmutableList.of(playerIds.get(Piece.isWhitePieceId(i) ? 0 : 1))));
+		}
+		return operations.build();
+	}
+
+	public String getGameId() {
+		return gameId;
+	}
+
+	public List<String> getPlayerIds() {
+		return playerIds;
+	}
+
+	public List<Operation> getInitialOperations() {
+		return initialOperations;
+	}
+
+	public List<List<Operation>> getMoves() {
+		return moves;
+	}
+}
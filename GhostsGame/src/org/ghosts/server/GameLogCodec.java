@@ -0,0 +1,240 @@
+package org.ghosts.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.SetVisibility;
+import org.ghosts.client.BoardGeometry;
+import org.ghosts.client.Color;
+import org.ghosts.client.Piece;
+import org.ghosts.client.PieceKind;
+import org.ghosts.client.Position;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Encodes a {@link GameLog} in the binary layout of {@link GameRecord}: 9 bytes for the kinds,
+ * the deploys and the number of moves, then one byte per move.
+ * <p>
+ * Only the choices of the players are stored, so the operations are rebuilt on decoding the way
+ * {@link org.ghosts.client.GhostsLogic} makes them: a deploy sets the squares in the order of the
+ * pieces, a capture deletes the captured piece, and an exit reveals the pieces of the mover and
+ * ends the game. The log of a legal game decodes to the operations that were played, except for
+ * the order of the Sets of a deploy. Encoding doesn't check the rules; use
+ * {@link ReplayVerifier} for that.
+ */
+public class GameLogCodec {
+	private static final int PIECES_PER_PLAYER = Piece.NUMBER_OF_PIECES / 2;
+	private static final int DEPLOY_COLUMNS = Position.BOARD_SIZE - 2;
+	private static final String[] DEPLOYED = {"WDeployed", "BDeployed"};
+	private static final String TRUE = "true";
+	private static final byte NONE = -1;
+
+	private GameLogCodec() {
+	}
+
+	/** Writes gameLog at the position of buffer, which needs {@link #maxLength} bytes left. */
+	public static void encode(GameLog gameLog, ByteBuffer buffer) {
+		List<Operation> initialOperations = gameLog.getInitialOperations();
+		checkArgument(initialOperations.size() == Piece.NUMBER_OF_PIECES + 1,
+				"Not a resolved board initialization");
+		int[] goodMasks = new int[2];
+		for (int i = 0; i < Piece.NUMBER_OF_PIECES; i++) {
+			Operation operation = initialOperations.get(i + 1);
+			checkArgument(operation instanceof Set && ((Set) operation).getValue() instanceof String,
+					"Not a kind: %s", operation);
+			if (PieceKind.fromString((String) ((Set) operation).getValue()).isGood()) {
+				goodMasks[i / PIECES_PER_PLAYER] |= 1 << (i % PIECES_PER_PLAYER);
+			}
+		}
+
+		List<List<Operation>> moves = gameLog.getMoves();
+		int deploys = Math.min(2, moves.size());
+		int[] deployCodes = new int[2];
+		for (int i = 0; i < deploys; i++) {
+			deployCodes[i] = encodeDeploy(moves.get(i), Color.values()[i]);
+		}
+		int moveCount = moves.size() - deploys;
+		checkArgument(moveCount <= GameRecord.MAX_MOVES, "Too many moves: %s", moveCount);
+		GameRecord.putHeader(buffer, (1 << deploys) - 1, goodMasks[0], goodMasks[1],
+				deployCodes[0], deployCodes[1], moveCount);
+		for (int i = deploys; i < moves.size(); i++) {
+			List<Operation> move = moves.get(i);
+			checkArgument(move.size() >= 3 && move.get(1) instanceof Set
+					&& move.get(2) instanceof Delete, "Not a move: %s", move);
+			int start = Position.indexOfKey(((Delete) move.get(2)).getKey());
+			int end = Position.indexOfKey(((Set) move.get(1)).getKey());
+			buffer.put(GameRecord.encodeMove(start, directionOf(start, end)));
+		}
+	}
+
+	/** The most bytes that gameLog can take, e.g., to size the buffer for {@link #encode}. */
+	public static int maxLength(GameLog gameLog) {
+		return GameRecord.HEADER_BYTES + gameLog.getMoves().size();
+	}
+
+	/** Rebuilds the log of the game that record points at. */
+	public static GameLog decode(GameRecord record, String gameId, List<String> playerIds) {
+		PieceKind[] kinds = new PieceKind[Piece.NUMBER_OF_PIECES];
+		for (int i = 0; i < Piece.NUMBER_OF_PIECES; i++) {
+			kinds[i] = record.getKind(i);
+		}
+		List<List<Operation>> moves = Lists.newArrayList();
+		byte[] squares = new byte[Position.NUMBER_OF_SQUARES];
+		Arrays.fill(squares, NONE);
+		for (Color color : Color.values()) {
+			if (!record.isDeployed(color)) {
+				break;
+			}
+			ImmutableList.Builder<Operation> deploy = ImmutableList.builder();
+			deploy.add(new SetTurn(playerIds.get(color.getOpposite().ordinal())));
+			int firstPiece = color.ordinal() * PIECES_PER_PLAYER;
+			for (int pieceId = firstPiece; pieceId < firstPiece + PIECES_PER_PLAYER; pieceId++) {
+				int square = record.getDeploySquare(pieceId);
+				squares[square] = (byte) pieceId;
+				deploy.add(new Set(Position.of(square).toSquareString(), Piece.nameOf(pieceId)));
+			}
+			deploy.add(new Set(DEPLOYED[color.ordinal()], TRUE));
+			moves.add(deploy.build());
+		}
+
+		Color turn = Color.W;
+		for (int i = 0; i < record.getMoveCount(); i++) {
+			int start = record.getMoveStart(i);
+			int end = record.getMoveEnd(i);
+			int pieceId = squares[start];
+			checkArgument(pieceId != NONE, "No piece to move in move %s of %s", i, gameId);
+			ImmutableList.Builder<Operation> move = ImmutableList.builder();
+			move.add(new SetTurn(playerIds.get(turn.getOpposite().ordinal())));
+			move.add(new Set(Position.of(end).toSquareString(), Piece.nameOf(pieceId)));
+			move.add(new Delete(Position.of(start).toSquareString()));
+			if (squares[end] != NONE) {
+				move.add(new Delete(Piece.nameOf(squares[end])));
+			}
+			if (kinds[pieceId].isGood() && BoardGeometry.isExit(end, turn)) {
+				// the mover sees its own pieces that are still on the board, and reveals them
+				for (int id = 0; id < Piece.NUMBER_OF_PIECES; id++) {
+					if (Piece.isWhitePieceId(id) == turn.isWhite() && indexOf(squares, id) >= 0) {
+						move.add(new SetVisibility(Piece.nameOf(id)));
+					}
+				}
+				move.add(new EndGame(playerIds.get(turn.ordinal())));
+			}
+			squares[end] = (byte) pieceId;
+			squares[start] = NONE;
+			moves.add(move.build());
+			turn = turn.getOpposite();
+		}
+		return new GameLog(gameId, playerIds, GameLog.getInitialOperations(playerIds, kinds), moves);
+	}
+
+	// The deploy squares of color, by piece, as a Lehmer code
+	private static int encodeDeploy(List<Operation> deploy, Color color) {
+		checkArgument(deploy.size() == PIECES_PER_PLAYER + 2, "Not a deploy: %s", deploy);
+		int[] slots = new int[PIECES_PER_PLAYER];
+		Arrays.fill(slots, -1);
+		int usedSlots = 0;
+		for (int i = 1; i <= PIECES_PER_PLAYER; i++) {
+			checkArgument(deploy.get(i) instanceof Set, "Not a deploy: %s", deploy);
+			Set set = (Set) deploy.get(i);
+			int pieceId = Piece.idOfKey(String.valueOf(set.getValue()));
+			int slot = deploySlotOf(color, Position.indexOfKey(set.getKey()));
+			checkArgument(pieceId >= 0 && slot >= 0
+					&& pieceId / PIECES_PER_PLAYER == color.ordinal()
+					&& slots[pieceId % PIECES_PER_PLAYER] < 0 && (usedSlots & (1 << slot)) == 0,
+					"Not a deploy: %s", deploy);
+			slots[pieceId % PIECES_PER_PLAYER] = slot;
+			usedSlots |= 1 << slot;
+		}
+		return encodePermutation(slots);
+	}
+
+	/**
+	 * The Lehmer code of a permutation of 0 ~ n-1: digit i counts the later values that are
+	 * smaller than permutation[i], in base n - i. 8 values fit in a short, since 8! = 40320.
+	 */
+	static int encodePermutation(int[] permutation) {
+		int n = permutation.length;
+		int code = 0;
+		for (int i = 0; i < n; i++) {
+			int smaller = 0;
+			for (int j = i + 1; j < n; j++) {
+				if (permutation[j] < permutation[i]) {
+					smaller++;
+				}
+			}
+			code = code * (n - i) + smaller;
+		}
+		return code;
+	}
+
+	/** Writes the permutation of code into permutation, without allocating. */
+	static void decodePermutation(int code, int[] permutation) {
+		int n = permutation.length;
+		for (int i = n - 1; i >= 0; i--) {
+			permutation[i] = code % (n - i);
+			code /= n - i;
+		}
+		// digit i is the rank of permutation[i] among the values that aren't used yet
+		int used = 0;
+		for (int i = 0; i < n; i++) {
+			int value = 0;
+			for (int rank = permutation[i]; ; value++) {
+				if ((used & (1 << value)) == 0 && rank-- == 0) {
+					break;
+				}
+			}
+			used |= 1 << value;
+			permutation[i] = value;
+		}
+	}
+
+	static int deploySquareOf(Color color, int slot) {
+		int firstRow = color.isWhite() ? Position.BOARD_SIZE - 2 : 0;
+		return Position.indexOf(firstRow + slot / DEPLOY_COLUMNS, 1 + slot % DEPLOY_COLUMNS);
+	}
+
+	// Deploy slot 0 ~ 7 of square, or -1 if color can't deploy on it
+	private static int deploySlotOf(Color color, int square) {
+		int firstRow = color.isWhite() ? Position.BOARD_SIZE - 2 : 0;
+		if (square < 0) {
+			return -1;
+		}
+		int row = Position.rowOf(square) - firstRow;
+		int col = Position.colOf(square) - 1;
+		return row >= 0 && row < 2 && col >= 0 && col < DEPLOY_COLUMNS
+				? row * DEPLOY_COLUMNS + col : -1;
+	}
+
+	private static int directionOf(int start, int end) {
+		checkArgument(start >= 0 && end >= 0, "Not a square");
+		if (end == start - Position.BOARD_SIZE) {
+			return GameRecord.UP;
+		} else if (end == start + Position.BOARD_SIZE) {
+			return GameRecord.DOWN;
+		} else if (end == start - 1 && Position.rowOf(end) == Position.rowOf(start)) {
+			return GameRecord.LEFT;
+		} else if (end == start + 1 && Position.rowOf(end) == Position.rowOf(start)) {
+			return GameRecord.RIGHT;
+		}
+		throw new IllegalArgumentException("End square is not next to the start square");
+	}
+
+	private static int indexOf(byte[] squares, int pieceId) {
+		for (int i = 0; i < squares.length; i++) {
+			if (squares[i] == pieceId) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,105 @@
+package org.ghosts.server;
+
+import java.nio.ByteBuffer;
+
+import org.ghosts.client.Color;
+import org.ghosts.client.Piece;
+import org.ghosts.client.PieceKind;
+import org.ghosts.client.Position;
+
+/**
+ * A view of one game encoded by {@link GameLogCodec}, read in place from a buffer. A record can
+ * be moved from game to game with {@link #wrap}, so scanning an archive allocates nothing per
+ * game.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * byte    flags: bit 0 white deployed, bit 1 black deployed
+ * byte    good ghosts of white, bit i set if P(i) is good
+ * byte    good ghosts of black, bit i set if P(8 + i) is good
+ * short   white deploy, the Lehmer code of the deploy squares of P0 ~ P7
+ * short   black deploy, the Lehmer code of the deploy squares of P8 ~ P15
+ * short   number of moves after the deploys (unsigned)
+ * byte[]  the moves, (start square << 2) | direction
+ * </pre>
+ * The deploy squares of a player are numbered 0 ~ 7 from the left of the row nearest to the
+ * middle of the board. Captures and exits aren't stored: they follow from the board.
+ */
+public class GameRecord {
+	static final int HEADER_BYTES = 9;
+	static final int MAX_MOVES = 0xFFFF;
+	static final int UP = 0;
+	static final int DOWN = 1;
+	static final int LEFT = 2;
+	static final int RIGHT = 3;
+
+	private static final int FLAGS = 0;
+	private static final int WHITE_GOOD = 1;
+	private static final int WHITE_DEPLOY = 3;
+	private static final int MOVE_COUNT = 7;
+	private static final int PIECES_PER_PLAYER = Piece.NUMBER_OF_PIECES / 2;
+	private static final int[] DELTAS = {-Position.BOARD_SIZE, Position.BOARD_SIZE, -1, 1};
+
+	private ByteBuffer buffer;
+	private int offset;
+	private final int[] deploySlots = new int[PIECES_PER_PLAYER];
+
+	/** Points this record at the game encoded at offset in buffer. */
+	public GameRecord wrap(ByteBuffer buffer, int offset) {
+		this.buffer = buffer;
+		this.offset = offset;
+		return this;
+	}
+
+	/** The length of the encoded game in bytes. */
+	public int getLength() {
+		return HEADER_BYTES + getMoveCount();
+	}
+
+	public boolean isDeployed(Color color) {
+		return (buffer.get(offset + FLAGS) & (1 << color.ordinal())) != 0;
+	}
+
+	public PieceKind getKind(int pieceId) {
+		Color color = Piece.isWhitePieceId(pieceId) ? Color.W : Color.B;
+		int goodMask = buffer.get(offset + WHITE_GOOD + color.ordinal()) & 0xFF;
+		return PieceKind.of(color, (goodMask & (1 << (pieceId % PIECES_PER_PLAYER))) != 0);
+	}
+
+	/** The square the piece was deployed on, if its owner has deployed. */
+	public int getDeploySquare(int pieceId) {
+		Color color = Piece.isWhitePieceId(pieceId) ? Color.W : Color.B;
+		int code = buffer.getShort(offset + WHITE_DEPLOY + 2 * color.ordinal()) & 0xFFFF;
+		GameLogCodec.decodePermutation(code, deploySlots);
+		return GameLogCodec.deploySquareOf(color, deploySlots[pieceId % PIECES_PER_PLAYER]);
+	}
+
+	/** The number of moves after the deploys. */
+	public int getMoveCount() {
+		return buffer.getShort(offset + MOVE_COUNT) & 0xFFFF;
+	}
+
+	public int getMoveStart(int move) {
+		return (buffer.get(offset + HEADER_BYTES + move) & 0xFF) >>> 2;
+	}
+
+	public int getMoveEnd(int move) {
+		int encoded = buffer.get(offset + HEADER_BYTES + move) & 0xFF;
+		return (encoded >>> 2) + DELTAS[encoded & 3];
+	}
+
+	// Used by GameLogCodec to write a record at the position of buffer
+	static void putHeader(ByteBuffer buffer, int flags, int whiteGood, int blackGood,
+			int whiteDeploy, int blackDeploy, int moveCount) {
+		buffer.put((byte) flags);
+		buffer.put((byte) whiteGood);
+		buffer.put((byte) blackGood);
+		buffer.putShort((short) whiteDeploy);
+		buffer.putShort((short) blackDeploy);
+		buffer.putShort((short) moveCount);
+	}
+
+	static byte encodeMove(int start, int direction) {
+		return (byte) ((start << 2) | direction);
+	}
+}
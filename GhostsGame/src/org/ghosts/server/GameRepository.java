@@ -0,0 +1,182 @@
+package org.ghosts.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.MakeMove;
+import org.game_api.GameApi.Message;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetRandomInteger;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApiJsonCodec;
+
+/**
+ * Stores games in a {@link GameStore} as an event log with snapshots: every move is appended as
+ * a {@link GameEvent}, and every snapshotInterval moves the whole GameState is written as a
+ * {@link GameSnapshot}. {@link #load} starts from the snapshot and replays the moves after it,
+ * so a reload replays fewer than snapshotInterval moves however long the game is.
+ * <p>
+ * Shuffle and SetRandomInteger don't give the same state when they are replayed, so a move
+ * with them is always followed by a snapshot, and replay never runs them.
+ */
+public class GameRepository implements MoveRecorder, GameLoader {
+	/** A game as loaded from the store. */
+	public static class StoredGame {
+		public final String gameId;
+		public final GameState gameState;
+		/** The number of moves made in the game. */
+		public final int moveCount;
+		/** The player who has the turn, or null if no move set the turn. */
+		public final String turnPlayerId;
+		/** The last move and its player, or null if the game has no moves. */
+		public final List<Operation> lastMove;
+		public final String lastMovePlayerId;
+		/** The number of moves that load replayed on top of the snapshot. */
+		public final int replayedMoves;
+
+		StoredGame(String gameId, GameState gameState, int moveCount, String turnPlayerId,
+				List<Operation> lastMove, String lastMovePlayerId, int replayedMoves) {
+			this.gameId = gameId;
+			this.gameState = gameState;
+			this.moveCount = moveCount;
+			this.turnPlayerId = turnPlayerId;
+			this.lastMove = lastMove;
+			this.lastMovePlayerId = lastMovePlayerId;
+			this.replayedMoves = replayedMoves;
+		}
+	}
+
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 8;
+
+	private final GameStore store;
+	private final int snapshotInterval;
+	// GameApiJsonCodec reuses its buffer, so every thread gets its own
+	private final ThreadLocal<GameApiJsonCodec> codec = new ThreadLocal<GameApiJsonCodec>() {
+		@Override
+		protected GameApiJsonCodec initialValue() {
+			return new GameApiJsonCodec();
+		}
+	};
+
+	public GameRepository(GameStore store) {
+		this(store, DEFAULT_SNAPSHOT_INTERVAL);
+	}
+
+	public GameRepository(GameStore store, int snapshotInterval) {
+		checkArgument(snapshotInterval > 0, "snapshotInterval must be positive");
+		this.store = store;
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	/** Stores the move right away: the snapshot (if the move gets one), then the event. */
+	@Override
+	public void appendMove(String gameId, int moveNumber, String playerId, List<Operation> move,
+			GameState stateAfter, String turnPlayerId) {
+		GameSnapshot snapshot = newSnapshot(gameId, moveNumber, move, stateAfter, turnPlayerId);
+		if (snapshot != null) {
+			store.putSnapshot(snapshot);
+		}
+		store.putEvent(newEvent(gameId, moveNumber, playerId, move));
+	}
+
+	@Override
+	public void gameEnded(String gameId) {
+	}
+
+	GameEvent newEvent(String gameId, int moveNumber, String playerId, List<Operation> move) {
+		checkArgument(moveNumber > 0, "moveNumber must be positive");
+		return new GameEvent(gameId, moveNumber, playerId, encode(move));
+	}
+
+	/** Returns the snapshot after the move, or null if the move doesn't get one. */
+	GameSnapshot newSnapshot(String gameId, int moveNumber, List<Operation> move,
+			GameState stateAfter, String turnPlayerId) {
+		if (moveNumber % snapshotInterval != 0 && isReplayable(move)) {
+			return null;
+		}
+		return new GameSnapshot(gameId, moveNumber, turnPlayerId,
+				encode(stateAfter.getSnapshotOperations()));
+	}
+
+	/**
+	 * Stores the events of one game with the snapshot of the latest of them that has one (or
+	 * null). The snapshot comes first: an event without it could be replayed from an older one.
+	 */
+	void store(GameSnapshot snapshot, List<GameEvent> events) {
+		if (snapshot != null) {
+			store.putSnapshot(snapshot);
+		}
+		store.putEvents(events);
+	}
+
+	@Override
+	public StoredGame load(String gameId) {
+		GameState gameState = new GameState();
+		int moveCount = 0;
+		String turnPlayerId = null;
+		GameSnapshot snapshot = store.getSnapshot(gameId);
+		if (snapshot != null) {
+			gameState.makeMove(decode(snapshot.getState()));
+			moveCount = snapshot.getMoveNumber();
+			turnPlayerId = snapshot.getTurnPlayerId();
+		}
+		List<Operation> lastMove = null;
+		String lastMovePlayerId = null;
+		int replayedMoves = 0;
+		// the event of the snapshot's own move is read too, for lastMove
+		for (GameEvent event : store.getEvents(gameId, Math.max(0, moveCount - 1))) {
+			List<Operation> move = decode(event.getMakeMove());
+			lastMove = move;
+			lastMovePlayerId = event.getPlayerId();
+			if (event.getMoveNumber() <= moveCount) {
+				continue;
+			}
+			if (event.getMoveNumber() != moveCount + 1) {
+				throw new IllegalStateException(
+						"Game " + gameId + " is missing move " + (moveCount + 1));
+			}
+			if (!isReplayable(move)) {
+				throw new IllegalStateException(
+						"Game " + gameId + " has no snapshot after move " + event.getMoveNumber());
+			}
+			gameState.makeMove(move);
+			for (Operation operation : move) {
+				if (operation instanceof SetTurn) {
+					turnPlayerId = ((SetTurn) operation).getPlayerId();
+				}
+			}
+			moveCount++;
+			replayedMoves++;
+		}
+		if (snapshot == null && moveCount == 0) {
+			return null;
+		}
+		return new StoredGame(gameId, gameState, moveCount, turnPlayerId, lastMove,
+				lastMovePlayerId, replayedMoves);
+	}
+
+	private static boolean isReplayable(List<Operation> move) {
+		for (Operation operation : move) {
+			if (operation instanceof Shuffle || operation instanceof SetRandomInteger) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private byte[] encode(List<Operation> operations) {
+		return codec.get().encode(new MakeMove(operations)).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private List<Operation> decode(byte[] bytes) {
+		Message message = codec.get().decode(new String(bytes, StandardCharsets.UTF_8));
+		if (!(message instanceof MakeMove)) {
+			throw new IllegalStateException("Stored move is not a MakeMove: " + message);
+		}
+		return ((MakeMove) message).getOperations();
+	}
+}
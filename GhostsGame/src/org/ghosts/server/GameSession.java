@@ -0,0 +1,313 @@
+package org.ghosts.server;
+
+import static org.game_api.GameApi.PLAYER_ID;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.game_api.GameApi.Container;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.ghosts.ai.AiMoveService;
+import org.ghosts.client.GhostsLogic;
+import org.ghosts.client.GhostsPresenter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * One game hosted by {@link GameSessionHost}. Like {@link org.game_api.GameApi.IteratingPlayerContainer}
+ * it keeps the GameState, verifies every move on all players and sends UpdateUI to the player
+ * who has the turn, but instead of calling the game recursively it puts the VerifyMove and
+ * UpdateUI messages in a bounded mailbox. The mailbox is drained by one pool thread at a time,
+ * so the presenter and the logic of a session are never used concurrently.
+ */
+public class GameSession implements Container {
+	// Messages handled before the session gives its pool thread to other sessions
+	private static final int MESSAGES_PER_RUN = 16;
+
+	/** The outcome of a session; winnerPlayerId is null if the game did not end. */
+	public static class Result {
+		public final String sessionId;
+		public final String winnerPlayerId;
+		public final int moves;
+		public final long durationNanos;
+		public final GameLog gameLog;
+
+		Result(String sessionId, String winnerPlayerId, int moves, long durationNanos,
+				GameLog gameLog) {
+			this.sessionId = sessionId;
+			this.winnerPlayerId = winnerPlayerId;
+			this.moves = moves;
+			this.durationNanos = durationNanos;
+			this.gameLog = gameLog;
+		}
+	}
+
+	private final String sessionId;
+	private final Executor executor;
+	private final BlockingQueue<Runnable> mailbox;
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final SettableFuture<Result> result = SettableFuture.create();
+	private final LatencyStats moveLatency;
+	private final int maxMoves;
+	// null if the moves are not recorded
+	private final MoveRecorder moveRecorder;
+
+	private final List<String> playerIds;
+	private final List<Map<String, Object>> playersInfo = Lists.newArrayList();
+	private final GhostsLogic ghostsLogic = new GhostsLogic();
+	private final GhostsPresenter ghostsPresenter;
+	private final AiMoveService aiMoveService;
+	private final SpectatorFanout spectators;
+	private GameState gameState = new GameState();
+	private GameState lastGameState = null;
+	private List<Operation> lastMove = null;
+	private String lastMovePlayerId;
+	private String turnPlayerId;
+	private List<Operation> initialOperations = ImmutableList.of();
+	private final List<List<Operation>> loggedMoves = Lists.newArrayList();
+	private int moves = 0;
+	private long startNanos;
+	private volatile boolean done = false;
+
+	GameSession(String sessionId, List<String> playerIds, GhostsPresenter.View view,
+			ExecutorService aiSearchExecutor, int aiMillis, Executor executor,
+			Executor spectatorExecutor, int mailboxCapacity, int maxMoves, LatencyStats moveLatency,
+			MoveRecorder moveRecorder) {
+		this.sessionId = sessionId;
+		this.playerIds = ImmutableList.copyOf(playerIds);
+		for (String playerId : playerIds) {
+			playersInfo.add(ImmutableMap.<String, Object>of(PLAYER_ID, playerId));
+		}
+		this.executor = executor;
+		this.mailbox = new ArrayBlockingQueue<Runnable>(mailboxCapacity);
+		this.maxMoves = maxMoves;
+		this.moveLatency = moveLatency;
+		this.moveRecorder = moveRecorder;
+		// the best move is delivered through the mailbox, like any other message
+		this.aiMoveService = new ExecutorAiMoveService(aiSearchExecutor, getMailboxExecutor(),
+				aiMillis);
+		this.ghostsPresenter = new GhostsPresenter(view, this, aiMoveService);
+		// a slow spectator must not hold the threads that run the sessions
+		this.spectators = new SpectatorFanout(spectatorExecutor);
+	}
+
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	public ListenableFuture<Result> getResult() {
+		return result;
+	}
+
+	/**
+	 * Sends the state after every move to spectator, starting with the current state. The
+	 * spectators of a session share one viewer snapshot per move (see {@link SpectatorFanout}).
+	 */
+	public SpectatorFanout.Subscription addSpectator(SpectatorFanout.Spectator spectator) {
+		SpectatorFanout.Subscription subscription = spectators.subscribe(spectator);
+		// the state is only published while there are spectators, so the first one catches up
+		post(new Runnable() {
+			@Override
+			public void run() {
+				if (moves > 0 && spectators.getLatestMoveNumber() != moves) {
+					publishToSpectators();
+				}
+			}
+		});
+		return subscription;
+	}
+
+	public SpectatorFanout getSpectators() {
+		return spectators;
+	}
+
+	void start() {
+		startNanos = System.nanoTime();
+		turnPlayerId = playerIds.get(0);
+		postUpdateUi(System.nanoTime());
+	}
+
+	// Runs commands inside this session, e.g., the callback of an AI search on another thread
+	private Executor getMailboxExecutor() {
+		return new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				post(command);
+			}
+		};
+	}
+
+	@Override
+	public void sendGameReady() {
+	}
+
+	@Override
+	public void sendMakeMove(List<Operation> operations) {
+		long moveNanos = System.nanoTime();
+		lastMovePlayerId = turnPlayerId;
+		lastMove = ImmutableList.copyOf(operations);
+		lastGameState = gameState.copy();
+		gameState.makeMove(operations);
+		moves++;
+		if (moves == 1) {
+			// the board initialization shuffles, so the log keeps the kinds it dealt
+			initialOperations = GameLog.getInitialOperations(playerIds,
+					gameState.getStateForPlayerId(playerIds.get(0)),
+					gameState.getStateForPlayerId(playerIds.get(1)));
+		} else {
+			loggedMoves.add(lastMove);
+		}
+		String winnerPlayerId = null;
+		for (Operation operation : operations) {
+			if (operation instanceof SetTurn) {
+				turnPlayerId = ((SetTurn) operation).getPlayerId();
+			} else if (operation instanceof EndGame) {
+				winnerPlayerId = getWinner((EndGame) operation);
+			}
+		}
+		if (moveRecorder != null) {
+			moveRecorder.appendMove(sessionId, moves, lastMovePlayerId, lastMove, gameState,
+					turnPlayerId);
+		}
+		if (spectators.hasSpectators()) {
+			publishToSpectators();
+		}
+		for (String playerId : playerIds) {
+			final VerifyMove verifyMove = new VerifyMove(playersInfo,
+					gameState.getStateForPlayerId(playerId),
+					lastGameState.getStateForPlayerId(playerId), lastMove, lastMovePlayerId,
+					gameState.getPlayerIdToNumberOfTokensInPot());
+			post(new Runnable() {
+				@Override
+				public void run() {
+					sendVerifyMoveDone(ghostsLogic.verify(verifyMove));
+				}
+			});
+		}
+		if (winnerPlayerId != null || moves >= maxMoves) {
+			final String winner = winnerPlayerId;
+			// the players can't move after EndGame, so there is no UpdateUI to send
+			post(new Runnable() {
+				@Override
+				public void run() {
+					finish(winner);
+				}
+			});
+		} else {
+			postUpdateUi(moveNanos);
+		}
+	}
+
+	@Override
+	public void sendVerifyMoveDone(VerifyMoveDone verifyMoveDone) {
+		if (verifyMoveDone.getHackerPlayerId() != null) {
+			throw new IllegalStateException("Found a hacker! verifyMoveDone=" + verifyMoveDone);
+		}
+	}
+
+	private void postUpdateUi(final long moveNanos) {
+		final UpdateUI updateUI = new UpdateUI(turnPlayerId, playersInfo,
+				gameState.getStateForPlayerId(turnPlayerId),
+				lastGameState == null ? null : lastGameState.getStateForPlayerId(turnPlayerId),
+				lastMove, lastMovePlayerId, gameState.getPlayerIdToNumberOfTokensInPot());
+		post(new Runnable() {
+			@Override
+			public void run() {
+				moveLatency.record(System.nanoTime() - moveNanos);
+				ghostsPresenter.updateUI(updateUI);
+			}
+		});
+	}
+
+	private void publishToSpectators() {
+		spectators.publish(moves, playersInfo, gameState, lastGameState, lastMove,
+				lastMovePlayerId);
+	}
+
+	private static String getWinner(EndGame endGame) {
+		String winner = null;
+		int best = Integer.MIN_VALUE;
+		for (Map.Entry<String, Integer> entry : endGame.getPlayerIdToScore().entrySet()) {
+			if (entry.getValue() > best) {
+				best = entry.getValue();
+				winner = entry.getKey();
+			}
+		}
+		return winner;
+	}
+
+	private void finish(String winnerPlayerId) {
+		done = true;
+		aiMoveService.cancel();
+		if (moveRecorder != null) {
+			moveRecorder.gameEnded(sessionId);
+		}
+		result.set(new Result(sessionId, winnerPlayerId, moves, System.nanoTime() - startNanos,
+				new GameLog(sessionId, playerIds, initialOperations, loggedMoves)));
+	}
+
+	private void fail(Throwable e) {
+		done = true;
+		aiMoveService.cancel();
+		if (moveRecorder != null) {
+			moveRecorder.gameEnded(sessionId);
+		}
+		mailbox.clear();
+		result.setException(e);
+	}
+
+	/** Puts message in the mailbox; the session fails if the mailbox is full. */
+	private void post(Runnable message) {
+		if (done) {
+			return;
+		}
+		if (!mailbox.offer(message)) {
+			fail(new IllegalStateException("Mailbox of session " + sessionId + " is full"));
+			return;
+		}
+		schedule();
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			executor.execute(drainer);
+		}
+	}
+
+	private final Runnable drainer = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				for (int i = 0; i < MESSAGES_PER_RUN && !done; i++) {
+					Runnable message = mailbox.poll();
+					if (message == null) {
+						break;
+					}
+					message.run();
+				}
+			} catch (RuntimeException e) {
+				fail(e);
+			} finally {
+				scheduled.set(false);
+				if (!done && !mailbox.isEmpty()) {
+					schedule();
+				}
+			}
+		}
+	};
+}
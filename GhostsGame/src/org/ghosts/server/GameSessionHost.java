@@ -0,0 +1,121 @@
+package org.ghosts.server;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.game_api.GameApi;
+import org.ghosts.client.GhostsPresenter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Runs many {@link GameSession}s at once. The sessions share a small pool of threads: a session
+ * only holds a thread while it drains its mailbox, so thousands of mostly idle sessions (e.g.,
+ * waiting for an AI search) cost no threads. The AI searches run on their own pool, so they
+ * don't delay the messages of the other sessions, and so do the deliveries to spectators, so a
+ * slow spectator only delays other spectators.
+ */
+public class GameSessionHost {
+	private static final int SPECTATOR_THREADS = 2;
+
+	private final ExecutorService sessionExecutor;
+	private final ExecutorService aiSearchExecutor;
+	private final ExecutorService spectatorExecutor;
+	private final int mailboxCapacity;
+	private final int maxMovesPerGame;
+	private final int aiMillis;
+	private final MoveRecorder moveRecorder;
+
+	private final AtomicInteger activeSessions = new AtomicInteger();
+	private final AtomicLong finishedGames = new AtomicLong();
+	private final AtomicLong failedGames = new AtomicLong();
+	private final LatencyStats moveLatency = new LatencyStats();
+	private final LatencyStats gameDuration = new LatencyStats();
+
+	public GameSessionHost(int sessionThreads, int aiSearchThreads, int mailboxCapacity,
+			int maxMovesPerGame, int aiMillis) {
+		this(sessionThreads, aiSearchThreads, mailboxCapacity, maxMovesPerGame, aiMillis, null);
+	}
+
+	/** Like the other constructor, but every move of every session goes to moveRecorder. */
+	public GameSessionHost(int sessionThreads, int aiSearchThreads, int mailboxCapacity,
+			int maxMovesPerGame, int aiMillis, MoveRecorder moveRecorder) {
+		this.sessionExecutor = Executors.newFixedThreadPool(sessionThreads);
+		this.aiSearchExecutor = Executors.newFixedThreadPool(aiSearchThreads);
+		this.spectatorExecutor = Executors.newFixedThreadPool(SPECTATOR_THREADS);
+		this.mailboxCapacity = mailboxCapacity;
+		this.maxMovesPerGame = maxMovesPerGame;
+		this.aiMillis = aiMillis;
+		this.moveRecorder = moveRecorder;
+	}
+
+	/**
+	 * Starts a game between the player of view (white) and either the AI or view itself (black).
+	 */
+	public GameSession startSession(String sessionId, GhostsPresenter.View view,
+			boolean againstAi) {
+		List<String> playerIds = ImmutableList.of("1", againstAi ? GameApi.AI_PLAYER_ID : "2");
+		GameSession session = new GameSession(sessionId, playerIds, view, aiSearchExecutor,
+				aiMillis, sessionExecutor, spectatorExecutor, mailboxCapacity, maxMovesPerGame,
+				moveLatency, moveRecorder);
+		activeSessions.incrementAndGet();
+		Futures.addCallback(session.getResult(), new FutureCallback<GameSession.Result>() {
+			@Override
+			public void onSuccess(GameSession.Result result) {
+				activeSessions.decrementAndGet();
+				finishedGames.incrementAndGet();
+				gameDuration.record(result.durationNanos);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				activeSessions.decrementAndGet();
+				failedGames.incrementAndGet();
+			}
+		});
+		session.start();
+		return session;
+	}
+
+	public ListenableFuture<List<GameSession.Result>> allResults(List<GameSession> sessions) {
+		List<ListenableFuture<GameSession.Result>> results = Lists.newArrayList();
+		for (GameSession session : sessions) {
+			results.add(session.getResult());
+		}
+		return Futures.successfulAsList(results);
+	}
+
+	public int getActiveSessions() {
+		return activeSessions.get();
+	}
+
+	public long getFinishedGames() {
+		return finishedGames.get();
+	}
+
+	public long getFailedGames() {
+		return failedGames.get();
+	}
+
+	/** Time from a move until the UpdateUI for the next move is delivered. */
+	public LatencyStats.Snapshot getMoveLatencyStats() {
+		return moveLatency.snapshot();
+	}
+
+	public LatencyStats.Snapshot getGameDurationStats() {
+		return gameDuration.snapshot();
+	}
+
+	public void shutdown() {
+		sessionExecutor.shutdownNow();
+		aiSearchExecutor.shutdownNow();
+		spectatorExecutor.shutdownNow();
+	}
+}
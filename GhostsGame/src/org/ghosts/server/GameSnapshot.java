@@ -0,0 +1,55 @@
+package org.ghosts.server;
+
+import javax.jdo.annotations.IdentityType;
+import javax.jdo.annotations.PersistenceCapable;
+import javax.jdo.annotations.Persistent;
+import javax.jdo.annotations.PrimaryKey;
+
+/**
+ * The latest snapshot of a stored game, as written by {@link GameRepository}: the GameState
+ * after moveNumber moves, as a MakeMove of {@link org.game_api.GameApi.GameState#getSnapshotOperations}
+ * in the JSON of {@link org.game_api.GameApiJsonCodec}. A game has one snapshot, which is
+ * replaced by the next one.
+ */
+@PersistenceCapable(identityType = IdentityType.APPLICATION, detachable = "true")
+public class GameSnapshot {
+	@PrimaryKey
+	@Persistent
+	private String gameId;
+
+	@Persistent
+	private int moveNumber;
+
+	@Persistent
+	private String turnPlayerId;
+
+	@Persistent(serialized = "true")
+	private byte[] state;
+
+	// for JDO
+	private GameSnapshot() {
+	}
+
+	GameSnapshot(String gameId, int moveNumber, String turnPlayerId, byte[] state) {
+		this.gameId = gameId;
+		this.moveNumber = moveNumber;
+		this.turnPlayerId = turnPlayerId;
+		this.state = state;
+	}
+
+	public String getGameId() {
+		return gameId;
+	}
+
+	public int getMoveNumber() {
+		return moveNumber;
+	}
+
+	public String getTurnPlayerId() {
+		return turnPlayerId;
+	}
+
+	public byte[] getState() {
+		return state;
+	}
+}
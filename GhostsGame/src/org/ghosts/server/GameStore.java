@@ -0,0 +1,24 @@
+package org.ghosts.server;
+
+import java.util.List;
+
+/**
+ * Where {@link GameRepository} keeps the moves and snapshots of games:
+ * {@link JdoGameStore} on App Engine, {@link InMemoryGameStore} in tests and local runs.
+ */
+public interface GameStore {
+	/** Stores event; an event with the same game and move number is replaced. */
+	void putEvent(GameEvent event);
+
+	/** Stores events, e.g., in one batch call; like {@link #putEvent} for each event. */
+	void putEvents(List<GameEvent> events);
+
+	/** Stores snapshot in place of the previous snapshot of its game. */
+	void putSnapshot(GameSnapshot snapshot);
+
+	/** Returns the snapshot of gameId, or null if there is none. */
+	GameSnapshot getSnapshot(String gameId);
+
+	/** Returns the events of gameId after move afterMoveNumber, in move order. */
+	List<GameEvent> getEvents(String gameId, int afterMoveNumber);
+}
@@ -0,0 +1,330 @@
+package org.ghosts.server;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jsr107cache.Cache;
+import net.sf.jsr107cache.CacheEntry;
+import net.sf.jsr107cache.CacheException;
+import net.sf.jsr107cache.CacheListener;
+import net.sf.jsr107cache.CacheLoader;
+import net.sf.jsr107cache.CacheStatistics;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Maps;
+
+/**
+ * A jsr107 {@link Cache} in the memory of this process, on a Guava cache: it holds at most
+ * maxSize entries and evicts the least recently used ones first, and evicts the entries that
+ * were not read or written for idleMillis. The entries are kept in concurrencyLevel segments
+ * with a lock each, so games in different segments don't wait for each other.
+ * <p>
+ * Unlike the memcache implementation of App Engine, values are neither copied nor serialized,
+ * so they may be live objects, e.g., an {@link ActiveGame}. {@link #get} counts hits and
+ * misses; {@link #peek} and the Map views don't. Guava keeps no statistics per entry, so the
+ * {@link CacheEntry}s only have a key and a value.
+ */
+@SuppressWarnings("rawtypes")
+public class InMemoryCache implements Cache {
+	private final com.google.common.cache.Cache<Object, Object> cache;
+	private final Map<Object, Object> map;
+	private final CacheLoader loader;
+	private final List<CacheListener> listeners = new CopyOnWriteArrayList<CacheListener>();
+	// the statistics since the last clearStatistics
+	private volatile CacheStats clearedStats = new CacheStats(0, 0, 0, 0, 0, 0);
+
+	public InMemoryCache(int maxSize, long idleMillis) {
+		this(maxSize, idleMillis, 4, null, Ticker.systemTicker());
+	}
+
+	/** loader may be null if {@link #load} and {@link #loadAll} are not used. */
+	public InMemoryCache(int maxSize, long idleMillis, int concurrencyLevel, CacheLoader loader,
+			Ticker ticker) {
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterAccess(idleMillis, TimeUnit.MILLISECONDS)
+				.concurrencyLevel(concurrencyLevel)
+				.ticker(ticker)
+				.recordStats()
+				.removalListener(new RemovalListener<Object, Object>() {
+					@Override
+					public void onRemoval(RemovalNotification<Object, Object> notification) {
+						for (CacheListener listener : listeners) {
+							if (notification.wasEvicted()) {
+								listener.onEvict(notification.getKey());
+							} else if (notification.getCause() == RemovalCause.EXPLICIT) {
+								listener.onRemove(notification.getKey());
+							}
+						}
+					}
+				})
+				.build();
+		this.map = cache.asMap();
+		this.loader = loader;
+	}
+
+	@Override
+	public Object get(Object key) {
+		return cache.getIfPresent(key);
+	}
+
+	@Override
+	public Object peek(Object key) {
+		return map.get(key);
+	}
+
+	@Override
+	public Object put(Object key, Object value) {
+		Object previous = map.put(key, value);
+		for (CacheListener listener : listeners) {
+			listener.onPut(key);
+		}
+		return previous;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void putAll(Map entries) {
+		for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) entries).entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public Object remove(Object key) {
+		return map.remove(key);
+	}
+
+	@Override
+	public void clear() {
+		cache.invalidateAll();
+		for (CacheListener listener : listeners) {
+			listener.onClear();
+		}
+	}
+
+	/** Removes the entries that have been idle for too long now, instead of on the next writes. */
+	@Override
+	public void evict() {
+		cache.cleanUp();
+	}
+
+	@Override
+	public Map getAll(Collection keys) throws CacheException {
+		Map<Object, Object> result = Maps.newHashMap();
+		for (Object key : keys) {
+			Object value = get(key);
+			if (value != null) {
+				result.put(key, value);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void load(Object key) throws CacheException {
+		checkLoader();
+		Object value = loader.load(key);
+		if (value != null) {
+			map.put(key, value);
+			for (CacheListener listener : listeners) {
+				listener.onLoad(key);
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void loadAll(Collection keys) throws CacheException {
+		checkLoader();
+		Map<Object, Object> values = loader.loadAll(keys);
+		for (Map.Entry<Object, Object> entry : values.entrySet()) {
+			map.put(entry.getKey(), entry.getValue());
+			for (CacheListener listener : listeners) {
+				listener.onLoad(entry.getKey());
+			}
+		}
+	}
+
+	private void checkLoader() throws CacheException {
+		if (loader == null) {
+			throw new CacheException("This cache has no CacheLoader");
+		}
+	}
+
+	@Override
+	public CacheEntry getCacheEntry(Object key) {
+		Object value = map.get(key);
+		return value == null ? null : new Entry(key, value);
+	}
+
+	@Override
+	public CacheStatistics getCacheStatistics() {
+		final CacheStats stats = cache.stats().minus(clearedStats);
+		final int size = (int) cache.size();
+		return new CacheStatistics() {
+			@Override
+			public int getStatisticsAccuracy() {
+				return STATISTICS_ACCURACY_GUARANTEED;
+			}
+
+			@Override
+			public int getObjectCount() {
+				return size;
+			}
+
+			@Override
+			public int getCacheHits() {
+				return (int) stats.hitCount();
+			}
+
+			@Override
+			public int getCacheMisses() {
+				return (int) stats.missCount();
+			}
+
+			@Override
+			public void clearStatistics() {
+				InMemoryCache.this.clearStatistics();
+			}
+		};
+	}
+
+	/** The hit and miss counts of {@link #get}, and the evictions, since clearStatistics. */
+	public CacheStats getStats() {
+		return cache.stats().minus(clearedStats);
+	}
+
+	public void clearStatistics() {
+		clearedStats = cache.stats();
+	}
+
+	@Override
+	public void addListener(CacheListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(CacheListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return map.containsValue(value);
+	}
+
+	@Override
+	public Set entrySet() {
+		return map.entrySet();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public Set keySet() {
+		return map.keySet();
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public Collection values() {
+		return map.values();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return map.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return map.hashCode();
+	}
+
+	private static class Entry implements CacheEntry {
+		private final Object key;
+		private final Object value;
+
+		Entry(Object key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public Object getKey() {
+			return key;
+		}
+
+		@Override
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int getHits() {
+			return 0;
+		}
+
+		@Override
+		public long getLastAccessTime() {
+			return 0;
+		}
+
+		@Override
+		public long getLastUpdateTime() {
+			return 0;
+		}
+
+		@Override
+		public long getCreationTime() {
+			return 0;
+		}
+
+		@Override
+		public long getExpirationTime() {
+			return 0;
+		}
+
+		@Override
+		public long getVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean isValid() {
+			return true;
+		}
+
+		@Override
+		public long getCost() {
+			return 0;
+		}
+	}
+}
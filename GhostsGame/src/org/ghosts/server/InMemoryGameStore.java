@@ -0,0 +1,63 @@
+package org.ghosts.server;
+
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.google.common.collect.ImmutableList;
+
+/** A {@link GameStore} in memory, for tests and for running without a datastore. */
+public class InMemoryGameStore implements GameStore {
+	private final ConcurrentMap<String, GameSnapshot> snapshots =
+			new ConcurrentHashMap<String, GameSnapshot>();
+	private final ConcurrentMap<String, NavigableMap<Integer, GameEvent>> events =
+			new ConcurrentHashMap<String, NavigableMap<Integer, GameEvent>>();
+
+	@Override
+	public void putEvent(GameEvent event) {
+		NavigableMap<Integer, GameEvent> gameEvents = events.get(event.getGameId());
+		if (gameEvents == null) {
+			NavigableMap<Integer, GameEvent> newEvents =
+					new ConcurrentSkipListMap<Integer, GameEvent>();
+			gameEvents = events.putIfAbsent(event.getGameId(), newEvents);
+			if (gameEvents == null) {
+				gameEvents = newEvents;
+			}
+		}
+		gameEvents.put(event.getMoveNumber(), event);
+	}
+
+	@Override
+	public void putEvents(List<GameEvent> events) {
+		for (GameEvent event : events) {
+			putEvent(event);
+		}
+	}
+
+	@Override
+	public void putSnapshot(GameSnapshot snapshot) {
+		snapshots.put(snapshot.getGameId(), snapshot);
+	}
+
+	@Override
+	public GameSnapshot getSnapshot(String gameId) {
+		return snapshots.get(gameId);
+	}
+
+	@Override
+	public List<GameEvent> getEvents(String gameId, int afterMoveNumber) {
+		NavigableMap<Integer, GameEvent> gameEvents = events.get(gameId);
+		if (gameEvents == null) {
+			return ImmutableList.of();
+		}
+		return ImmutableList.copyOf(gameEvents.tailMap(afterMoveNumber, false).values());
+	}
+
+	/** The number of events stored for gameId. */
+	public int getEventCount(String gameId) {
+		NavigableMap<Integer, GameEvent> gameEvents = events.get(gameId);
+		return gameEvents == null ? 0 : gameEvents.size();
+	}
+}
@@ -0,0 +1,89 @@
+package org.ghosts.server;
+
+import java.util.List;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.JDOObjectNotFoundException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A {@link GameStore} in the datastore, through the "transactions-optional" unit of
+ * META-INF/jdoconfig.xml. Every call uses its own PersistenceManager and returns detached
+ * copies, so the store can be shared by all sessions. The query of {@link #getEvents} needs the
+ * (gameId, moveNumber) index of WEB-INF/datastore-indexes.xml.
+ */
+public class JdoGameStore implements GameStore {
+	public static final String PERSISTENCE_UNIT = "transactions-optional";
+
+	private final PersistenceManagerFactory persistenceManagerFactory;
+
+	public JdoGameStore() {
+		this(JDOHelper.getPersistenceManagerFactory(PERSISTENCE_UNIT));
+	}
+
+	public JdoGameStore(PersistenceManagerFactory persistenceManagerFactory) {
+		this.persistenceManagerFactory = persistenceManagerFactory;
+	}
+
+	@Override
+	public void putEvent(GameEvent event) {
+		put(event);
+	}
+
+	@Override
+	public void putEvents(List<GameEvent> events) {
+		PersistenceManager pm = persistenceManagerFactory.getPersistenceManager();
+		try {
+			// one batch put in the datastore
+			pm.makePersistentAll(events);
+		} finally {
+			pm.close();
+		}
+	}
+
+	@Override
+	public void putSnapshot(GameSnapshot snapshot) {
+		put(snapshot);
+	}
+
+	private void put(Object entity) {
+		PersistenceManager pm = persistenceManagerFactory.getPersistenceManager();
+		try {
+			pm.makePersistent(entity);
+		} finally {
+			pm.close();
+		}
+	}
+
+	@Override
+	public GameSnapshot getSnapshot(String gameId) {
+		PersistenceManager pm = persistenceManagerFactory.getPersistenceManager();
+		try {
+			return pm.detachCopy(pm.getObjectById(GameSnapshot.class, gameId));
+		} catch (JDOObjectNotFoundException e) {
+			return null;
+		} finally {
+			pm.close();
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<GameEvent> getEvents(String gameId, int afterMoveNumber) {
+		PersistenceManager pm = persistenceManagerFactory.getPersistenceManager();
+		try {
+			Query query = pm.newQuery(GameEvent.class);
+			query.setFilter("gameId == gameIdParam && moveNumber > afterParam");
+			query.declareParameters("String gameIdParam, int afterParam");
+			query.setOrdering("moveNumber ascending");
+			List<GameEvent> events = (List<GameEvent>) query.execute(gameId, afterMoveNumber);
+			return ImmutableList.copyOf(pm.detachCopyAll(events));
+		} finally {
+			pm.close();
+		}
+	}
+}
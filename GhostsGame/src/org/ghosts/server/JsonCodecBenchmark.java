@@ -0,0 +1,114 @@
+package org.ghosts.server;
+
+import static org.game_api.GameApi.PLAYER_ID;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.MakeMove;
+import org.game_api.GameApi.Message;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApiJsonCodec;
+import org.ghosts.client.Color;
+import org.ghosts.client.PieceKind;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Measures the messages/sec of {@link GameApiJsonCodec} on the messages of a Ghosts game in the
+ * middle of play (UpdateUI, VerifyMove and MakeMove). For scale it also runs the Map conversions
+ * that GameApiJsonHelper does around JSONObject ({@link Message#toMessage} and
+ * {@link Message#messageToHasEquality}); JSONObject itself only runs in the browser, so that
+ * baseline makes no JSON text at all and is much faster than the real helper.
+ *
+ * Usage: JsonCodecBenchmark [iterations]
+ */
+public class JsonCodecBenchmark {
+	public static void main(String[] args) {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		List<Message> messages = getMessages();
+		GameApiJsonCodec codec = new GameApiJsonCodec();
+		List<String> jsons = Lists.newArrayList();
+		int length = 0;
+		for (Message message : messages) {
+			jsons.add(codec.encode(message));
+			length += jsons.get(jsons.size() - 1).length();
+		}
+		System.out.println("average JSON length=" + length / messages.size());
+
+		for (int round = 0; round < 3; round++) {
+			// the first rounds warm up the JIT
+			long start = System.nanoTime();
+			int checksum = 0;
+			for (int i = 0; i < iterations; i++) {
+				Message message = messages.get(i % messages.size());
+				checksum += codec.encode(message).length();
+			}
+			report("codec encode", iterations, System.nanoTime() - start, checksum);
+
+			start = System.nanoTime();
+			checksum = 0;
+			for (int i = 0; i < iterations; i++) {
+				checksum += codec.decode(jsons.get(i % jsons.size())).getMessageName().length();
+			}
+			report("codec decode", iterations, System.nanoTime() - start, checksum);
+
+			start = System.nanoTime();
+			checksum = 0;
+			for (int i = 0; i < iterations; i++) {
+				Message message = messages.get(i % messages.size());
+				Message copy = Message.messageToHasEquality(message.toMessage());
+				checksum += copy.getMessageName().length();
+			}
+			report("helper maps, no JSON text", iterations, System.nanoTime() - start, checksum);
+		}
+	}
+
+	private static void report(String name, int iterations, long nanos, int checksum) {
+		double seconds = nanos / (double) TimeUnit.SECONDS.toNanos(1);
+		System.out.println(name + ": messages/sec=" + (long) (iterations / seconds)
+				+ " (checksum " + checksum + ")");
+	}
+
+	// The messages around the first move after both players deployed
+	private static List<Message> getMessages() {
+		List<String> playerIds = ImmutableList.of("42", "43");
+		List<Map<String, Object>> playersInfo = ImmutableList.<Map<String, Object>>of(
+				ImmutableMap.<String, Object>of(PLAYER_ID, "42"),
+				ImmutableMap.<String, Object>of(PLAYER_ID, "43"));
+		PieceKind[] kinds = new PieceKind[16];
+		for (int i = 0; i < kinds.length; i++) {
+			kinds[i] = PieceKind.of(i < 8 ? Color.W : Color.B, i % 8 < 4);
+		}
+		GameState gameState = new GameState();
+		gameState.makeMove(GameLog.getInitialOperations(playerIds, kinds));
+		gameState.makeMove(ImmutableList.<Operation>of(new SetTurn("43"),
+				new Set("S51", "P0"), new Set("S52", "P1"), new Set("S53", "P2"), new Set("S54", "P3"),
+				new Set("S41", "P4"), new Set("S42", "P5"), new Set("S43", "P6"), new Set("S44", "P7"),
+				new Set("WDeployed", "true")));
+		gameState.makeMove(ImmutableList.<Operation>of(new SetTurn("42"),
+				new Set("S01", "P8"), new Set("S02", "P9"), new Set("S03", "P10"), new Set("S04", "P11"),
+				new Set("S11", "P12"), new Set("S12", "P13"), new Set("S13", "P14"), new Set("S14", "P15"),
+				new Set("BDeployed", "true")));
+		GameState lastGameState = gameState.copy();
+		List<Operation> move = ImmutableList.<Operation>of(new SetTurn("43"),
+				new Set("S31", "P4"), new Delete("S41"));
+		gameState.makeMove(move);
+		Map<String, Integer> tokensInPot = ImmutableMap.of();
+		return ImmutableList.<Message>of(
+				new UpdateUI("43", playersInfo, gameState.getStateForPlayerId("43"),
+						lastGameState.getStateForPlayerId("43"), move, "42", tokensInPot),
+				new VerifyMove(playersInfo, gameState.getStateForPlayerId("42"),
+						lastGameState.getStateForPlayerId("42"), move, "42", tokensInPot),
+				new MakeMove(move));
+	}
+}
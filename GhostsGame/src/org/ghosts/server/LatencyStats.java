@@ -0,0 +1,81 @@
+package org.ghosts.server;
+
+import java.util.Arrays;
+
+/**
+ * Thread-safe latency statistics. Keeps count, mean and max of all samples, and percentiles
+ * over the most recent samples (a fixed size ring buffer, so memory does not grow).
+ */
+public class LatencyStats {
+	private static final int DEFAULT_WINDOW = 4096;
+
+	private final long[] window;
+	private int next = 0;
+	private int size = 0;
+	private long count = 0;
+	private long totalNanos = 0;
+	private long maxNanos = 0;
+
+	public LatencyStats() {
+		this(DEFAULT_WINDOW);
+	}
+
+	public LatencyStats(int windowSize) {
+		this.window = new long[windowSize];
+	}
+
+	public synchronized void record(long nanos) {
+		window[next] = nanos;
+		next = (next + 1) % window.length;
+		size = Math.min(size + 1, window.length);
+		count++;
+		totalNanos += nanos;
+		maxNanos = Math.max(maxNanos, nanos);
+	}
+
+	public synchronized Snapshot snapshot() {
+		long[] sorted = Arrays.copyOf(window, size);
+		Arrays.sort(sorted);
+		return new Snapshot(count, count == 0 ? 0 : totalNanos / count, maxNanos,
+				percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99));
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	/** All values are in nanoseconds, percentiles are over the recent samples. */
+	public static class Snapshot {
+		public final long count;
+		public final long meanNanos;
+		public final long maxNanos;
+		public final long p50Nanos;
+		public final long p95Nanos;
+		public final long p99Nanos;
+
+		Snapshot(long count, long meanNanos, long maxNanos, long p50Nanos, long p95Nanos,
+				long p99Nanos) {
+			this.count = count;
+			this.meanNanos = meanNanos;
+			this.maxNanos = maxNanos;
+			this.p50Nanos = p50Nanos;
+			this.p95Nanos = p95Nanos;
+			this.p99Nanos = p99Nanos;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + " mean=" + millis(meanNanos) + "ms p50=" + millis(p50Nanos)
+					+ "ms p95=" + millis(p95Nanos) + "ms p99=" + millis(p99Nanos) + "ms max="
+					+ millis(maxNanos) + "ms";
+		}
+
+		private static String millis(long nanos) {
+			return String.valueOf(nanos / 1000000.0);
+		}
+	}
+}
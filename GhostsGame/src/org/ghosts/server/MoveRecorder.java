@@ -0,0 +1,22 @@
+package org.ghosts.server;
+
+import java.util.List;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+
+/**
+ * Receives the moves of a {@link GameSession} as they are made: {@link GameRepository} stores
+ * them right away, {@link WriteBehindGameRepository} stores them in batches in the background.
+ */
+public interface MoveRecorder {
+	/**
+	 * Records move number moveNumber (1 for the first move) of gameId, made by playerId.
+	 * stateAfter and turnPlayerId are the state and the turn after the move.
+	 */
+	void appendMove(String gameId, int moveNumber, String playerId, List<Operation> move,
+			GameState stateAfter, String turnPlayerId);
+
+	/** Called after the last move of gameId. */
+	void gameEnded(String gameId);
+}
@@ -0,0 +1,242 @@
+package org.ghosts.server;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.ghosts.client.Color;
+import org.ghosts.client.MoveRules;
+import org.ghosts.client.Piece;
+import org.ghosts.client.PieceKind;
+import org.ghosts.client.Position;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Replays a {@link GameLog} on one compact board and checks every move, without building the
+ * GameApi state maps or a GhostsState per move.
+ * <p>
+ * The rules are the {@link MoveRules} the game verifies its moves with, but the replay knows the
+ * kinds of all the pieces, so it also catches what a player can't see during the game: a good
+ * ghost that reached the exit without ending the game, or an evil one that claims to exit.
+ * <p>
+ * A verifier reuses its board for every log, so it must only be used by one thread at a time.
+ */
+public class ReplayVerifier {
+	private static final byte NONE = -1;
+	private static final int PIECES_PER_PLAYER = MoveRules.PIECES_PER_PLAYER;
+	private static final int GOOD_PER_PLAYER = PIECES_PER_PLAYER / 2;
+	private static final PieceKind[] KINDS = PieceKind.values();
+
+	/** The outcome of a replay; moveIndex is -1 if every move is legal. */
+	public static class Result {
+		public final String gameId;
+		public final int moveIndex;
+		public final String violation;
+		public final String context;
+
+		Result(String gameId, int moveIndex, String violation, String context) {
+			this.gameId = gameId;
+			this.moveIndex = moveIndex;
+			this.violation = violation;
+			this.context = context;
+		}
+
+		public boolean isLegal() {
+			return violation == null;
+		}
+
+		@Override
+		public String toString() {
+			return isLegal() ? gameId + ": legal"
+					: gameId + ": illegal move " + moveIndex + ": " + violation + "\n" + context;
+		}
+	}
+
+	// The board: the piece on every square and the kind of every piece, NONE for an empty square
+	// or a kind not set yet
+	private final byte[] squares = new byte[Position.NUMBER_OF_SQUARES];
+	private final byte[] kinds = new byte[Piece.NUMBER_OF_PIECES];
+	private List<String> playerIds;
+	private Color turn;
+	private boolean whiteDeployed;
+	private boolean blackDeployed;
+	private boolean ended;
+
+	// The replay knows every kind, so a move can't hide one from the rules
+	private final MoveRules.Board board = new MoveRules.Board() {
+		@Override
+		public Color getTurn() {
+			return turn;
+		}
+
+		@Override
+		public String getPlayerId(Color color) {
+			return playerIds.get(color.ordinal());
+		}
+
+		@Override
+		public int getPieceAt(int square) {
+			return squares[square];
+		}
+
+		@Override
+		public PieceKind getKind(int pieceId) {
+			return KINDS[kinds[pieceId]];
+		}
+
+		@Override
+		public PieceKind getKindAfterMove(int pieceId) {
+			return getKind(pieceId);
+		}
+	};
+
+	/**
+	 * Replays gameLog and returns the first illegal move, if any. Move 0 is the board
+	 * initialization and move i is gameLog.getMoves().get(i - 1).
+	 */
+	public Result verify(GameLog gameLog) {
+		reset(gameLog.getPlayerIds());
+		String violation = applyInitialOperations(gameLog.getInitialOperations());
+		if (violation != null) {
+			return new Result(gameLog.getGameId(), 0, violation,
+					describe(gameLog.getInitialOperations()));
+		}
+		List<List<Operation>> moves = gameLog.getMoves();
+		for (int i = 0; i < moves.size(); i++) {
+			// the board isn't changed by an illegal move, so the context shows the board before it
+			violation = applyMove(moves.get(i));
+			if (violation != null) {
+				return new Result(gameLog.getGameId(), i + 1, violation, describe(moves.get(i)));
+			}
+		}
+		return new Result(gameLog.getGameId(), -1, null, null);
+	}
+
+	private void reset(List<String> playerIds) {
+		this.playerIds = playerIds;
+		Arrays.fill(squares, NONE);
+		Arrays.fill(kinds, NONE);
+		turn = null;
+		whiteDeployed = false;
+		blackDeployed = false;
+		ended = false;
+	}
+
+	private String applyInitialOperations(List<Operation> operations) {
+		if (playerIds.size() != 2) {
+			return "A game has 2 players";
+		}
+		if (operations.size() != Piece.NUMBER_OF_PIECES + 1
+				|| !MoveRules.isSetTurn(operations.get(0), playerIds.get(0))) {
+			return "Initialization must give the turn to white and set every piece";
+		}
+		int[] goodPieces = new int[2];
+		for (int i = 0; i < Piece.NUMBER_OF_PIECES; i++) {
+			if (!(operations.get(i + 1) instanceof Set)) {
+				return "Initialization must only set pieces";
+			}
+			Set set = (Set) operations.get(i + 1);
+			Color owner = Piece.isWhitePieceId(i) ? Color.W : Color.B;
+			if (!set.getKey().equals(Piece.nameOf(i)) || !(set.getValue() instanceof String)) {
+				return "Initialization must set " + Piece.nameOf(i) + " to a kind";
+			}
+			PieceKind kind = kindOf((String) set.getValue());
+			if (kind == null || kind.getColor() != owner) {
+				return "Not a kind of " + owner + ": " + set;
+			}
+			if (!ImmutableList.of(playerIds.get(owner.ordinal())).equals(
+					set.getVisibleToPlayerIds())) {
+				return "Only the owner may see " + set.getKey();
+			}
+			kinds[i] = (byte) kind.ordinal();
+			goodPieces[owner.ordinal()] += kind.isGood() ? 1 : 0;
+		}
+		if (goodPieces[0] != GOOD_PER_PLAYER || goodPieces[1] != GOOD_PER_PLAYER) {
+			return "Every player must have " + GOOD_PER_PLAYER + " good and "
+					+ (PIECES_PER_PLAYER - GOOD_PER_PLAYER) + " evil ghosts";
+		}
+		turn = Color.W;
+		return null;
+	}
+
+	// Checks move and applies it, or returns the first rule it breaks without changing the board
+	private String applyMove(List<Operation> move) {
+		if (ended) {
+			return "The game has ended";
+		}
+		if (!whiteDeployed) {
+			return applyDeploy(move, Color.W);
+		} else if (!blackDeployed) {
+			return applyDeploy(move, Color.B);
+		}
+		return applyPieceMove(move);
+	}
+
+	private String applyDeploy(List<Operation> move, Color color) {
+		String violation = MoveRules.findDeployViolation(move, playerIds, color);
+		if (violation != null) {
+			return violation;
+		}
+		for (int i = 1; i <= PIECES_PER_PLAYER; i++) {
+			Set set = (Set) move.get(i);
+			int square = Position.indexOfKey(set.getKey());
+			int pieceId = Piece.idOfKey((String) set.getValue());
+			squares[square] = (byte) pieceId;
+		}
+		if (color.isWhite()) {
+			whiteDeployed = true;
+		} else {
+			blackDeployed = true;
+		}
+		turn = color.getOpposite();
+		return null;
+	}
+
+	private String applyPieceMove(List<Operation> move) {
+		String violation = MoveRules.findMoveViolation(move, board);
+		if (violation != null) {
+			return violation;
+		}
+		int pieceId = Piece.idOfKey((String) ((Set) move.get(1)).getValue());
+		int start = Position.indexOfKey(((Delete) move.get(2)).getKey());
+		int end = Position.indexOfKey(((Set) move.get(1)).getKey());
+		squares[start] = NONE;
+		squares[end] = (byte) pieceId;
+		ended = MoveRules.isExit(move);
+		turn = turn.getOpposite();
+		return null;
+	}
+
+	private static PieceKind kindOf(String value) {
+		for (PieceKind kind : KINDS) {
+			if (kind.name().equals(value)) {
+				return kind;
+			}
+		}
+		return null;
+	}
+
+	// The move and the board before it, one row per line: "." for an empty square, otherwise the
+	// piece id followed by "g" for a good ghost or "e" for an evil one
+	private String describe(List<Operation> move) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("  turn=").append(turn).append(" move=").append(move).append('\n');
+		for (int row = 0; row < Position.BOARD_SIZE; row++) {
+			sb.append("  ");
+			for (int col = 0; col < Position.BOARD_SIZE; col++) {
+				int pieceId = squares[Position.indexOf(row, col)];
+				String cell = pieceId == NONE ? "."
+						: "P" + pieceId + (KINDS[kinds[pieceId]].isGood() ? "g" : "e");
+				sb.append(cell);
+				for (int i = cell.length(); i < 5; i++) {
+					sb.append(' ');
+				}
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
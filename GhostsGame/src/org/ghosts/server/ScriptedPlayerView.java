@@ -0,0 +1,89 @@
+package org.ghosts.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.ghosts.client.Color;
+import org.ghosts.client.GhostsPresenter;
+import org.ghosts.client.GhostsPresenter.View;
+import org.ghosts.client.Move;
+import org.ghosts.client.Piece;
+import org.ghosts.client.Position;
+import org.ghosts.client.StateExplorer;
+
+/**
+ * A headless {@link View} that plays by itself: it deploys the pieces in order and then makes
+ * random legal moves, going through the same presenter calls as a user clicking on the board.
+ */
+public class ScriptedPlayerView implements View {
+	private final StateExplorer stateExplorer = new StateExplorer();
+	private final Random random;
+	private GhostsPresenter presenter;
+	private Position plannedDestination;
+
+	public ScriptedPlayerView(long seed) {
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public void setPresenter(GhostsPresenter ghostsPresenter) {
+		this.presenter = ghostsPresenter;
+	}
+
+	@Override
+	public void setViewerState(Map<Position, String> squares) {
+	}
+
+	@Override
+	public void setPlayerState(List<Piece> pieces, Map<Position, String> squares, Color myColor,
+			List<Boolean> pieceDeployed) {
+	}
+
+	@Override
+	public void chooseNextPieceToMove(List<Piece> pieces, Map<Position, String> squares, Color turn) {
+		List<Move> moves = new ArrayList<Move>(stateExplorer.getPossibleMoves(presenter.getState()));
+		if (moves.isEmpty()) {
+			throw new IllegalStateException("No legal move for " + turn);
+		}
+		Move move = moves.get(random.nextInt(moves.size()));
+		plannedDestination = move.getDestination();
+		presenter.pieceSelectedToMove(pieces.get(Piece.idOf(squares.get(move.getStart()))));
+	}
+
+	@Override
+	public void chooseSquareToMove(List<Position> possiblePositions) {
+		Position destination = possiblePositions.contains(plannedDestination)
+				? plannedDestination : possiblePositions.get(0);
+		presenter.squareSelectedToMove(destination, false);
+	}
+
+	@Override
+	public void chooseNextPieceToDeploy(List<Piece> pieces, Map<Position, Piece> deployTable,
+			Color turn, List<Boolean> pieceDeployed) {
+		int first = turn.isWhite() ? 0 : Piece.NUMBER_OF_PIECES / 2;
+		for (int i = first; i < first + Piece.NUMBER_OF_PIECES / 2; i++) {
+			if (!pieceDeployed.get(i)) {
+				presenter.pieceSelectedToDeploy(pieces.get(i));
+				return;
+			}
+		}
+		presenter.deployFinished();
+	}
+
+	@Override
+	public void chooseSquareToDeploy(List<Position> possiblePositions) {
+		presenter.squareSelectedToDeploy(possiblePositions.get(random.nextInt(possiblePositions.size())));
+	}
+
+	@Override
+	public void animateMove(List<Piece> pieces, Map<Position, String> squares, Position startPos,
+			Position endPos) {
+	}
+
+	@Override
+	public void setAnimateArgs(List<Piece> piecesList, Map<Position, String> squares,
+			Position startPos, Position endPosition, boolean isDnd) {
+	}
+}
@@ -0,0 +1,137 @@
+package org.ghosts.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Plays many games at once on a {@link GameSessionHost} and reports games/sec and the latency of
+ * the moves. Every game runs the whole GhostsPresenter + GhostsLogic pipeline: scripted players
+ * make random moves through {@link ScriptedPlayerView}, and a share of the games is played
+ * against the AI. At the end the logs of the finished games are replayed by
+ * {@link BatchReplayVerifier}.
+ *
+ * If an archive file is given, the logs are also appended to it with {@link GameArchiveWriter}
+ * and scanned back with {@link GameArchiveReader}.
+ *
+ * Usage: SessionLoadGenerator [games] [sessionThreads] [aiSearchThreads] [aiPercent] [aiMillis]
+ *     [archiveFile]
+ */
+public class SessionLoadGenerator {
+	private static final int MAILBOX_CAPACITY = 8;
+	private static final int MAX_MOVES_PER_GAME = 400;
+
+	public static void main(String[] args) throws Exception {
+		int games = intArg(args, 0, 2000);
+		int sessionThreads = intArg(args, 1, Runtime.getRuntime().availableProcessors());
+		int aiSearchThreads = intArg(args, 2, Runtime.getRuntime().availableProcessors());
+		int aiPercent = intArg(args, 3, 10);
+		int aiMillis = intArg(args, 4, 20);
+
+		GameSessionHost host = new GameSessionHost(sessionThreads, aiSearchThreads,
+				MAILBOX_CAPACITY, MAX_MOVES_PER_GAME, aiMillis);
+		long start = System.nanoTime();
+		List<GameSession> sessions = Lists.newArrayList();
+		for (int i = 0; i < games; i++) {
+			boolean againstAi = i % 100 < aiPercent;
+			sessions.add(host.startSession("game" + i, new ScriptedPlayerView(i), againstAi));
+		}
+		List<GameSession.Result> results = host.allResults(sessions).get();
+		long elapsedNanos = System.nanoTime() - start;
+
+		int moves = 0;
+		int ended = 0;
+		for (GameSession.Result result : results) {
+			if (result != null) {
+				moves += result.moves;
+				ended += result.winnerPlayerId != null ? 1 : 0;
+			}
+		}
+		double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+		System.out.println(games + " games (" + aiPercent + "% against AI) on " + sessionThreads
+				+ " session threads in " + seconds + "s");
+		System.out.println("games/sec=" + (host.getFinishedGames() / seconds) + " moves/sec="
+				+ (moves / seconds));
+		System.out.println("finished=" + host.getFinishedGames() + " ended=" + ended
+				+ " failed=" + host.getFailedGames());
+		for (Map.Entry<String, Integer> entry : getFailureReasons(sessions).entrySet()) {
+			System.out.println("  failed " + entry.getValue() + "x: " + entry.getKey());
+		}
+		System.out.println("move latency: " + host.getMoveLatencyStats());
+		System.out.println("game duration: " + host.getGameDurationStats());
+		host.shutdown();
+
+		List<GameLog> gameLogs = Lists.newArrayList();
+		for (GameSession.Result result : results) {
+			if (result != null) {
+				gameLogs.add(result.gameLog);
+			}
+		}
+		auditGames(gameLogs, sessionThreads);
+		if (args.length > 5) {
+			archiveGames(gameLogs, new File(args[5]));
+		}
+	}
+
+	// Replays the logs of the finished games, like an audit for cheating would
+	private static void auditGames(List<GameLog> gameLogs, int threads) {
+		BatchReplayVerifier verifier = new BatchReplayVerifier(threads);
+		BatchReplayVerifier.Report report = verifier.verifyAll(gameLogs);
+		verifier.shutdown();
+		List<ReplayVerifier.Result> illegalGames = report.getIllegalGames();
+		System.out.println("replayed " + gameLogs.size() + " games, games/sec="
+				+ report.getGamesPerSecond() + " illegal=" + illegalGames.size());
+		for (int i = 0; i < illegalGames.size() && i < 3; i++) {
+			System.out.println("  " + illegalGames.get(i));
+		}
+	}
+
+	// Counts the failed sessions by the start of their error message
+	private static Map<String, Integer> getFailureReasons(List<GameSession> sessions) {
+		Map<String, Integer> reasons = Maps.newTreeMap();
+		for (GameSession session : sessions) {
+			try {
+				session.getResult().get();
+			} catch (ExecutionException e) {
+				String message = String.valueOf(e.getCause().getMessage());
+				String reason = message.substring(0, Math.min(message.length(), 40));
+				Integer count = reasons.get(reason);
+				reasons.put(reason, count == null ? 1 : count + 1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return reasons;
+	}
+
+	private static void archiveGames(List<GameLog> gameLogs, File file) throws IOException {
+		GameArchiveWriter writer = new GameArchiveWriter(file);
+		try {
+			for (GameLog gameLog : gameLogs) {
+				writer.append(gameLog);
+			}
+		} finally {
+			writer.close();
+		}
+		GameArchiveReader reader = new GameArchiveReader(file);
+		long start = System.nanoTime();
+		GameRecord record = new GameRecord();
+		long moves = 0;
+		for (int i = 0; i < reader.size(); i++) {
+			moves += reader.read(i, record).getMoveCount();
+		}
+		double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+		System.out.println("archive " + file + ": " + reader.size() + " games, " + file.length()
+				+ " bytes, scanned " + moves + " moves at games/sec=" + (reader.size() / seconds));
+	}
+
+	private static int intArg(String[] args, int index, int defaultValue) {
+		return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+	}
+}
@@ -0,0 +1,209 @@
+package org.ghosts.server;
+
+import static org.game_api.GameApi.VIEWER_ID;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApiJsonCodec;
+
+/**
+ * Sends the moves of one game to its spectators. All viewers see the same projection of the
+ * state (pieces they can't see are backs), so {@link #publish} builds the viewer UpdateUI and its
+ * JSON once per move, and every spectator gets the same {@link Snapshot}.
+ * <p>
+ * A spectator is called on the delivery executor, never on the thread of the game, and one
+ * snapshot at a time. A spectator that is slower than the game holds at most one pending
+ * snapshot: a newer snapshot replaces it (the older is counted as coalesced), so a slow
+ * spectator skips to the latest state instead of slowing down the game or piling up memory. A
+ * spectator that throws is unsubscribed. A spectator that blocks holds a delivery thread, so the
+ * delivery executor must not be the one that runs the games.
+ */
+public class SpectatorFanout {
+	public interface Spectator {
+		void onSnapshot(Snapshot snapshot);
+	}
+
+	/** The state after a move as a viewer sees it; shared by all spectators, so read-only. */
+	public static final class Snapshot {
+		private final int moveNumber;
+		private final UpdateUI updateUI;
+		private final byte[] encoded;
+
+		Snapshot(int moveNumber, UpdateUI updateUI, byte[] encoded) {
+			this.moveNumber = moveNumber;
+			this.updateUI = updateUI;
+			this.encoded = encoded;
+		}
+
+		public int getMoveNumber() {
+			return moveNumber;
+		}
+
+		public UpdateUI getUpdateUI() {
+			return updateUI;
+		}
+
+		/** The UpdateUI in the JSON of {@link GameApiJsonCodec}, as UTF-8. */
+		public ByteBuffer getEncoded() {
+			return ByteBuffer.wrap(encoded).asReadOnlyBuffer();
+		}
+	}
+
+	/** A subscribed spectator; {@link #cancel} stops the deliveries. */
+	public final class Subscription {
+		private final Spectator spectator;
+		private final AtomicReference<Snapshot> pending = new AtomicReference<Snapshot>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private volatile boolean cancelled = false;
+		// only used by the deliverer, which runs once at a time
+		private int lastDeliveredMove = -1;
+
+		private Subscription(Spectator spectator) {
+			this.spectator = spectator;
+		}
+
+		public void cancel() {
+			cancelled = true;
+			pending.set(null);
+			subscriptions.remove(this);
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		private void offer(Snapshot snapshot) {
+			if (cancelled) {
+				return;
+			}
+			Snapshot previous;
+			do {
+				previous = pending.get();
+				if (previous != null && previous.getMoveNumber() >= snapshot.getMoveNumber()) {
+					return;
+				}
+			} while (!pending.compareAndSet(previous, snapshot));
+			if (previous != null) {
+				coalescedSnapshots.incrementAndGet();
+			}
+			schedule();
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				deliveryExecutor.execute(deliverer);
+			}
+		}
+
+		private final Runnable deliverer = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Snapshot snapshot;
+					while (!cancelled && (snapshot = pending.getAndSet(null)) != null) {
+						// subscribe may offer a snapshot that publish already delivered
+						if (snapshot.getMoveNumber() > lastDeliveredMove) {
+							lastDeliveredMove = snapshot.getMoveNumber();
+							spectator.onSnapshot(snapshot);
+							deliveredSnapshots.incrementAndGet();
+						}
+					}
+				} catch (RuntimeException e) {
+					cancel();
+				} finally {
+					scheduled.set(false);
+					// a snapshot offered after the loop saw none, but before scheduled was reset
+					if (!cancelled && pending.get() != null) {
+						schedule();
+					}
+				}
+			}
+		};
+	}
+
+	private final Executor deliveryExecutor;
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+	private final ThreadLocal<GameApiJsonCodec> codec = new ThreadLocal<GameApiJsonCodec>() {
+		@Override
+		protected GameApiJsonCodec initialValue() {
+			return new GameApiJsonCodec();
+		}
+	};
+	private volatile Snapshot latest;
+	private final AtomicLong publishedSnapshots = new AtomicLong();
+	private final AtomicLong deliveredSnapshots = new AtomicLong();
+	private final AtomicLong coalescedSnapshots = new AtomicLong();
+
+	public SpectatorFanout(Executor deliveryExecutor) {
+		this.deliveryExecutor = deliveryExecutor;
+	}
+
+	/** Subscribes spectator; it gets the latest snapshot (if any) and then every new one. */
+	public Subscription subscribe(Spectator spectator) {
+		Subscription subscription = new Subscription(spectator);
+		subscriptions.add(subscription);
+		Snapshot snapshot = latest;
+		if (snapshot != null) {
+			subscription.offer(snapshot);
+		}
+		return subscription;
+	}
+
+	public boolean hasSpectators() {
+		return !subscriptions.isEmpty();
+	}
+
+	public int getSpectators() {
+		return subscriptions.size();
+	}
+
+	/** The move number of the latest snapshot, or -1 if nothing was published. */
+	public int getLatestMoveNumber() {
+		Snapshot snapshot = latest;
+		return snapshot == null ? -1 : snapshot.getMoveNumber();
+	}
+
+	/**
+	 * Builds the snapshot of the state after moveNumber moves and offers it to every spectator.
+	 * Call from one thread at a time, e.g., the thread of the game.
+	 */
+	public void publish(int moveNumber, List<Map<String, Object>> playersInfo,
+			GameState gameState, GameState lastGameState, List<Operation> lastMove,
+			String lastMovePlayerId) {
+		UpdateUI updateUI = new UpdateUI(VIEWER_ID, playersInfo,
+				gameState.getStateForPlayerId(VIEWER_ID),
+				lastGameState == null ? null : lastGameState.getStateForPlayerId(VIEWER_ID),
+				lastMove, lastMovePlayerId, gameState.getPlayerIdToNumberOfTokensInPot());
+		Snapshot snapshot = new Snapshot(moveNumber, updateUI,
+				codec.get().encode(updateUI).getBytes(StandardCharsets.UTF_8));
+		latest = snapshot;
+		publishedSnapshots.incrementAndGet();
+		for (Subscription subscription : subscriptions) {
+			subscription.offer(snapshot);
+		}
+	}
+
+	public long getPublishedSnapshots() {
+		return publishedSnapshots.get();
+	}
+
+	public long getDeliveredSnapshots() {
+		return deliveredSnapshots.get();
+	}
+
+	/** Snapshots replaced by a newer one before their spectator got them. */
+	public long getCoalescedSnapshots() {
+		return coalescedSnapshots.get();
+	}
+}
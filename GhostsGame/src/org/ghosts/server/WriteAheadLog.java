@@ -0,0 +1,211 @@
+package org.ghosts.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The write-ahead file of {@link WriteBehindGameRepository}. It has two segments (the file name +
+ * ".0" and ".1"): moves are appended to the current segment, and when a batch is handed to the
+ * store the segments are swapped, so the old segment holds exactly the batch and is cleared once
+ * the batch is stored. Every segment starts with a generation number, so {@link #recover} reads
+ * the older one first.
+ * <p>
+ * A record is its length, its CRC32 and the event and snapshot of one move. The records are
+ * written without a forced sync, so they survive a crash of the process; {@link #force} syncs
+ * the current segment to the disk. {@link #recover} must be called before the first append.
+ */
+class WriteAheadLog implements Closeable {
+	private static final int MAGIC = 0x4748574c; // "GHWL"
+	private static final int VERSION = 1;
+	// magic, version, generation
+	private static final int HEADER_BYTES = 16;
+	private static final int RECORD_HEADER_BYTES = 8;
+
+	/** One move of a game, with its snapshot or null. */
+	static class Record {
+		final GameEvent event;
+		final GameSnapshot snapshot;
+
+		Record(GameEvent event, GameSnapshot snapshot) {
+			this.event = event;
+			this.snapshot = snapshot;
+		}
+	}
+
+	private final FileChannel[] segments = new FileChannel[2];
+	private int current;
+	private long generation;
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+	private final DataOutputStream out = new DataOutputStream(bytes);
+	private final CRC32 crc = new CRC32();
+
+	WriteAheadLog(File file) throws IOException {
+		for (int i = 0; i < 2; i++) {
+			segments[i] = new RandomAccessFile(segmentFileOf(file, i), "rw").getChannel();
+		}
+	}
+
+	static File segmentFileOf(File file, int segment) {
+		return new File(file.getPath() + "." + segment);
+	}
+
+	/**
+	 * Returns the records of both segments, the older segment first, and clears the segments.
+	 * A segment ends at its first incomplete or corrupted record, e.g., one cut by a crash.
+	 */
+	List<Record> recover() throws IOException {
+		long[] generations = new long[2];
+		List<List<Record>> records = Lists.newArrayList();
+		for (int i = 0; i < 2; i++) {
+			List<Record> segmentRecords = Lists.newArrayList();
+			generations[i] = read(segments[i], segmentRecords);
+			records.add(segmentRecords);
+		}
+		int older = generations[0] <= generations[1] ? 0 : 1;
+		List<Record> result = Lists.newArrayList(records.get(older));
+		result.addAll(records.get(1 - older));
+		generation = Math.max(generations[0], generations[1]);
+		reset(0);
+		reset(1);
+		current = 1;
+		return result;
+	}
+
+	void append(Record record) throws IOException {
+		bytes.reset();
+		out.writeInt(0);
+		out.writeInt(0);
+		GameEvent event = record.event;
+		out.writeUTF(event.getGameId());
+		out.writeInt(event.getMoveNumber());
+		out.writeUTF(event.getPlayerId());
+		writeBytes(event.getMakeMove());
+		GameSnapshot snapshot = record.snapshot;
+		out.writeBoolean(snapshot != null);
+		if (snapshot != null) {
+			out.writeBoolean(snapshot.getTurnPlayerId() != null);
+			if (snapshot.getTurnPlayerId() != null) {
+				out.writeUTF(snapshot.getTurnPlayerId());
+			}
+			writeBytes(snapshot.getState());
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		int length = buffer.limit() - RECORD_HEADER_BYTES;
+		crc.reset();
+		crc.update(buffer.array(), RECORD_HEADER_BYTES, length);
+		buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+		writeFully(segments[current], buffer);
+	}
+
+	/** Makes the next appends go to the other segment; returns the segment to {@link #release}. */
+	int rotate() throws IOException {
+		int previous = current;
+		current = 1 - current;
+		reset(current);
+		return previous;
+	}
+
+	/** Clears segment, once its records are stored. */
+	void release(int segment) throws IOException {
+		segments[segment].truncate(HEADER_BYTES);
+	}
+
+	void force() throws IOException {
+		segments[current].force(false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			segments[0].close();
+		} finally {
+			segments[1].close();
+		}
+	}
+
+	// Empties segment and starts it with the next generation
+	private void reset(int segment) throws IOException {
+		FileChannel channel = segments[segment];
+		channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(MAGIC).putInt(VERSION).putLong(++generation).flip();
+		channel.position(0);
+		writeFully(channel, header);
+	}
+
+	private void writeBytes(byte[] value) throws IOException {
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	// Reads the records of channel into records; returns its generation, 0 if it has none
+	private long read(FileChannel channel, List<Record> records) throws IOException {
+		if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+			return 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, buffer.position()) < 0) {
+				break;
+			}
+		}
+		buffer.flip();
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Not a write-ahead log of version " + VERSION);
+		}
+		long segmentGeneration = buffer.getLong();
+		while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length < 0 || length > buffer.remaining()) {
+				break;
+			}
+			crc.reset();
+			crc.update(buffer.array(), buffer.position(), length);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			records.add(readRecord(new DataInputStream(new ByteArrayInputStream(
+					buffer.array(), buffer.position(), length))));
+			buffer.position(buffer.position() + length);
+		}
+		return segmentGeneration;
+	}
+
+	private static Record readRecord(DataInputStream in) throws IOException {
+		String gameId = in.readUTF();
+		int moveNumber = in.readInt();
+		String playerId = in.readUTF();
+		GameEvent event = new GameEvent(gameId, moveNumber, playerId, readBytes(in));
+		GameSnapshot snapshot = null;
+		if (in.readBoolean()) {
+			String turnPlayerId = in.readBoolean() ? in.readUTF() : null;
+			snapshot = new GameSnapshot(gameId, moveNumber, turnPlayerId, readBytes(in));
+		}
+		return new Record(event, snapshot);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] value = new byte[in.readInt()];
+		in.readFully(value);
+		return value;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package org.ghosts.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Stores moves in a {@link GameRepository} in the background, so a turn only waits for an
+ * append to a local {@link WriteAheadLog} and not for the datastore.
+ * <p>
+ * The moves are queued by game. A flusher thread takes the whole queue when it has flushMoves
+ * moves, when its oldest move is flushMillis old, or when one of its games ended, and stores
+ * every game with one batch put of its events and only the latest of its snapshots. While a
+ * batch can't be stored it is retried, and appends block once maxPendingMoves moves are not
+ * stored yet, so a slow datastore slows the games down instead of filling the memory.
+ * <p>
+ * Opening the repository stores the moves left in the write-ahead file, e.g., by a crash, before
+ * the first append; storing a move twice writes the same entities again. {@link #load} waits for
+ * the queued moves of its game, so it never returns a game without its latest moves.
+ */
+public class WriteBehindGameRepository implements MoveRecorder, GameLoader, Closeable {
+	private static final Logger logger =
+			Logger.getLogger(WriteBehindGameRepository.class.getName());
+	private static final long MAX_RETRY_MILLIS = 5000;
+
+	private final GameRepository repository;
+	private final WriteAheadLog writeAheadLog;
+	private final int maxPendingMoves;
+	private final int flushMoves;
+	private final long flushNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final Condition flushDue = lock.newCondition();
+	private final Condition batchStored = lock.newCondition();
+	// the queued moves, by game in the order the games were queued
+	private Map<String, List<WriteAheadLog.Record>> queue =
+			new LinkedHashMap<String, List<WriteAheadLog.Record>>();
+	private int queuedMoves;
+	// the batch being stored
+	private Map<String, List<WriteAheadLog.Record>> storing =
+			new LinkedHashMap<String, List<WriteAheadLog.Record>>();
+	// the queued moves and the moves of the batch being stored
+	private int pendingMoves;
+	private long oldestQueuedNanos;
+	private boolean flushRequested;
+	private boolean closed;
+
+	private final Thread flusher;
+	private final int recoveredMoves;
+	private final AtomicLong storedMoves = new AtomicLong();
+	private final AtomicLong storedBatches = new AtomicLong();
+	private final AtomicLong blockedAppends = new AtomicLong();
+	private final AtomicLong failedWrites = new AtomicLong();
+
+	public WriteBehindGameRepository(GameRepository repository, File writeAheadFile,
+			int maxPendingMoves, int flushMoves, long flushMillis) throws IOException {
+		checkArgument(flushMoves > 0 && flushMoves <= maxPendingMoves,
+				"flushMoves must be in [1, maxPendingMoves]");
+		this.repository = repository;
+		this.maxPendingMoves = maxPendingMoves;
+		this.flushMoves = flushMoves;
+		this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+		this.writeAheadLog = new WriteAheadLog(writeAheadFile);
+		List<WriteAheadLog.Record> records = writeAheadLog.recover();
+		// the older segment comes first, so every game is stored in move order
+		for (List<WriteAheadLog.Record> gameRecords : groupByGame(records).values()) {
+			store(gameRecords);
+		}
+		this.recoveredMoves = records.size();
+		this.flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				flushLoop();
+			}
+		}, "WriteBehindGameRepository-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Queues the move after writing it to the write-ahead file; blocks while maxPendingMoves
+	 * moves are not stored yet.
+	 */
+	@Override
+	public void appendMove(String gameId, int moveNumber, String playerId, List<Operation> move,
+			GameState stateAfter, String turnPlayerId) {
+		WriteAheadLog.Record record = new WriteAheadLog.Record(
+				repository.newEvent(gameId, moveNumber, playerId, move),
+				repository.newSnapshot(gameId, moveNumber, move, stateAfter, turnPlayerId));
+		lock.lock();
+		try {
+			if (pendingMoves >= maxPendingMoves) {
+				blockedAppends.incrementAndGet();
+				while (pendingMoves >= maxPendingMoves && !closed) {
+					notFull.awaitUninterruptibly();
+				}
+			}
+			if (closed) {
+				throw new IllegalStateException("Repository is closed");
+			}
+			try {
+				writeAheadLog.append(record);
+			} catch (IOException e) {
+				throw new IllegalStateException("Can't write the write-ahead log", e);
+			}
+			List<WriteAheadLog.Record> gameRecords = queue.get(gameId);
+			if (gameRecords == null) {
+				gameRecords = Lists.newArrayList();
+				queue.put(gameId, gameRecords);
+			}
+			gameRecords.add(record);
+			if (queuedMoves == 0) {
+				oldestQueuedNanos = System.nanoTime();
+			}
+			queuedMoves++;
+			pendingMoves++;
+			if (queuedMoves >= flushMoves) {
+				flushDue.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Stores the queued moves of gameId, with those of the other games, without waiting. */
+	@Override
+	public void gameEnded(String gameId) {
+		lock.lock();
+		try {
+			if (queue.containsKey(gameId)) {
+				flushRequested = true;
+				flushDue.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Stores the queued moves of gameId (with those of the other games), then loads it. */
+	@Override
+	public GameRepository.StoredGame load(String gameId) {
+		lock.lock();
+		try {
+			while (!closed && (queue.containsKey(gameId) || storing.containsKey(gameId))) {
+				if (queue.containsKey(gameId)) {
+					flushRequested = true;
+					flushDue.signal();
+				}
+				batchStored.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+		return repository.load(gameId);
+	}
+
+	/** Stores the queued moves and stops the flusher; appends after close fail. */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			closed = true;
+			flushDue.signal();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		writeAheadLog.close();
+	}
+
+	/** The moves that are not stored yet. */
+	public int getPendingMoves() {
+		lock.lock();
+		try {
+			return pendingMoves;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** The moves that were left in the write-ahead file and stored when the repository opened. */
+	public int getRecoveredMoves() {
+		return recoveredMoves;
+	}
+
+	public long getStoredMoves() {
+		return storedMoves.get();
+	}
+
+	public long getStoredBatches() {
+		return storedBatches.get();
+	}
+
+	/** The appends that had to wait for the flusher. */
+	public long getBlockedAppends() {
+		return blockedAppends.get();
+	}
+
+	public long getFailedWrites() {
+		return failedWrites.get();
+	}
+
+	private void flushLoop() {
+		while (true) {
+			Map<String, List<WriteAheadLog.Record>> batch;
+			int batchMoves;
+			int segment;
+			lock.lock();
+			try {
+				waitUntilFlushDue();
+				if (queuedMoves == 0) {
+					// closed, and everything is stored
+					batchStored.signalAll();
+					return;
+				}
+				batch = queue;
+				storing = batch;
+				batchMoves = queuedMoves;
+				queue = new LinkedHashMap<String, List<WriteAheadLog.Record>>();
+				queuedMoves = 0;
+				flushRequested = false;
+				segment = rotateWriteAheadLog();
+			} finally {
+				lock.unlock();
+			}
+			if (!storeWithRetries(batch)) {
+				// closed while the store fails; the batch stays in the write-ahead file
+				lock.lock();
+				try {
+					batchStored.signalAll();
+				} finally {
+					lock.unlock();
+				}
+				return;
+			}
+			storedMoves.addAndGet(batchMoves);
+			storedBatches.incrementAndGet();
+			lock.lock();
+			try {
+				if (segment >= 0) {
+					writeAheadLog.release(segment);
+				}
+			} catch (IOException e) {
+				// the batch is stored, so it is only stored again on recovery
+				logger.log(Level.WARNING, "Can't clear the write-ahead log", e);
+			} finally {
+				pendingMoves -= batchMoves;
+				storing = new LinkedHashMap<String, List<WriteAheadLog.Record>>();
+				notFull.signalAll();
+				batchStored.signalAll();
+				lock.unlock();
+			}
+		}
+	}
+
+	// Returns the segment that holds the batch, or -1 if the batch stays in the current segment
+	private int rotateWriteAheadLog() {
+		try {
+			return writeAheadLog.rotate();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Can't rotate the write-ahead log", e);
+			return -1;
+		}
+	}
+
+	// Waits (holding the lock) until the queue should be flushed or the repository is closed
+	private void waitUntilFlushDue() {
+		while (!closed && queuedMoves < flushMoves && !flushRequested) {
+			try {
+				if (queuedMoves == 0) {
+					flushDue.await();
+				} else {
+					long waitNanos = oldestQueuedNanos + flushNanos - System.nanoTime();
+					if (waitNanos <= 0) {
+						return;
+					}
+					flushDue.awaitNanos(waitNanos);
+				}
+			} catch (InterruptedException e) {
+				// only close stops the flusher
+			}
+		}
+	}
+
+	private boolean storeWithRetries(Map<String, List<WriteAheadLog.Record>> batch) {
+		long retryMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(flushNanos));
+		for (List<WriteAheadLog.Record> gameRecords : batch.values()) {
+			while (true) {
+				try {
+					store(gameRecords);
+					break;
+				} catch (RuntimeException e) {
+					failedWrites.incrementAndGet();
+					logger.log(Level.WARNING, "Can't store a batch of moves, retrying", e);
+					if (isClosed()) {
+						return false;
+					}
+					try {
+						Thread.sleep(retryMillis);
+					} catch (InterruptedException interrupted) {
+						// only close stops the flusher
+					}
+					retryMillis = Math.min(2 * retryMillis, MAX_RETRY_MILLIS);
+				}
+			}
+		}
+		return true;
+	}
+
+	private boolean isClosed() {
+		lock.lock();
+		try {
+			return closed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Stores the moves of one game, in move order, with the latest of their snapshots
+	private void store(List<WriteAheadLog.Record> gameRecords) {
+		GameSnapshot snapshot = null;
+		List<GameEvent> events = Lists.newArrayListWithCapacity(gameRecords.size());
+		for (WriteAheadLog.Record record : gameRecords) {
+			events.add(record.event);
+			if (record.snapshot != null) {
+				snapshot = record.snapshot;
+			}
+		}
+		repository.store(snapshot, events);
+	}
+
+	private static Map<String, List<WriteAheadLog.Record>> groupByGame(
+			List<WriteAheadLog.Record> records) {
+		Map<String, List<WriteAheadLog.Record>> result =
+				new LinkedHashMap<String, List<WriteAheadLog.Record>>();
+		for (WriteAheadLog.Record record : records) {
+			List<WriteAheadLog.Record> gameRecords = result.get(record.event.getGameId());
+			if (gameRecords == null) {
+				gameRecords = Lists.newArrayList();
+				result.put(record.event.getGameId(), gameRecords);
+			}
+			gameRecords.add(record);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,182 @@
+package org.ghosts.sounds;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.dom.client.AudioElement;
+import com.google.gwt.dom.client.MediaElement;
+import com.google.gwt.media.client.Audio;
+
+/**
+ * Plays the clips of {@link GameSounds}. Every clip gets a few Audio elements ("voices") when the
+ * engine is created, at module load, which preload and decode it once; a play rewinds a free
+ * voice, so overlapping plays don't cut each other off and the first move doesn't wait for the
+ * clip to load.
+ * <p>
+ * Each clip is loaded in one format: the smallest the browser can play, or WAV with
+ * {@link Latency#LOWEST}, since PCM starts without decoding.
+ */
+public class SoundEngine {
+    public enum Clip {
+        PIECE_DOWN,
+        PIECE_CAPTURED,
+    }
+
+    public enum Latency {
+        /** The smallest format the browser can play (the default). */
+        SMALLEST,
+        /** WAV if the browser can play it. */
+        LOWEST,
+    }
+
+    private enum Format {
+        MP3(AudioElement.TYPE_MP3),
+        WAV(AudioElement.TYPE_WAV);
+
+        final String type;
+
+        Format(String type) {
+            this.type = type;
+        }
+    }
+
+    private static final int VOICES_PER_CLIP = 3;
+
+    private static SoundEngine instance;
+
+    private final GameSounds gameSounds;
+    private final Map<Clip, Audio[]> voices = new EnumMap<Clip, Audio[]>(Clip.class);
+    private final Map<Clip, Integer> nextVoices = new EnumMap<Clip, Integer>(Clip.class);
+    private Latency latency = Latency.SMALLEST;
+    private boolean muted = false;
+
+    /** The engine of the module, created (and loading its clips) on the first call. */
+    public static SoundEngine get() {
+        if (instance == null) {
+            instance = new SoundEngine(GWT.<GameSounds>create(GameSounds.class));
+        }
+        return instance;
+    }
+
+    private SoundEngine(GameSounds gameSounds) {
+        this.gameSounds = gameSounds;
+        loadVoices();
+    }
+
+    private void loadVoices() {
+        voices.clear();
+        nextVoices.clear();
+        Audio probe = Audio.createIfSupported();
+        if (probe == null) {
+            return;
+        }
+        for (Clip clip : Clip.values()) {
+            Format format = chooseFormat(probe, clip);
+            if (format == null) {
+                continue;
+            }
+            String url = getUrl(clip, format);
+            Audio[] clipVoices = new Audio[VOICES_PER_CLIP];
+            for (int i = 0; i < clipVoices.length; i++) {
+                Audio voice = Audio.createIfSupported();
+                voice.setPreload(MediaElement.PRELOAD_AUTO);
+                voice.setSrc(url);
+                voice.load();
+                clipVoices[i] = voice;
+            }
+            voices.put(clip, clipVoices);
+            nextVoices.put(clip, 0);
+        }
+    }
+
+    private Format chooseFormat(Audio probe, Clip clip) {
+        for (Format format : getFormats(clip)) {
+            if (!MediaElement.CANNOT_PLAY.equals(probe.canPlayType(format.type))) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /** The formats to try for clip, the preferred first. */
+    private Format[] getFormats(Clip clip) {
+        if (latency == Latency.LOWEST) {
+            return new Format[] {Format.WAV, Format.MP3};
+        }
+        switch (clip) {
+        case PIECE_DOWN:
+            // 1.3KB as WAV, 2.9KB as MP3
+            return new Format[] {Format.WAV, Format.MP3};
+        case PIECE_CAPTURED:
+            // 8.8KB as MP3, 23KB as WAV
+            return new Format[] {Format.MP3, Format.WAV};
+        default:
+            throw new RuntimeException("Forgot clip=" + clip);
+        }
+    }
+
+    private String getUrl(Clip clip, Format format) {
+        switch (clip) {
+        case PIECE_DOWN:
+            return (format == Format.WAV ? gameSounds.pieceDownWav() : gameSounds.pieceDownMp3())
+                    .getSafeUri().asString();
+        case PIECE_CAPTURED:
+            return (format == Format.WAV
+                    ? gameSounds.pieceCapturedWav() : gameSounds.pieceCapturedMp3())
+                    .getSafeUri().asString();
+        default:
+            throw new RuntimeException("Forgot clip=" + clip);
+        }
+    }
+
+    /** Plays clip, unless the engine is muted or the browser can't play it. */
+    public void play(Clip clip) {
+        Audio[] clipVoices = voices.get(clip);
+        if (muted || clipVoices == null) {
+            return;
+        }
+        Audio voice = null;
+        for (Audio candidate : clipVoices) {
+            if (candidate.isPaused() || candidate.hasEnded()) {
+                voice = candidate;
+                break;
+            }
+        }
+        if (voice == null) {
+            // all voices are playing: restart them in turn
+            int next = nextVoices.get(clip);
+            voice = clipVoices[next];
+            nextVoices.put(clip, (next + 1) % clipVoices.length);
+        }
+        voice.setCurrentTime(0);
+        voice.play();
+    }
+
+    public boolean isMuted() {
+        return muted;
+    }
+
+    public void setMuted(boolean muted) {
+        this.muted = muted;
+        if (muted) {
+            for (Audio[] clipVoices : voices.values()) {
+                for (Audio voice : clipVoices) {
+                    voice.pause();
+                }
+            }
+        }
+    }
+
+    public Latency getLatency() {
+        return latency;
+    }
+
+    /** Changes the format of the clips; they are loaded again if it changes. */
+    public void setLatency(Latency latency) {
+        if (this.latency != latency) {
+            this.latency = latency;
+            loadVoices();
+        }
+    }
+}
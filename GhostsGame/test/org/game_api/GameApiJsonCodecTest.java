@@ -0,0 +1,126 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.AttemptChangeTokens;
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.GameReady;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.MakeMove;
+import org.game_api.GameApi.ManipulateState;
+import org.game_api.GameApi.ManipulationDone;
+import org.game_api.GameApi.Message;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.RequestManipulator;
+import org.game_api.GameApi.RequestSnapshot;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetRandomInteger;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.UpdateUIDelta;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+@RunWith(JUnit4.class)
+public class GameApiJsonCodecTest {
+  private final GameApiJsonCodec codec = new GameApiJsonCodec();
+  private final List<Map<String, Object>> playersInfo = ImmutableList.<Map<String, Object>>of(
+      ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, "42"),
+      ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, "43"));
+  private final List<Operation> move = ImmutableList.<Operation>of(
+      new SetTurn("43"),
+      new Set("S21", "P4"),
+      new Set("hand", ImmutableList.of(1, 2, 3), ImmutableList.of("42")),
+      new Delete("S31"),
+      new SetVisibility("P4"),
+      new SetVisibility("P5", ImmutableList.of("43")),
+      new Shuffle(ImmutableList.of("P0", "P1")),
+      new SetRandomInteger("dice", 1, 7),
+      new AttemptChangeTokens(ImmutableMap.of("42", -10), ImmutableMap.of("42", 10)),
+      new EndGame("42"));
+
+  private List<Message> allMessages() {
+    GameState gameState = new GameState();
+    GameState lastGameState = gameState.copy();
+    gameState.makeMove(move.subList(0, 6));
+    Map<String, Integer> tokensInPot = ImmutableMap.of("42", 10, "43", 0);
+    return ImmutableList.<Message>builder()
+        .addAll(move)
+        .add(new UpdateUI("42", playersInfo, gameState.getStateForPlayerId("42"),
+            lastGameState.getStateForPlayerId("42"), move, "43", tokensInPot))
+        .add(new VerifyMove(playersInfo, gameState.getStateForPlayerId("43"),
+            lastGameState.getStateForPlayerId("43"), move, "42", tokensInPot))
+        .add(new UpdateUIDelta("42", 0, true, playersInfo, gameState.getStateForPlayerId("42"),
+            move, "43", tokensInPot))
+        .add(new UpdateUIDelta("42", 1, false, null,
+            ImmutableMap.<String, Object>of("S21", "P4"), move, "43", tokensInPot))
+        .add(new RequestSnapshot("43", 7))
+        .add(new MakeMove(move))
+        .add(new VerifyMoveDone())
+        .add(new VerifyMoveDone("43", "Found a \"hacker\"\n\ttab \\ \u0001"))
+        .add(new GameReady())
+        .add(new RequestManipulator())
+        .add(new ManipulateState(ImmutableMap.<String, Object>of("k", 1.5, "b", true)))
+        .add(new ManipulationDone(move))
+        .build();
+  }
+
+  @Test
+  public void testRoundTrip() {
+    for (Message message : allMessages()) {
+      assertEquals(message, codec.decode(codec.encode(message)));
+    }
+  }
+
+  @Test
+  public void testDecodesLikeTheHelperMaps() {
+    // the messages GameApiJsonHelper makes from the same JSON, through Message.toMessage maps
+    for (Message message : allMessages()) {
+      assertEquals(Message.messageToHasEquality(message.toMessage()),
+          codec.decode(codec.encode(message)));
+    }
+  }
+
+  @Test
+  public void testDecodesFieldsInAnyOrder() {
+    String json = "{ \"lastMove\": [{\"key\":\"S31\",\"type\":\"Delete\"}],\n"
+        + "  \"state\": {\"S21\": \"P4\", \"n\": 3.0, \"list\": [null, false, -2]},\n"
+        + "  \"playersInfo\": [{\"playerId\": \"42\"}], \"lastState\": {},\n"
+        + "  \"type\": \"VerifyMove\", \"lastMovePlayerId\": \"42\",\n"
+        + "  \"playerIdToNumberOfTokensInPot\": {\"42\": 1e1}, \"unknownField\": [1, {}] }";
+    Map<String, Object> state = Maps.newHashMap();
+    state.put("S21", "P4");
+    state.put("n", 3);
+    state.put("list", Lists.<Object>newArrayList(null, false, -2));
+    VerifyMove expected = new VerifyMove(
+        ImmutableList.<Map<String, Object>>of(ImmutableMap.<String, Object>of("playerId", "42")),
+        state, ImmutableMap.<String, Object>of(), ImmutableList.<Operation>of(new Delete("S31")),
+        "42", ImmutableMap.of("42", 10));
+    assertEquals(expected, codec.decode(json));
+  }
+
+  @Test
+  public void testUnknownTypeIsNull() {
+    assertNull(codec.decode("{\"type\":\"NoSuchMessage\",\"x\":1}"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMalformedJson() {
+    codec.decode("{\"type\":\"Delete\",\"key\":\"S31\"");
+  }
+}
@@ -0,0 +1,145 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.Shuffle;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+@RunWith(JUnit4.class)
+public class GameStateTest {
+  private final String wId = "42";
+  private final String bId = "43";
+  private final List<String> pieces = ImmutableList.of("P0", "P1", "P2");
+  private final GameState gameState = new GameState();
+
+  private List<Object> valuesOf(Map<String, Object> state) {
+    List<Object> values = Lists.newArrayList();
+    for (String piece : pieces) {
+      values.add(state.get(piece));
+    }
+    return values;
+  }
+
+  @Test
+  public void testProjectionDoesNotChangeAfterLaterWrites() {
+    gameState.makeMove(new Set("a", 1));
+    gameState.makeMove(new Set("b", 2));
+    Map<String, Object> before = gameState.getStateForPlayerId(wId);
+    gameState.makeMove(new Set("a", 3));
+    gameState.makeMove(new Delete("b"));
+    gameState.makeMove(new Set("c", 4));
+
+    assertEquals(1, before.get("a"));
+    assertEquals(2, before.get("b"));
+    assertFalse(before.containsKey("c"));
+    assertEquals(2, before.size());
+    Map<String, Object> after = gameState.getStateForPlayerId(wId);
+    assertEquals(3, after.get("a"));
+    assertFalse(after.containsKey("b"));
+    assertEquals(4, after.get("c"));
+  }
+
+  @Test
+  public void testProjectionIsReusedUntilTheNextWrite() {
+    gameState.makeMove(new Set("a", 1));
+    Map<String, Object> projection = gameState.getStateForPlayerId(wId);
+    assertSame(projection, gameState.getStateForPlayerId(wId));
+    assertSame(projection, gameState.copy().getStateForPlayerId(wId));
+    gameState.makeMove(new Set("a", 2));
+    assertNotSame(projection, gameState.getStateForPlayerId(wId));
+  }
+
+  @Test
+  public void testCopiesAreIndependent() {
+    gameState.makeMove(new Set("a", 1, ImmutableList.of(wId, bId)));
+    GameState copy = gameState.copy();
+    // each copy sees a player the other doesn't know, who gets the same index in both
+    gameState.makeMove(new Set("onlyHere", "x", ImmutableList.of("77")));
+    copy.makeMove(new Set("onlyThere", "y", ImmutableList.of("99")));
+    copy.makeMove(new Set("a", 2, ImmutableList.of(wId, bId)));
+
+    assertEquals(1, gameState.getStateForPlayerId(wId).get("a"));
+    assertEquals(2, copy.getStateForPlayerId(wId).get("a"));
+    assertFalse(gameState.getStateForPlayerId(wId).containsKey("onlyThere"));
+    assertFalse(copy.getStateForPlayerId(wId).containsKey("onlyHere"));
+    assertEquals("x", gameState.getStateForPlayerId("77").get("onlyHere"));
+    assertEquals("y", copy.getStateForPlayerId("99").get("onlyThere"));
+    assertNull(copy.getStateForPlayerId("77").get("onlyThere"));
+    assertNull(gameState.getStateForPlayerId("99").get("onlyHere"));
+  }
+
+  @Test
+  public void testShuffleAndSetVisibilityOnSharedTable() {
+    gameState.makeMove(new Set("P0", "a", ImmutableList.of(wId)));
+    gameState.makeMove(new Set("P1", "b", ImmutableList.of(wId)));
+    gameState.makeMove(new Set("P2", "c", ImmutableList.of(wId)));
+    GameState copy = gameState.copy();
+    copy.makeMove(new Shuffle(pieces));
+    for (String piece : pieces) {
+      copy.makeMove(new SetVisibility(piece));
+    }
+
+    assertEquals(ImmutableList.<Object>of("a", "b", "c"),
+        valuesOf(gameState.getStateForPlayerId(wId)));
+    assertEquals(Arrays.<Object>asList(null, null, null),
+        valuesOf(gameState.getStateForPlayerId(bId)));
+    assertEquals(ImmutableMultiset.<Object>of("a", "b", "c"),
+        HashMultiset.create(valuesOf(copy.getStateForPlayerId(bId))));
+  }
+
+  @Test
+  public void testHiddenKeysMapToNull() {
+    gameState.makeMove(new Set("mine", "x", ImmutableList.of(wId)));
+    gameState.makeMove(new Set("all", "y"));
+    Map<String, Object> state = gameState.getStateForPlayerId(bId);
+
+    assertTrue(state.containsKey("mine"));
+    assertNull(state.get("mine"));
+    assertEquals("y", state.get("all"));
+    assertEquals(2, state.size());
+    Map<String, Object> expected = Maps.newHashMap();
+    expected.put("mine", null);
+    expected.put("all", "y");
+    assertEquals(expected, state);
+    assertEquals("x", gameState.getStateForPlayerId(wId).get("mine"));
+  }
+
+  @Test
+  public void testPlayersBeyondTheMaskUseTheVisibilityList() {
+    // players 0 ~ 69 get their index in this order
+    for (int i = 0; i < 70; i++) {
+      gameState.makeMove(new Set("k" + i, i, ImmutableList.of("p" + i)));
+    }
+    gameState.makeMove(new Set("shared", "s", ImmutableList.of("p3", "p65", "p68")));
+
+    assertEquals(65, gameState.getStateForPlayerId("p65").get("k65"));
+    assertNull(gameState.getStateForPlayerId("p66").get("k65"));
+    assertNull(gameState.getStateForPlayerId("p1").get("k65"));
+    assertEquals("s", gameState.getStateForPlayerId("p3").get("shared"));
+    assertEquals("s", gameState.getStateForPlayerId("p65").get("shared"));
+    assertEquals("s", gameState.getStateForPlayerId("p68").get("shared"));
+    assertNull(gameState.getStateForPlayerId("p64").get("shared"));
+    assertNull(gameState.getStateForPlayerId("p69").get("shared"));
+  }
+}
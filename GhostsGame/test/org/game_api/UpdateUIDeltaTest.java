@@ -0,0 +1,141 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.RequestSnapshot;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.SetVisibility;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.UpdateUIDelta;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(JUnit4.class)
+public class UpdateUIDeltaTest {
+  private final String wId = "42";
+  private final String bId = "43";
+  private final List<Map<String, Object>> playersInfo = ImmutableList.<Map<String, Object>>of(
+      ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, wId),
+      ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, bId));
+  private final Map<String, Integer> tokensInPot = ImmutableMap.of();
+  private final GameApiJsonCodec codec = new GameApiJsonCodec();
+  private final UpdateUIDeltaEncoder encoder = new UpdateUIDeltaEncoder();
+  private final UpdateUIDeltaDecoder decoder = new UpdateUIDeltaDecoder();
+  private GameState gameState;
+
+  @Before
+  public void setUp() {
+    gameState = new GameState();
+    gameState.makeMove(ImmutableList.<Operation>of(
+        new SetTurn(wId),
+        new Set("S51", "P0"),
+        new Set("P0", "WGood", ImmutableList.of(wId)),
+        new Set("S01", "P8"),
+        new Set("P8", "BEvil", ImmutableList.of(bId))));
+  }
+
+  private UpdateUIDelta makeMove(List<Operation> move) {
+    gameState.makeMove(move);
+    return send(move);
+  }
+
+  // Encodes the state of white as a delta, through JSON like a real container would
+  private UpdateUIDelta send(List<Operation> move) {
+    return send(wId, move);
+  }
+
+  private UpdateUIDelta send(String playerId, List<Operation> move) {
+    UpdateUIDelta delta = encoder.encode(playerId, playersInfo,
+        gameState.getStateForPlayerId(playerId), move, wId, tokensInPot);
+    return (UpdateUIDelta) codec.decode(codec.encode(delta));
+  }
+
+  private final List<Operation> firstMove = ImmutableList.<Operation>of(
+      new SetTurn(bId), new Set("S41", "P0"), new Set("S51", null));
+
+  @Test
+  public void testDeltaCarriesChangedKeysOnly() {
+    UpdateUIDelta snapshot = send(null);
+    assertTrue(snapshot.isSnapshot());
+    UpdateUI first = decoder.decode(snapshot);
+    assertEquals("WGood", first.getState().get("P0"));
+    assertNull(first.getState().get("P8"));
+
+    UpdateUIDelta delta = makeMove(firstMove);
+    assertFalse(delta.isSnapshot());
+    assertEquals(1, delta.getSequence());
+    assertEquals("P0", delta.getChanges().get("S41"));
+    assertEquals(2, delta.getChanges().size());
+    assertTrue(delta.getChanges().containsKey("S51"));
+
+    UpdateUI second = decoder.decode(delta);
+    assertSame(first.getState(), second.getLastState());
+    assertEquals("P0", second.getState().get("S41"));
+    assertNull(second.getState().get("S51"));
+    assertEquals("P8", second.getState().get("S01"));
+    assertEquals(firstMove, second.getLastMove());
+  }
+
+  @Test
+  public void testMissedDeltaAsksForSnapshot() {
+    decoder.decode(send(null));
+    makeMove(firstMove);    // lost on the way
+    UpdateUIDelta delta = makeMove(ImmutableList.<Operation>of(
+        new SetTurn(wId), new Set("S02", "P8"), new Set("S01", null)));
+    assertNull(decoder.decode(delta));
+    RequestSnapshot request = decoder.getSnapshotRequest(wId);
+    assertNotNull(request);
+    assertEquals(wId, request.getYourPlayerId());
+    assertEquals(0, request.getLastSequence());
+    assertNull(decoder.getSnapshotRequest(wId));    // asked once
+
+    encoder.requestSnapshot(request.getYourPlayerId());
+    UpdateUIDelta snapshot = send(null);
+    assertTrue(snapshot.isSnapshot());
+    UpdateUI updateUI = decoder.decode(snapshot);
+    assertEquals("P0", updateUI.getState().get("S41"));
+    assertEquals("P8", updateUI.getState().get("S02"));
+    assertNull(updateUI.getLastState());
+    assertNotNull(decoder.decode(makeMove(ImmutableList.<Operation>of(
+        new SetVisibility("P8")))));
+  }
+
+  @Test
+  public void testSwitchingPlayersKeepsTheDeltas() {
+    // like IteratingPlayerContainer, which sends every update to the player to move
+    UpdateUI white = decoder.decode(send(wId, null));
+    UpdateUI black = decoder.decode(send(bId, null));
+    gameState.makeMove(firstMove);
+    UpdateUIDelta whiteDelta = send(wId, firstMove);
+    UpdateUIDelta blackDelta = send(bId, firstMove);
+    assertFalse(whiteDelta.isSnapshot());
+    assertFalse(blackDelta.isSnapshot());
+
+    UpdateUI nextWhite = decoder.decode(whiteDelta);
+    UpdateUI nextBlack = decoder.decode(blackDelta);
+    assertSame(white.getState(), nextWhite.getLastState());
+    assertSame(black.getState(), nextBlack.getLastState());
+    assertEquals("WGood", nextWhite.getState().get("P0"));
+    assertNull(nextBlack.getState().get("P0"));
+    assertEquals("BEvil", nextBlack.getState().get("P8"));
+    assertEquals(playersInfo, nextBlack.getPlayersInfo());
+    assertNull(decoder.getSnapshotRequest(wId));
+    assertNull(decoder.getSnapshotRequest(bId));
+  }
+}
@@ -0,0 +1,97 @@
+package org.ghosts.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BoardGeometryTest {
+
+	private int square(int row, int col) {
+		return Position.indexOf(row, col);
+	}
+
+	@Test
+	public void testNeighbourCounts() {
+		assertEquals(2, BoardGeometry.getNeighbourCount(square(0, 0)));
+		assertEquals(2, BoardGeometry.getNeighbourCount(square(0, 5)));
+		assertEquals(2, BoardGeometry.getNeighbourCount(square(5, 0)));
+		assertEquals(2, BoardGeometry.getNeighbourCount(square(5, 5)));
+		assertEquals(3, BoardGeometry.getNeighbourCount(square(0, 2)));
+		assertEquals(3, BoardGeometry.getNeighbourCount(square(3, 0)));
+		assertEquals(3, BoardGeometry.getNeighbourCount(square(2, 5)));
+		assertEquals(3, BoardGeometry.getNeighbourCount(square(5, 3)));
+		assertEquals(4, BoardGeometry.getNeighbourCount(square(2, 3)));
+
+		int total = 0;
+		for (int square = 0; square < Position.NUMBER_OF_SQUARES; square++) {
+			total += BoardGeometry.getNeighbourCount(square);
+			assertEquals(BoardGeometry.getNeighbourCount(square),
+					Long.bitCount(BoardGeometry.getNeighbourMask(square)));
+		}
+		// 2 * (5 * 6) steps along the rows and as many along the columns
+		assertEquals(120, total);
+	}
+
+	@Test
+	public void testNeighbourOrder() {
+		int square = square(2, 3);
+		assertEquals(square(1, 3), BoardGeometry.getNeighbour(square, 0));
+		assertEquals(square(3, 3), BoardGeometry.getNeighbour(square, 1));
+		assertEquals(square(2, 2), BoardGeometry.getNeighbour(square, 2));
+		assertEquals(square(2, 4), BoardGeometry.getNeighbour(square, 3));
+		// the missing ones are skipped
+		assertEquals(square(1, 0), BoardGeometry.getNeighbour(square(0, 0), 0));
+		assertEquals(square(0, 1), BoardGeometry.getNeighbour(square(0, 0), 1));
+	}
+
+	@Test
+	public void testAreNeighbours() {
+		assertTrue(BoardGeometry.areNeighbours(0, 1));
+		assertTrue(BoardGeometry.areNeighbours(1, 0));
+		assertTrue(BoardGeometry.areNeighbours(0, 6));
+		assertFalse(BoardGeometry.areNeighbours(0, 0));
+		assertFalse(BoardGeometry.areNeighbours(0, 7));
+		assertFalse(BoardGeometry.areNeighbours(0, 12));
+		// the end of a row isn't next to the start of the next row
+		assertFalse(BoardGeometry.areNeighbours(5, 6));
+		assertFalse(BoardGeometry.areNeighbours(6, 5));
+		assertFalse(BoardGeometry.areNeighbours(29, 30));
+	}
+
+	@Test
+	public void testExits() {
+		assertEquals((1L << 0) | (1L << 5), BoardGeometry.getExitMask(Color.W));
+		assertEquals((1L << 30) | (1L << 35), BoardGeometry.getExitMask(Color.B));
+		assertTrue(BoardGeometry.isExit(0, Color.W));
+		assertTrue(BoardGeometry.isExit(5, Color.W));
+		assertFalse(BoardGeometry.isExit(30, Color.W));
+		assertTrue(BoardGeometry.isExit(35, Color.B));
+		assertFalse(BoardGeometry.isExit(0, Color.B));
+		assertFalse(BoardGeometry.isExit(1, Color.W));
+
+		assertEquals(0, BoardGeometry.getRowsToExit(square(0, 3), Color.W));
+		assertEquals(5, BoardGeometry.getRowsToExit(square(5, 3), Color.W));
+		assertEquals(5, BoardGeometry.getRowsToExit(square(0, 3), Color.B));
+		assertEquals(1, BoardGeometry.getRowsToExit(square(4, 0), Color.B));
+	}
+
+	@Test
+	public void testSquareKeys() {
+		assertEquals("S00", BoardGeometry.getSquareKey(0));
+		assertEquals("S01", BoardGeometry.getSquareKey(1));
+		assertEquals("S10", BoardGeometry.getSquareKey(6));
+		assertEquals("S55", BoardGeometry.getSquareKey(35));
+		for (int square = 0; square < Position.NUMBER_OF_SQUARES; square++) {
+			assertEquals(square, Position.indexOfKey(BoardGeometry.getSquareKey(square)));
+			assertEquals(Position.of(square).toSquareString(), BoardGeometry.getSquareKey(square));
+		}
+		// the keys are computed once
+		assertSame(BoardGeometry.getSquareKey(7), BoardGeometry.getSquareKey(7));
+	}
+}
@@ -236,6 +236,24 @@ public class GhostsLogicTest {
 		assertEquals(null, verifyDone.getHackerPlayerId());
 	}
 	
+	@Test
+	public void testDeployedSquareHiddenFromBlack() {
+		List<Operation> operations = ImmutableList.<Operation> of(
+				new SetTurn(bId),
+				new Set(S[5][1], P[0], visibleToW), 
+				new Set(S[5][2], P[7]),
+				new Set(S[5][3], P[3]),
+				new Set(S[5][4], P[4]),
+				new Set(S[4][1], P[2]),
+				new Set(S[4][2], P[6]),
+				new Set(S[4][3], P[5]),
+				new Set(S[4][4], P[1]),
+				new Set(WDeployed, "true"));
+
+		VerifyMove verifyMove = move(wId, whiteDeployState, operations);
+		assertHacker(verifyMove);
+	}
+	
 	@Test
 	public void testInvalidBlackDeployFirst() {
 
@@ -589,4 +607,89 @@ public class GhostsLogicTest {
 		VerifyMoveDone verifyDone = new GhostsLogic().verify(verifyMove);
 		assertEquals(null, verifyDone.getHackerPlayerId());
 	}
+
+	@Test
+	public void testExitRevealsAPieceOfTheOpponent() {
+
+		List<Operation> operations = ImmutableList.<Operation> of(
+				new SetTurn(bId), 
+				new Set(S[0][0], P[0]), 
+				new Delete(S[1][0]),
+				new SetVisibility(P[0]), 
+				new SetVisibility(P[1]), 
+				new SetVisibility(P[2]),
+				new SetVisibility(P[8]),
+				new EndGame(wId));
+
+		VerifyMove verifyMove = move(wId, whiteToExitState, operations);
+		assertHacker(verifyMove);
+	}
+
+	@Test
+	public void testExitHidesAPieceOfTheMover() {
+
+		List<Operation> operations = ImmutableList.<Operation> of(
+				new SetTurn(bId), 
+				new Set(S[0][0], P[0]), 
+				new Delete(S[1][0]),
+				new SetVisibility(P[0]), 
+				new SetVisibility(P[1]),
+				new EndGame(wId));
+
+		VerifyMove verifyMove = move(wId, whiteToExitState, operations);
+		assertHacker(verifyMove);
+	}
+
+	@Test
+	public void testWhiteVerifiesBlackExit() {
+		// white can't see the black pieces before the move, the exit reveals them
+		Map<String, Object> lastState = ImmutableMap.<String, Object> builder()
+				.put(S[4][1], P[0])
+				.put(S[4][3], P[1])
+				.put(S[5][1], P[8])
+				.put(S[4][5], P[9])
+				.put(S[0][2], P[10])
+				.put(WDeployed, "true")
+				.put(BDeployed, "true")
+				.build();
+		Map<String, Object> state = ImmutableMap.<String, Object> of(
+				P[8], "BGood", P[9], "BGood", P[10], "BEvil");
+		List<Operation> operations = ImmutableList.<Operation> of(
+				new SetTurn(wId), 
+				new Set(S[5][5], P[9]), 
+				new Delete(S[4][5]),
+				new SetVisibility(P[8]), 
+				new SetVisibility(P[9]), 
+				new SetVisibility(P[10]),
+				new EndGame(bId));
+
+		VerifyMove verifyMove = new VerifyMove(playersInfo, state, lastState, operations, 
+				bId, ImmutableMap.<String, Integer>of());
+		VerifyMoveDone verifyDone = new GhostsLogic().verify(verifyMove);
+		assertEquals(null, verifyDone.getHackerPlayerId());
+	}
+
+	@Test
+	public void testEvilGhostCannotExit() {
+
+		Map<String, Object> lastState = ImmutableMap.<String, Object> builder()
+				.put(P[8], "BGood")
+				.put(P[10], "BEvil")
+				.put(S[4][1], P[0])
+				.put(S[1][1], P[8])
+				.put(S[4][0], P[10]) // S40, BEvil next to the exit
+				.put(WDeployed, "true")
+				.put(BDeployed, "true")
+				.build();
+		List<Operation> operations = ImmutableList.<Operation> of(
+				new SetTurn(wId), 
+				new Set(S[5][0], P[10]), 
+				new Delete(S[4][0]),
+				new SetVisibility(P[8]),
+				new SetVisibility(P[10]),
+				new EndGame(bId));
+
+		VerifyMove verifyMove = move(bId, lastState, operations);
+		assertHacker(verifyMove);
+	}
 }
@@ -1,5 +1,8 @@
 package org.ghosts.client;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -11,6 +14,7 @@ import java.util.Map;
 
 import org.game_api.GameApi;
 import org.game_api.GameApi.*;
+import org.ghosts.ai.AiMoveService;
 import org.ghosts.client.GhostsLogic;
 import org.ghosts.client.GhostsPresenter;
 import org.ghosts.client.Piece;
@@ -332,7 +336,11 @@ public class GhostsPresenterTest {
 				new Position(3, 1),
 				new Position(4, 0));
 		verify(mockView).chooseSquareToMove(possibleSquares);
-		
+		LegalMoves legalMoves = ghostsPresenter.getLegalMoves();
+		assertTrue(legalMoves.isLegal(4, Position.of(4, 0)));
+		assertFalse(legalMoves.isLegal(4, Position.of(5, 1)));		// P0 is there
+		assertTrue(legalMoves.isTarget(Position.of(3, 1)));
+		assertFalse(legalMoves.hasMoves(12));						// not the turn of B
 	}
 	
 	@Test
@@ -398,6 +406,52 @@ public class GhostsPresenterTest {
 //		verify(mockView).chooseNextPieceToDeploy(ImmutableList.<Piece>of(), pieceDeployed);
 	}
 */
+
+	// Counts the searches and the cancels instead of searching
+	private static class RecordingAiMoveService implements AiMoveService {
+		int searches = 0;
+		int cancels = 0;
+
+		@Override
+		public void prepare() {
+		}
+
+		@Override
+		public void findBestMove(GhostsState state, int milliseconds, Callback callback) {
+			searches++;
+		}
+
+		@Override
+		public void cancel() {
+			cancels++;
+		}
+	}
+
+	@Test
+	public void testRepeatedUpdateUIKeepsTheAiSearchRunning() {
+		RecordingAiMoveService aiMoveService = new RecordingAiMoveService();
+		GhostsPresenter aiPresenter = new GhostsPresenter(Mockito.mock(View.class),
+				Mockito.mock(Container.class), aiMoveService);
+		String aiId = GameApi.AI_PLAYER_ID;
+		List<Map<String, Object>> aiPlayersInfo = ImmutableList.<Map<String, Object>>of(
+				wInfo, ImmutableMap.<String, Object>of(PLAYER_ID, aiId));
+		UpdateUI updateUI = new UpdateUI(aiId, aiPlayersInfo, beginState, emptyState,
+				ImmutableList.<Operation>of(new SetTurn(aiId)), wId, ImmutableMap.<String, Integer>of());
+		aiPresenter.updateUI(updateUI);
+		aiPresenter.updateUI(updateUI);								// starts the search
+		aiPresenter.updateUI(updateUI);								// the same state again
+		assertEquals(1, aiMoveService.searches);
+		assertEquals(0, aiMoveService.cancels);
+
+		Map<String, Object> movedState = Maps.newHashMap(beginState);
+		movedState.remove(S[1][1]);
+		movedState.put(S[2][1], P[8]);
+		aiPresenter.updateUI(new UpdateUI(aiId, aiPlayersInfo, movedState, beginState,
+				ImmutableList.<Operation>of(new SetTurn(aiId)), wId, ImmutableMap.<String, Integer>of()));
+		assertEquals(1, aiMoveService.cancels);
+		assertEquals(2, aiMoveService.searches);					// the search starts again
+	}
+
 	private UpdateUI createUpdateUI(String yourPlayerId, String turnOfPlayerId,
 			Map<String, Object> state) {
 		// Our UI only looks at the current state
@@ -0,0 +1,104 @@
+package org.ghosts.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class GhostsStateTrackerTest {
+	private final String wId = "42";
+	private final String bId = "43";
+	private final List<String> playerIds = ImmutableList.of(wId, bId);
+	private final GhostsLogic ghostsLogic = new GhostsLogic();
+	// one tracker per player, each one cross-checks every incremental conversion
+	private final GhostsStateTracker wTracker = new GhostsStateTracker(ghostsLogic, true);
+	private final GhostsStateTracker bTracker = new GhostsStateTracker(ghostsLogic, true);
+	private final GameState gameState = new GameState();
+
+	private List<Operation> whiteDeploy() {
+		return ImmutableList.<Operation>of(new SetTurn(bId),
+				new Set("S51", "P0"), new Set("S52", "P1"), new Set("S53", "P2"), new Set("S54", "P3"),
+				new Set("S41", "P4"), new Set("S42", "P5"), new Set("S43", "P6"), new Set("S44", "P7"),
+				new Set("WDeployed", "true"));
+	}
+
+	private List<Operation> blackDeploy() {
+		return ImmutableList.<Operation>of(new SetTurn(wId),
+				new Set("S01", "P8"), new Set("S02", "P9"), new Set("S03", "P10"), new Set("S04", "P11"),
+				new Set("S11", "P12"), new Set("S12", "P13"), new Set("S13", "P14"), new Set("S14", "P15"),
+				new Set("BDeployed", "true"));
+	}
+
+	// Makes the move and converts the new state for both players
+	private void makeMove(String playerId, List<Operation> move) {
+		GameState lastGameState = gameState.copy();
+		gameState.makeMove(move);
+		Color turn = Color.values()[playerIds.indexOf(playerId)];
+		for (String id : playerIds) {
+			GhostsStateTracker tracker = id.equals(wId) ? wTracker : bTracker;
+			tracker.getState(lastGameState.getStateForPlayerId(id), move,
+					gameState.getStateForPlayerId(id), turn, playerIds);
+		}
+	}
+
+	@Test
+	public void testIncrementalConversionsMatchFullConversions() {
+		makeMove(wId, ghostsLogic.getBoardInitialOperations(playerIds));
+		makeMove(wId, whiteDeploy());
+		makeMove(bId, blackDeploy());
+		makeMove(wId, ImmutableList.<Operation>of(new SetTurn(bId),
+				new Set("S31", "P4"), new Delete("S41")));
+		makeMove(bId, ImmutableList.<Operation>of(new SetTurn(wId),
+				new Set("S21", "P12"), new Delete("S11")));
+		makeMove(wId, ImmutableList.<Operation>of(new SetTurn(bId),
+				new Set("S21", "P4"), new Delete("S31"), new Delete("P12")));
+
+		// only the board initialization (it shuffles) is converted in full
+		assertEquals(1, wTracker.getFullConversions());
+		assertEquals(5, wTracker.getIncrementalConversions());
+		assertEquals(1, bTracker.getFullConversions());
+		assertEquals(5, bTracker.getIncrementalConversions());
+
+		GhostsState bState = bTracker.getState(gameState.getStateForPlayerId(bId), Color.B,
+				playerIds);
+		assertEquals("P4", bState.getSquares().get(Position.of(2, 1)));
+		assertNull(bState.getSquares().get(Position.of(3, 1)));
+		assertTrue(!bState.getPieces().get(12).isPresent());
+		assertTrue(!bState.getPieces().get(4).isPresent());
+		// the piece index follows the squares: P4 moved twice, P12 was captured
+		assertEquals(Position.of(2, 1), bState.getPosition("P4"));
+		assertNull(bState.getPosition(12));
+		assertEquals(Position.of(0, 1), bState.getPosition(8));
+		assertEquals(1, bTracker.getFullConversions());
+	}
+
+	@Test
+	public void testUnknownLastStateIsConvertedInFull() {
+		makeMove(wId, ghostsLogic.getBoardInitialOperations(playerIds));
+		GhostsStateTracker tracker = new GhostsStateTracker(ghostsLogic, true);
+		Map<String, Object> lastState = gameState.getStateForPlayerId(wId);
+		GameState lastGameState = gameState.copy();
+		gameState.makeMove(whiteDeploy());
+		GhostsState state = tracker.getState(lastGameState.getStateForPlayerId(wId), whiteDeploy(),
+				gameState.getStateForPlayerId(wId), Color.B, playerIds);
+		assertEquals(1, tracker.getFullConversions());
+		assertEquals(0, tracker.getIncrementalConversions());
+		assertTrue(state.isWhiteDeployed());
+		assertSame(lastState, lastGameState.getStateForPlayerId(wId));
+	}
+}
@@ -0,0 +1,119 @@
+package org.ghosts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.ghosts.client.Color;
+import org.ghosts.client.GhostsLogic;
+import org.ghosts.client.GhostsState;
+import org.ghosts.client.PieceKind;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class ActiveGameCacheTest {
+	private final String wId = "42";
+	private final String bId = "43";
+	private final List<String> playerIds = ImmutableList.of(wId, bId);
+	private final GameRepository repository = new GameRepository(new InMemoryGameStore());
+	private final FakeTicker ticker = new FakeTicker();
+	private final InMemoryCache cache = new InMemoryCache(2, 1000, 1, null, ticker);
+	private final ActiveGameCache activeGames = new ActiveGameCache(cache, repository, repository);
+	private final GameState gameState = new GameState();
+	private int moveNumber = 0;
+
+	private static class FakeTicker extends Ticker {
+		long nanos;
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+
+	private void makeMove(String gameId, String playerId, List<Operation> move) {
+		gameState.makeMove(move);
+		moveNumber++;
+		activeGames.appendMove(gameId, moveNumber, playerId, move, gameState,
+				playerId.equals(wId) ? bId : wId);
+	}
+
+	@Before
+	public void setUp() {
+		PieceKind[] kinds = new PieceKind[16];
+		for (int i = 0; i < kinds.length; i++) {
+			kinds[i] = PieceKind.of(i < 8 ? Color.W : Color.B, i % 8 < 4);
+		}
+		makeMove("g", wId, GameLog.getInitialOperations(playerIds, kinds));
+		makeMove("g", wId, ImmutableList.<Operation>of(new SetTurn(bId),
+				new Set("S51", "P0"), new Set("S52", "P1"), new Set("S53", "P2"), new Set("S54", "P3"),
+				new Set("S41", "P4"), new Set("S42", "P5"), new Set("S43", "P6"), new Set("S44", "P7"),
+				new Set("WDeployed", "true")));
+		makeMove("g", bId, ImmutableList.<Operation>of(new SetTurn(wId),
+				new Set("S01", "P8"), new Set("S02", "P9"), new Set("S03", "P10"), new Set("S04", "P11"),
+				new Set("S11", "P12"), new Set("S12", "P13"), new Set("S13", "P14"), new Set("S14", "P15"),
+				new Set("BDeployed", "true")));
+	}
+
+	@Test
+	public void testLoadsOnceThenHits() {
+		ActiveGame game = activeGames.get("g", playerIds);
+		assertEquals(3, game.getMoveCount());
+		assertSame(game, activeGames.get("g", playerIds));
+		assertEquals(1, activeGames.getLoads());
+		assertEquals(0.5, activeGames.getHitRate(), 0);
+		assertNull(activeGames.get("unknown", playerIds));
+	}
+
+	@Test
+	public void testMovesKeepTheCachedGameCurrent() {
+		ActiveGame game = activeGames.get("g", playerIds);
+		game.getGhostsState(bId);
+		makeMove("g", wId, ImmutableList.<Operation>of(new SetTurn(bId),
+				new Set("S31", "P4"), new Delete("S41")));
+		assertSame(game, activeGames.get("g", playerIds));
+		assertEquals(4, game.getMoveCount());
+		assertEquals(Color.B, game.getTurn());
+		GhostsState expected = new GhostsLogic().gameApiStateToGhostsState(
+				gameState.getStateForPlayerId(bId), Color.B, playerIds);
+		GhostsState ghostsState = game.getGhostsState(bId);
+		assertEquals(expected.getSquares(), ghostsState.getSquares());
+		assertEquals(Color.B, ghostsState.getTurn());
+		// the loaded game went through the JSON codec, so the flags are not the literal "true"
+		assertTrue(ghostsState.isWhiteDeployed());
+		assertTrue(ghostsState.isBlackDeployed());
+		assertEquals(1, game.getStateTracker().getIncrementalConversions());
+	}
+
+	@Test
+	public void testEvictsIdleAndLeastRecentlyUsedGames() {
+		ActiveGame game = activeGames.get("g", playerIds);
+		ticker.nanos += TimeUnit.SECONDS.toNanos(2);
+		assertNotSame(game, activeGames.get("g", playerIds));
+		assertEquals(2, activeGames.getLoads());
+
+		for (int i = 0; i < 2; i++) {
+			repository.appendMove("other" + i, 1, wId,
+					ImmutableList.<Operation>of(new SetTurn(wId)), new GameState(), wId);
+			activeGames.get("other" + i, playerIds);
+		}
+		assertEquals(2, cache.size());
+		assertNull(cache.peek("g"));
+	}
+}
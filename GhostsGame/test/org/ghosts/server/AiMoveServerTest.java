@@ -0,0 +1,185 @@
+package org.ghosts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.ghosts.ai.AlphaBetaPruning;
+import org.ghosts.ai.Heuristic;
+import org.ghosts.ai.Timer;
+import org.ghosts.client.Color;
+import org.ghosts.client.GhostsLogic;
+import org.ghosts.client.Move;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+
+@RunWith(JUnit4.class)
+public class AiMoveServerTest {
+	private static final long SLICE_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+	private static final int BUDGET_MILLIS = 10;
+	private static final long IDLE_MILLIS = 1000;
+	private final List<String> playerIds = ImmutableList.of("42", "43");
+	private final Map<String, Object> state = Maps.newHashMap();
+	private final FakeTicker ticker = new FakeTicker();
+	private final AiMoveServer server = new AiMoveServer(2, IDLE_MILLIS, SLICE_NANOS, ticker);
+
+	// Every read of the clock takes readNanos, so the searches use up their slices and budgets
+	private static class FakeTicker extends Ticker {
+		long nanos;
+		long readNanos = TimeUnit.MICROSECONDS.toNanos(1);
+
+		@Override
+		public long read() {
+			nanos += readNanos;
+			return nanos;
+		}
+	}
+
+	private static final Timer NEVER = new Timer() {
+		@Override
+		public boolean didTimeout() {
+			return false;
+		}
+	};
+
+	private static final Timer ALWAYS = new Timer() {
+		@Override
+		public boolean didTimeout() {
+			return true;
+		}
+	};
+
+	@Before
+	public void setUp() {
+		// both sides deployed, the AI (black) sees its own pieces only
+		for (int col = 1; col <= 4; col++) {
+			state.put("S5" + col, "P" + (col - 1));
+			state.put("S4" + col, "P" + (col + 3));
+			state.put("S1" + col, "P" + (col + 7));
+			state.put("S0" + col, "P" + (col + 11));
+		}
+		for (int i = 8; i < 16; i++) {
+			state.put("P" + i, i < 12 ? "BGood" : "BEvil");
+		}
+		state.put("WDeployed", "true");
+		state.put("BDeployed", "true");
+	}
+
+	private ListenableFuture<Move> submit(String gameId) {
+		return server.submit(new AiMoveRequest(gameId, state, Color.B, playerIds, BUDGET_MILLIS));
+	}
+
+	// Returns the number of slices run
+	private int runAll() {
+		int slices = 0;
+		while (server.runNext()) {
+			slices++;
+		}
+		return slices;
+	}
+
+	@Test
+	public void testRejectsRequestsOverMaxPending() throws Exception {
+		ListenableFuture<Move> first = submit("g1");
+		ListenableFuture<Move> second = submit("g2");
+		ListenableFuture<Move> third = submit("g3");
+		assertTrue(third.isDone());
+		try {
+			third.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		assertEquals(1, server.getRejectedRequests());
+		assertEquals(2, server.getPendingRequests());
+
+		runAll();
+		assertNotNull(first.get());
+		assertNotNull(second.get());
+		assertEquals(0, server.getPendingRequests());
+		ListenableFuture<Move> again = submit("g3");
+		runAll();
+		assertNotNull(again.get());
+		assertEquals(1, server.getRejectedRequests());
+	}
+
+	@Test
+	public void testNewerRequestSupersedesPendingOne() throws Exception {
+		ListenableFuture<Move> first = submit("g");
+		ListenableFuture<Move> second = submit("g");
+		assertEquals(2, server.getPendingRequests());
+
+		runAll();
+		assertTrue(first.isCancelled());
+		assertNotNull(second.get());
+		assertEquals(0, server.getPendingRequests());
+		assertEquals(1, server.getActiveGames());
+	}
+
+	@Test
+	public void testEvictsIdleGames() throws Exception {
+		ListenableFuture<Move> finished = submit("g1");
+		runAll();
+		assertNotNull(finished.get());
+		assertEquals(0, server.evictIdleGames());
+
+		ticker.readNanos = 0;
+		ListenableFuture<Move> waiting = submit("g2");
+		ticker.nanos += TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS);
+		// g2 is idle as long, but its search is pending
+		assertEquals(1, server.evictIdleGames());
+		assertEquals(1, server.getActiveGames());
+
+		ticker.readNanos = TimeUnit.MICROSECONDS.toNanos(1);
+		runAll();
+		assertNotNull(waiting.get());
+		ticker.nanos += TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS);
+		assertEquals(1, server.evictIdleGames());
+		assertEquals(0, server.getActiveGames());
+	}
+
+	@Test
+	public void testSliceDoublesForEachExpiredSlice() {
+		AlphaBetaPruning.Search search = new AlphaBetaPruning(new Heuristic(),
+				new GhostsLogic().gameApiStateToGhostsState(state, Color.B, playerIds))
+				.newSearch(AlphaBetaPruning.MAX_DEPTH, NEVER);
+		assertEquals(10, search.getNextSlice(10, 1000));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(search.step(ALWAYS));
+		}
+		assertEquals(3, search.getExpiredSlices());
+		assertEquals(80, search.getNextSlice(10, 1000));
+		// but never longer than the time left
+		assertEquals(50, search.getNextSlice(10, 50));
+
+		assertTrue(search.step(NEVER));
+		assertEquals(0, search.getExpiredSlices());
+		assertEquals(10, search.getNextSlice(10, 1000));
+	}
+
+	@Test
+	public void testSearchUsesWholeBudgetWithShortSlices() throws Exception {
+		long submitted = ticker.nanos;
+		ListenableFuture<Move> move = submit("g");
+		int slices = runAll();
+		assertNotNull(move.get());
+		// the root moves of the deeper iterations don't fit in a slice of 20 reads, but the search
+		// goes on in longer slices until the budget is used up
+		assertTrue(slices > 1);
+		assertTrue(ticker.nanos - submitted >= TimeUnit.MILLISECONDS.toNanos(BUDGET_MILLIS));
+	}
+}
@@ -0,0 +1,44 @@
+package org.ghosts.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.game_api.GameApi.Operation;
+import org.ghosts.client.Color;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class BatchReplayVerifierTest {
+
+	@Test
+	public void testResultsKeepTheOrderOfTheLogs() {
+		// more logs than one task replays, so the batch is split
+		int games = 3 * BatchReplayVerifier.LOGS_PER_TASK + 5;
+		List<List<Operation>> illegalMoves = Lists.newArrayList(TestGames.moves());
+		illegalMoves.set(2, TestGames.move(Color.W, "P0", "S51", "S31"));
+		List<GameLog> gameLogs = Lists.newArrayList();
+		for (int i = 0; i < games; i++) {
+			String gameId = String.valueOf(i);
+			gameLogs.add(i % 7 == 0 ? TestGames.game(gameId, illegalMoves) : TestGames.game(gameId));
+		}
+
+		BatchReplayVerifier batch = new BatchReplayVerifier(4);
+		try {
+			BatchReplayVerifier.Report report = batch.verifyAll(gameLogs);
+			assertEquals(games, report.results.size());
+			for (int i = 0; i < games; i++) {
+				ReplayVerifier.Result result = report.results.get(i);
+				assertEquals(String.valueOf(i), result.gameId);
+				assertEquals(i % 7 == 0 ? 3 : -1, result.moveIndex);
+			}
+			assertEquals((games + 6) / 7, report.getIllegalGames().size());
+		} finally {
+			batch.shutdown();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.ghosts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GameArchiveTest {
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("games", ".archive");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		GameArchiveWriter.indexFileOf(file).delete();
+	}
+
+	private void append(int games) throws IOException {
+		GameArchiveWriter writer = new GameArchiveWriter(file);
+		try {
+			for (int i = 0; i < games; i++) {
+				writer.append(TestGames.game("g"));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	// Appends bytes to the data file, like a writer that crashed before writing the offset
+	private void appendData(byte[] bytes) throws IOException {
+		RandomAccessFile data = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = data.getChannel();
+			channel.write(ByteBuffer.wrap(bytes), channel.size());
+		} finally {
+			data.close();
+		}
+	}
+
+	private void writeInt(File target, long position, int value) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(target, "rw");
+		try {
+			randomAccessFile.seek(position);
+			randomAccessFile.writeInt(value);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private void assertNotAnArchive() {
+		try {
+			new GameArchiveReader(file);
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReadsAppendedGames() throws IOException {
+		append(2);
+		append(1);
+		GameArchiveReader reader = new GameArchiveReader(file);
+		assertEquals(3, reader.size());
+		GameRecord record = new GameRecord();
+		for (int i = 0; i < reader.size(); i++) {
+			assertEquals(GameRecord.HEADER_BYTES + 11, reader.read(i, record).getLength());
+			assertEquals(TestGames.moves(), reader.readGameLog(i, TestGames.PLAYER_IDS).getMoves());
+		}
+		try {
+			reader.read(3, record);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRecoverDropsRecordWithoutOffset() throws IOException {
+		append(2);
+		long indexedLength = file.length();
+		appendData(new byte[GameRecord.HEADER_BYTES + 3]);
+		append(1);
+		assertEquals(indexedLength + GameRecord.HEADER_BYTES + 11, file.length());
+
+		GameArchiveReader reader = new GameArchiveReader(file);
+		assertEquals(3, reader.size());
+		assertEquals(TestGames.moves(), reader.readGameLog(2, TestGames.PLAYER_IDS).getMoves());
+	}
+
+	@Test
+	public void testRejectsFileOfOtherMagic() throws IOException {
+		append(1);
+		writeInt(file, 0, GameArchiveWriter.INDEX_MAGIC);
+		assertNotAnArchive();
+	}
+
+	@Test
+	public void testRejectsFileOfOtherVersion() throws IOException {
+		append(1);
+		writeInt(GameArchiveWriter.indexFileOf(file), 4, GameArchiveWriter.VERSION + 1);
+		assertNotAnArchive();
+	}
+
+	@Test
+	public void testRejectsTooShortFile() throws IOException {
+		append(1);
+		new RandomAccessFile(file, "rw").getChannel().truncate(4).close();
+		assertNotAnArchive();
+	}
+}
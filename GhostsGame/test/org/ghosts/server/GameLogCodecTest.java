@@ -0,0 +1,116 @@
+package org.ghosts.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Operation;
+import org.ghosts.client.Color;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class GameLogCodecTest {
+
+	private GameRecord encode(GameLog gameLog) {
+		ByteBuffer buffer = ByteBuffer.allocate(GameLogCodec.maxLength(gameLog));
+		GameLogCodec.encode(gameLog, buffer);
+		GameRecord record = new GameRecord().wrap(buffer, 0);
+		assertEquals(buffer.position(), record.getLength());
+		return record;
+	}
+
+	@Test
+	public void testEncodePermutation() {
+		assertEquals(0, GameLogCodec.encodePermutation(new int[] {0, 1, 2, 3, 4, 5, 6, 7}));
+		assertEquals(40319, GameLogCodec.encodePermutation(new int[] {7, 6, 5, 4, 3, 2, 1, 0}));
+		// 1 smaller value after 1, in base 3, then none after 0 and 2
+		assertEquals(2, GameLogCodec.encodePermutation(new int[] {1, 0, 2}));
+	}
+
+	@Test
+	public void testDecodePermutation() {
+		int[] permutation = new int[3];
+		GameLogCodec.decodePermutation(2, permutation);
+		assertArrayEquals(new int[] {1, 0, 2}, permutation);
+		GameLogCodec.decodePermutation(5, permutation);
+		assertArrayEquals(new int[] {2, 1, 0}, permutation);
+	}
+
+	@Test
+	public void testEveryPermutationOf8RoundTrips() {
+		int[] permutation = new int[8];
+		for (int code = 0; code < 40320; code++) {
+			GameLogCodec.decodePermutation(code, permutation);
+			int used = 0;
+			for (int value : permutation) {
+				used |= 1 << value;
+			}
+			assertEquals(0xFF, used);
+			assertEquals(code, GameLogCodec.encodePermutation(permutation));
+		}
+	}
+
+	@Test
+	public void testRoundTrip() {
+		GameLog gameLog = TestGames.game("g");
+		GameRecord record = encode(gameLog);
+		assertTrue(record.isDeployed(Color.W));
+		assertTrue(record.isDeployed(Color.B));
+		// one byte per move after the deploys
+		assertEquals(11, record.getMoveCount());
+		assertEquals(GameRecord.HEADER_BYTES + 11, record.getLength());
+
+		GameLog decoded = GameLogCodec.decode(record, "g", TestGames.PLAYER_IDS);
+		assertEquals("g", decoded.getGameId());
+		assertEquals(gameLog.getInitialOperations(), decoded.getInitialOperations());
+		assertEquals(gameLog.getMoves(), decoded.getMoves());
+	}
+
+	@Test
+	public void testDecodeRebuildsCaptureAndExit() {
+		List<List<Operation>> moves = GameLogCodec.decode(encode(TestGames.game("g")), "g",
+				TestGames.PLAYER_IDS).getMoves();
+		List<Operation> capture = moves.get(10);
+		assertEquals(4, capture.size());
+		assertEquals(new Delete("P12"), capture.get(3));
+		List<Operation> exit = moves.get(moves.size() - 1);
+		// SetTurn, Set, Delete, the 8 pieces of white, EndGame
+		assertEquals(12, exit.size());
+		assertEquals(new EndGame(TestGames.W_ID), exit.get(11));
+		assertTrue(new ReplayVerifier().verify(TestGames.game("g", moves)).isLegal());
+	}
+
+	@Test
+	public void testRoundTripBeforeBlackDeploys() {
+		GameLog gameLog = TestGames.game("g", ImmutableList.of(TestGames.deploy(Color.W)));
+		GameRecord record = encode(gameLog);
+		assertTrue(record.isDeployed(Color.W));
+		assertFalse(record.isDeployed(Color.B));
+		assertEquals(0, record.getMoveCount());
+		assertEquals(gameLog.getMoves(),
+				GameLogCodec.decode(record, "g", TestGames.PLAYER_IDS).getMoves());
+	}
+
+	@Test
+	public void testEncodeRejectsMoveToFarSquare() {
+		GameLog gameLog = TestGames.game("g", ImmutableList.of(TestGames.deploy(Color.W),
+				TestGames.deploy(Color.B), TestGames.move(Color.W, "P0", "S51", "S31")));
+		try {
+			GameLogCodec.encode(gameLog, ByteBuffer.allocate(GameLogCodec.maxLength(gameLog)));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package org.ghosts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.List;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.Shuffle;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class GameRepositoryTest {
+	private final String wId = "42";
+	private final String bId = "43";
+	private final InMemoryGameStore store = new InMemoryGameStore();
+	private final GameRepository repository = new GameRepository(store, 4);
+	private final GameState gameState = new GameState();
+	private int moveNumber = 0;
+
+	private void makeMove(String playerId, List<Operation> move) {
+		gameState.makeMove(move);
+		moveNumber++;
+		String turnPlayerId = playerId.equals(wId) ? bId : wId;
+		repository.appendMove("g", moveNumber, playerId, move, gameState, turnPlayerId);
+	}
+
+	private List<Operation> step(String playerId, int i) {
+		String turnPlayerId = playerId.equals(wId) ? bId : wId;
+		return ImmutableList.<Operation>of(new SetTurn(turnPlayerId),
+				new Set("S" + i, "P" + (i % 8)), new Delete("S" + (i - 1)));
+	}
+
+	private void assertSameState(GameState expected, GameState actual) {
+		assertEquals(expected.getStateForPlayerId(wId), actual.getStateForPlayerId(wId));
+		assertEquals(expected.getStateForPlayerId(bId), actual.getStateForPlayerId(bId));
+	}
+
+	@Test
+	public void testLoadReplaysOnlyTheMovesAfterTheSnapshot() {
+		makeMove(wId, ImmutableList.<Operation>of(new SetTurn(wId),
+				new Set("P0", "wg", ImmutableList.of(wId)), new Set("P1", "bg", ImmutableList.of(bId)),
+				new Set("S0", "P0")));
+		for (int i = 1; i < 10; i++) {
+			makeMove(i % 2 == 1 ? wId : bId, step(i % 2 == 1 ? wId : bId, i));
+		}
+		GameRepository.StoredGame stored = repository.load("g");
+		assertEquals(10, stored.moveCount);
+		assertEquals(2, stored.replayedMoves);
+		assertEquals(bId, stored.turnPlayerId);
+		assertEquals(wId, stored.lastMovePlayerId);
+		assertEquals(step(wId, 9), stored.lastMove);
+		assertSameState(gameState, stored.gameState);
+		assertEquals(10, store.getEventCount("g"));
+	}
+
+	@Test
+	public void testShuffleIsNotReplayed() {
+		makeMove(wId, ImmutableList.<Operation>of(new SetTurn(bId),
+				new Set("P0", "wg", ImmutableList.of(wId)), new Set("P1", "wb", ImmutableList.of(wId)),
+				new Set("P2", "wb", ImmutableList.of(wId)),
+				new Shuffle(ImmutableList.of("P0", "P1", "P2"))));
+		makeMove(bId, step(bId, 1));
+		GameRepository.StoredGame stored = repository.load("g");
+		assertEquals(2, stored.moveCount);
+		assertEquals(1, stored.replayedMoves);
+		assertSameState(gameState, stored.gameState);
+	}
+
+	@Test
+	public void testWriteBehindRecoversTheMovesItCouldNotStore() throws Exception {
+		File writeAheadFile = File.createTempFile("moves", ".wal");
+		InMemoryGameStore failingStore = new InMemoryGameStore() {
+			@Override
+			public void putEvents(List<GameEvent> events) {
+				throw new IllegalStateException("datastore is down");
+			}
+		};
+		WriteBehindGameRepository writeBehind = new WriteBehindGameRepository(
+				new GameRepository(failingStore, 4), writeAheadFile, 100, 100, 60000);
+		for (int i = 1; i <= 6; i++) {
+			gameState.makeMove(step(wId, i));
+			writeBehind.appendMove("g", i, wId, step(wId, i), gameState, bId);
+		}
+		assertEquals(6, writeBehind.getPendingMoves());
+		writeBehind.close();
+		assertEquals(0, failingStore.getEventCount("g"));
+
+		writeBehind = new WriteBehindGameRepository(repository, writeAheadFile, 100, 100, 60000);
+		assertEquals(6, writeBehind.getRecoveredMoves());
+		writeBehind.close();
+		GameRepository.StoredGame stored = repository.load("g");
+		assertEquals(6, stored.moveCount);
+		assertEquals(2, stored.replayedMoves);
+		assertSameState(gameState, stored.gameState);
+		for (int i = 0; i < 2; i++) {
+			WriteAheadLog.segmentFileOf(writeAheadFile, i).delete();
+		}
+		writeAheadFile.delete();
+	}
+
+	@Test
+	public void testUnknownGameIsNull() {
+		assertNull(repository.load("nothing"));
+	}
+}
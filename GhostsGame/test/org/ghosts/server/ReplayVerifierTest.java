@@ -0,0 +1,121 @@
+package org.ghosts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.ghosts.client.Color;
+import org.ghosts.client.PieceKind;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class ReplayVerifierTest {
+	private final ReplayVerifier verifier = new ReplayVerifier();
+
+	// The moves of the test game with move i (counting the deploys from 1) replaced
+	private List<List<Operation>> replace(int i, List<Operation> move) {
+		List<List<Operation>> moves = Lists.newArrayList(TestGames.moves());
+		moves.set(i - 1, move);
+		return moves;
+	}
+
+	private void assertIllegal(int moveIndex, String violation, ReplayVerifier.Result result) {
+		assertEquals(violation, result.violation);
+		assertEquals(moveIndex, result.moveIndex);
+		assertEquals("g", result.gameId);
+	}
+
+	@Test
+	public void testLegalGame() {
+		ReplayVerifier.Result result = verifier.verify(TestGames.game("g"));
+		assertTrue(result.isLegal());
+		assertEquals(-1, result.moveIndex);
+		assertNull(result.context);
+	}
+
+	@Test
+	public void testIllegalDeploy() {
+		List<Operation> deploy = Lists.newArrayList(TestGames.deploy(Color.B));
+		deploy.set(1, new Set("S21", "P8"));
+		ReplayVerifier.Result result = verifier.verify(TestGames.game("g", replace(2, deploy)));
+		assertIllegal(2, "Not a deploy square: S21", result);
+		// the board before the deploy: white only
+		assertTrue(result.context.contains("turn=B"));
+		assertTrue(result.context.contains("P0g"));
+		assertFalse(result.context.contains("P8g"));
+	}
+
+	@Test
+	public void testMoveToSquareThatIsNotNext() {
+		ReplayVerifier.Result result = verifier.verify(TestGames.game("g",
+				replace(3, TestGames.move(Color.W, "P0", "S51", "S31"))));
+		assertIllegal(3, "End square is not next to the start square", result);
+		assertTrue(result.context.contains("turn=W"));
+		assertTrue(result.context.contains("P8g"));
+	}
+
+	@Test
+	public void testCaptureOfOwnPiece() {
+		ReplayVerifier.Result result = verifier.verify(TestGames.game("g",
+				replace(3, TestGames.capture(Color.W, "P0", "S51", "S52", "P1"))));
+		assertIllegal(3, "Can't capture a piece of the same side", result);
+	}
+
+	@Test
+	public void testCaptureWithoutDelete() {
+		ReplayVerifier.Result result = verifier.verify(TestGames.game("g",
+				replace(11, TestGames.move(Color.W, "P0", "S20", "S10"))));
+		assertIllegal(11, "Captured piece must be deleted", result);
+		// the board before the capture
+		assertTrue(result.context.contains("P12e"));
+	}
+
+	@Test
+	public void testEvilGhostClaimsToExit() {
+		// P0 is evil and P4 is good instead
+		PieceKind[] kinds = TestGames.kinds();
+		kinds[0] = PieceKind.WEvil;
+		kinds[4] = PieceKind.WGood;
+		GameLog gameLog = new GameLog("g", TestGames.PLAYER_IDS,
+				GameLog.getInitialOperations(TestGames.PLAYER_IDS, kinds), TestGames.moves());
+		assertIllegal(13, "Only a good ghost can exit", verifier.verify(gameLog));
+	}
+
+	@Test
+	public void testGoodGhostOnExitMustEndGame() {
+		ReplayVerifier.Result result = verifier.verify(TestGames.game("g",
+				replace(13, TestGames.move(Color.W, "P0", "S10", "S00"))));
+		assertIllegal(13, "A good ghost on the exit must end the game", result);
+	}
+
+	@Test
+	public void testExitMustRevealEveryPieceOfTheMover() {
+		ReplayVerifier.Result result = verifier.verify(TestGames.game("g",
+				replace(13, TestGames.exit(Color.W, "P0", "S10", "S00", ImmutableList.of("P0")))));
+		assertIllegal(13, "An exit must reveal the pieces of the mover in order, next: P1", result);
+	}
+
+	@Test
+	public void testNoMoveAfterTheEnd() {
+		List<List<Operation>> moves = Lists.newArrayList(TestGames.moves());
+		moves.add(TestGames.move(Color.B, "P13", "S12", "S22"));
+		assertIllegal(14, "The game has ended", verifier.verify(TestGames.game("g", moves)));
+	}
+
+	@Test
+	public void testVerifierIsReused() {
+		verifier.verify(TestGames.game("g",
+				replace(3, TestGames.move(Color.W, "P0", "S51", "S31"))));
+		assertTrue(verifier.verify(TestGames.game("g")).isLegal());
+	}
+}
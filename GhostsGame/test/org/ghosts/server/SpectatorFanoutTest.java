@@ -0,0 +1,151 @@
+package org.ghosts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.game_api.GameApi;
+import org.game_api.GameApi.GameState;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApiJsonCodec;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class SpectatorFanoutTest {
+	private final String wId = "42";
+	private final String bId = "43";
+	private final List<Map<String, Object>> playersInfo = ImmutableList.<Map<String, Object>>of(
+			ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, wId),
+			ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, bId));
+	private final GameState gameState = new GameState();
+	private GameState lastGameState = null;
+	private int moveNumber = 0;
+
+	// Runs the deliveries when the test says so, like a busy thread pool
+	private static class ManualExecutor implements Executor {
+		final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		void runAll() {
+			while (!tasks.isEmpty()) {
+				tasks.removeFirst().run();
+			}
+		}
+	}
+
+	private static class RecordingSpectator implements SpectatorFanout.Spectator {
+		final List<SpectatorFanout.Snapshot> snapshots = Lists.newArrayList();
+
+		@Override
+		public void onSnapshot(SpectatorFanout.Snapshot snapshot) {
+			snapshots.add(snapshot);
+		}
+	}
+
+	private void makeMove(SpectatorFanout fanout, List<Operation> move) {
+		lastGameState = gameState.copy();
+		gameState.makeMove(move);
+		moveNumber++;
+		fanout.publish(moveNumber, playersInfo, gameState, lastGameState, move, wId);
+	}
+
+	private List<Operation> setPiece(String square, String piece) {
+		return ImmutableList.<Operation>of(new Set(square, piece, ImmutableList.of(wId)));
+	}
+
+	@Test
+	public void testSpectatorsShareOneSnapshot() {
+		ManualExecutor executor = new ManualExecutor();
+		SpectatorFanout fanout = new SpectatorFanout(executor);
+		RecordingSpectator first = new RecordingSpectator();
+		RecordingSpectator second = new RecordingSpectator();
+		fanout.subscribe(first);
+		fanout.subscribe(second);
+		makeMove(fanout, setPiece("S51", "P0"));
+		executor.runAll();
+
+		assertEquals(1, first.snapshots.size());
+		assertSame(first.snapshots.get(0), second.snapshots.get(0));
+		SpectatorFanout.Snapshot snapshot = first.snapshots.get(0);
+		assertEquals(1, snapshot.getMoveNumber());
+		// the viewer can't see what only white can see
+		assertTrue(snapshot.getUpdateUI().isViewer());
+		assertNull(snapshot.getUpdateUI().getState().get("S51"));
+		ByteBuffer encoded = snapshot.getEncoded();
+		byte[] bytes = new byte[encoded.remaining()];
+		encoded.get(bytes);
+		UpdateUI decoded = (UpdateUI) new GameApiJsonCodec().decode(
+				new String(bytes, StandardCharsets.UTF_8));
+		assertEquals(GameApi.VIEWER_ID, decoded.getYourPlayerId());
+	}
+
+	@Test
+	public void testSlowSpectatorGetsTheLatestSnapshot() {
+		ManualExecutor executor = new ManualExecutor();
+		SpectatorFanout fanout = new SpectatorFanout(executor);
+		RecordingSpectator spectator = new RecordingSpectator();
+		fanout.subscribe(spectator);
+		makeMove(fanout, setPiece("S51", "P0"));
+		makeMove(fanout, setPiece("S52", "P1"));
+		makeMove(fanout, setPiece("S53", "P2"));
+		assertEquals(1, executor.tasks.size());
+		executor.runAll();
+
+		assertEquals(1, spectator.snapshots.size());
+		assertEquals(3, spectator.snapshots.get(0).getMoveNumber());
+		assertEquals(2, fanout.getCoalescedSnapshots());
+		assertEquals(1, fanout.getDeliveredSnapshots());
+	}
+
+	@Test
+	public void testLateSpectatorGetsTheLatestSnapshot() {
+		ManualExecutor executor = new ManualExecutor();
+		SpectatorFanout fanout = new SpectatorFanout(executor);
+		makeMove(fanout, setPiece("S51", "P0"));
+		makeMove(fanout, setPiece("S52", "P1"));
+		RecordingSpectator spectator = new RecordingSpectator();
+		fanout.subscribe(spectator);
+		executor.runAll();
+
+		assertEquals(1, spectator.snapshots.size());
+		assertEquals(2, spectator.snapshots.get(0).getMoveNumber());
+	}
+
+	@Test
+	public void testFailingSpectatorIsUnsubscribed() {
+		ManualExecutor executor = new ManualExecutor();
+		SpectatorFanout fanout = new SpectatorFanout(executor);
+		SpectatorFanout.Subscription subscription = fanout.subscribe(
+				new SpectatorFanout.Spectator() {
+					@Override
+					public void onSnapshot(SpectatorFanout.Snapshot snapshot) {
+						throw new IllegalStateException("disconnected");
+					}
+				});
+		makeMove(fanout, setPiece("S51", "P0"));
+		executor.runAll();
+
+		assertTrue(subscription.isCancelled());
+		assertEquals(0, fanout.getSpectators());
+	}
+}
@@ -0,0 +1,109 @@
+package org.ghosts.server;
+
+import java.util.List;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.SetVisibility;
+import org.ghosts.client.Color;
+import org.ghosts.client.Piece;
+import org.ghosts.client.PieceKind;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/** The moves of a short legal game, for the tests of the logs, the archive and the replay. */
+final class TestGames {
+	static final String W_ID = "42";
+	static final String B_ID = "43";
+	static final List<String> PLAYER_IDS = ImmutableList.of(W_ID, B_ID);
+
+	private TestGames() {
+	}
+
+	// P0 ~ P3 and P8 ~ P11 are good
+	static PieceKind[] kinds() {
+		PieceKind[] kinds = new PieceKind[Piece.NUMBER_OF_PIECES];
+		for (int i = 0; i < kinds.length; i++) {
+			kinds[i] = PieceKind.of(Piece.isWhitePieceId(i) ? Color.W : Color.B, i % 8 < 4);
+		}
+		return kinds;
+	}
+
+	static String playerIdOf(Color color) {
+		return PLAYER_IDS.get(color.ordinal());
+	}
+
+	// White on S51 ~ S54 and S41 ~ S44, black on S01 ~ S04 and S11 ~ S14, in the order of the pieces
+	static List<Operation> deploy(Color color) {
+		ImmutableList.Builder<Operation> deploy = ImmutableList.builder();
+		deploy.add(new SetTurn(playerIdOf(color.getOpposite())));
+		int firstPiece = color.isWhite() ? 0 : 8;
+		String firstRow = color.isWhite() ? "5" : "0";
+		String secondRow = color.isWhite() ? "4" : "1";
+		for (int i = 0; i < 4; i++) {
+			deploy.add(new Set("S" + firstRow + (i + 1), Piece.nameOf(firstPiece + i)));
+		}
+		for (int i = 0; i < 4; i++) {
+			deploy.add(new Set("S" + secondRow + (i + 1), Piece.nameOf(firstPiece + 4 + i)));
+		}
+		deploy.add(new Set(color.isWhite() ? "WDeployed" : "BDeployed", "true"));
+		return deploy.build();
+	}
+
+	static List<Operation> move(Color turn, String piece, String start, String end) {
+		return ImmutableList.<Operation>of(new SetTurn(playerIdOf(turn.getOpposite())),
+				new Set(end, piece), new Delete(start));
+	}
+
+	static List<Operation> capture(Color turn, String piece, String start, String end,
+			String captured) {
+		return ImmutableList.<Operation>of(new SetTurn(playerIdOf(turn.getOpposite())),
+				new Set(end, piece), new Delete(start), new Delete(captured));
+	}
+
+	// The exit of piece reveals all the given pieces of the mover
+	static List<Operation> exit(Color turn, String piece, String start, String end,
+			List<String> revealed) {
+		List<Operation> exit = Lists.newArrayList(move(turn, piece, start, end));
+		for (String id : revealed) {
+			exit.add(new SetVisibility(id));
+		}
+		exit.add(new EndGame(playerIdOf(turn)));
+		return exit;
+	}
+
+	/**
+	 * White's good P0 walks up column 0, captures black's evil P12 on S10 and exits on S00, while
+	 * black moves P13 back and forth.
+	 */
+	static List<List<Operation>> moves() {
+		return ImmutableList.of(
+				deploy(Color.W),
+				deploy(Color.B),
+				move(Color.W, "P0", "S51", "S50"),
+				move(Color.B, "P13", "S12", "S22"),
+				move(Color.W, "P0", "S50", "S40"),
+				move(Color.B, "P13", "S22", "S12"),
+				move(Color.W, "P0", "S40", "S30"),
+				move(Color.B, "P12", "S11", "S10"),
+				move(Color.W, "P0", "S30", "S20"),
+				move(Color.B, "P13", "S12", "S22"),
+				capture(Color.W, "P0", "S20", "S10", "P12"),
+				move(Color.B, "P13", "S22", "S12"),
+				exit(Color.W, "P0", "S10", "S00",
+						ImmutableList.of("P0", "P1", "P2", "P3", "P4", "P5", "P6", "P7")));
+	}
+
+	static GameLog game(String gameId) {
+		return game(gameId, moves());
+	}
+
+	static GameLog game(String gameId, List<List<Operation>> moves) {
+		return new GameLog(gameId, PLAYER_IDS, GameLog.getInitialOperations(PLAYER_IDS, kinds()),
+				moves);
+	}
+}